@@ -0,0 +1,126 @@
+package org.webdriver.crawler.benchmarks;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.webdriver.crawler.ApplicationCrawler;
+import org.webdriver.crawler.executer.VirtualThreads;
+import org.webdriver.crawler.metrics.Metrics;
+import org.webdriver.crawler.results.ResultsSink;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end crawl benchmark: serves synthetic sites (see {@link SyntheticSiteServer}) on the loopback address,
+ * runs {@link ApplicationCrawler} on them with its {@link org.webdriver.crawler.executer.SiteExecution} runner and
+ * reports pages per minute, unique pages served and the time spent waiting compared with navigating.
+ * <p>
+ * System properties: benchmark.sites - synthetic sites crawled (default 3), benchmark.browser - "headless" (a
+ * local headless Chrome), "fake" ({@link FakeWebDriver} fetching the synthetic pages) or "auto" (default, headless
+ * when a chromedriver is found). Any crawler property (fuse.*, crawl.mode, maximum.sites...) applies as usual;
+ * the per host rate limit is off unless host.rate.per.second is given, the synthetic sites share one host.
+ * Running it with site.scheduler=fixed and site.scheduler=virtual (fake.latency.micros standing for the round
+ * trips to a remote Grid) compares the fixed site pool with the virtual thread scheduler.
+ */
+public class CrawlThroughputRunner {
+
+    private static final String RESULTS_FILE = ApplicationCrawler.TARGET_TEST_CLASSES_GENERATED_FLOWS + "/flowDurations.properties";
+
+    public static void main(String[] args) throws IOException {
+        int sites = Integer.getInteger("benchmark.sites", 3);
+        String browser = resolveBrowser(System.getProperty("benchmark.browser", "auto"));
+        try (SyntheticSiteServer server = SyntheticSiteServer.fromProperties().start()) {
+            List<String> siteNames = new ArrayList<>();
+            StringBuilder urls = new StringBuilder();
+            for (int site = 0; site < sites; site++) {
+                siteNames.add("Synthetic" + site);
+                urls.append(urls.length() == 0 ? "" : ";").append("Synthetic").append(site).append('=').append(server.getSiteUrl(site));
+            }
+            System.setProperty("urls.list", urls.toString());
+            setDefault("host.rate.per.second", "0");
+            setDefault("host.max.concurrent", "0");
+            if ("fake".equals(browser)) {
+                setDefault("webdriver.factory", FakeWebDriverFactory.class.getName());
+                setDefault("fake.fetch", "true");
+            } else {
+                setDefault("browser.headless", "true");
+            }
+
+            String scheduler = System.getProperty("site.scheduler", "fixed").toLowerCase();
+            long startNanos = System.nanoTime();
+            Result result = JUnitCore.runClasses(ApplicationCrawler.class);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            ResultsSink.forFile(RESULTS_FILE).close();
+
+            long pages = 0;
+            Properties results = load(new File(RESULTS_FILE));
+            for (String siteName : siteNames) {
+                pages += Math.max(0, Long.parseLong(results.getProperty(siteName + ".pages", "0")));
+            }
+            double minutes = elapsedNanos / (double) TimeUnit.MINUTES.toNanos(1);
+            long actionNanos = Metrics.getSumNanos(Metrics.ACTION_LATENCY);
+            long settleNanos = Metrics.getSumNanos(Metrics.PAGE_SETTLE_LATENCY);
+            long waitNanos = Metrics.getSumNanos(Metrics.WAIT_LATENCY);
+            System.out.println(String.format("Crawl throughput (%s browser, %d sites, %d tests, %d failures)", browser, sites, result.getRunCount(), result.getFailureCount()));
+            System.out.println(String.format("  elapsed            %,d Milli-Second", TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+            System.out.println(String.format("  pages visited      %,d (%.1f pages per minute)", pages, pages / Math.max(minutes, 1e-9)));
+            System.out.println(String.format("  unique pages       %,d served in %,d requests", server.getServedPages(), server.getRequests()));
+            System.out.println(String.format("  actions            %,d Milli-Second, of which %,d Milli-Second waiting for pages to settle (%.0f%%)",
+                    TimeUnit.NANOSECONDS.toMillis(actionNanos), TimeUnit.NANOSECONDS.toMillis(settleNanos), percent(settleNanos, actionNanos)));
+            System.out.println(String.format("  navigation         %,d Milli-Second", TimeUnit.NANOSECONDS.toMillis(Math.max(0, actionNanos - settleNanos))));
+            System.out.println(String.format("  element waits      %,d Milli-Second (%,d retries, %,d timeouts)", TimeUnit.NANOSECONDS.toMillis(waitNanos),
+                    Metrics.getTotal(Metrics.WAIT_RETRIES), Metrics.getTotal(Metrics.WAIT_TIMEOUTS)));
+            System.out.println(String.format("  site scheduler     %s%s, peak %d platform threads", scheduler,
+                    "virtual".equals(scheduler) && !VirtualThreads.isAvailable() ? " (no virtual threads, platform threads used)" : "",
+                    ManagementFactory.getThreadMXBean().getPeakThreadCount()));
+        }
+    }
+
+    /**
+     * "auto" becomes "headless" when a chromedriver is configured or on the PATH, "fake" otherwise
+     */
+    static String resolveBrowser(String browser) {
+        if (!"auto".equalsIgnoreCase(browser)) {
+            return browser.toLowerCase();
+        }
+        if (System.getProperty("webdriver.chrome.driver") != null) {
+            return "headless";
+        }
+        String path = System.getenv("PATH");
+        if (path != null) {
+            for (String directory : path.split(File.pathSeparator)) {
+                if (new File(directory, "chromedriver").canExecute() || new File(directory, "chromedriver.exe").canExecute()) {
+                    return "headless";
+                }
+            }
+        }
+        return "fake";
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties properties = new Properties();
+        if (file.isFile()) {
+            try (InputStream input = new FileInputStream(file)) {
+                properties.load(input);
+            }
+        }
+        return properties;
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : part * 100.0 / total;
+    }
+}
@@ -0,0 +1,116 @@
+package org.webdriver.crawler.benchmarks;
+
+import org.openqa.selenium.By;
+import org.webdriver.crawler.ApplicationCrawler;
+import org.webdriver.crawler.CrawlerAction;
+import org.webdriver.crawler.WebCrawlerDriver;
+import org.webdriver.crawler.helpers.ApplicationCrawlerHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crawler logic which does not talk to the browser: locator construction, step formatting and parsing the list
+ * of sites (from the "urls.list" file or inline list)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrawlerLogicBenchmark {
+
+    @Param({"10", "1000"})
+    public int sites;
+
+    @Param({"inline", "file"})
+    public String source;
+
+    private String sitesList;
+    private File sitesFile;
+    private BenchmarkAction action;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int index = 0; index < sites; index++) {
+            lines.add(index % 2 == 0 ? "http://www.site" + index + ".com" : "Site" + index + "=http://www.site" + index + ".com/start");
+        }
+        if ("file".equals(source)) {
+            sitesFile = new File("target", "benchmark-sites.txt");
+            sitesFile.getParentFile().mkdirs();
+            Files.write(sitesFile.toPath(), lines, StandardCharsets.UTF_8);
+            sitesList = sitesFile.getPath();
+        } else {
+            sitesList = String.join(";", lines);
+        }
+        System.setProperty("urls.list", sitesList);
+        action = new BenchmarkAction();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty("urls.list");
+        if (sitesFile != null) {
+            sitesFile.delete();
+        }
+    }
+
+    @Benchmark
+    public By linkTextLocator() {
+        return ApplicationCrawlerHelper.byLinkText("Products And Services");
+    }
+
+    @Benchmark
+    public By indexLocator() {
+        return ApplicationCrawlerHelper.byIndex(ApplicationCrawler.LINKS_XPATH, 42);
+    }
+
+    @Benchmark
+    public String formatStep() {
+        return action.format();
+    }
+
+    @Benchmark
+    public List<Object[]> getListOfSites() {
+        return ApplicationCrawlerHelper.getListOfSites();
+    }
+
+    /**
+     * Exposes the step formatting of {@link CrawlerAction}
+     */
+    static class BenchmarkAction extends CrawlerAction {
+
+        BenchmarkAction() {
+            super("Navigating to url: http://www.crawl.here.com/products/index.html");
+        }
+
+        @Override
+        public CrawlerAction perform(WebCrawlerDriver webCrawlerDriver) {
+            return this;
+        }
+
+        String format() {
+            return formatStep();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.webdriver.crawler.benchmarks;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.webdriver.crawler.ApplicationCrawler;
+import org.webdriver.crawler.WebCrawlerDriver;
+import org.webdriver.crawler.helpers.ApplicationCrawlerHelper;
+import org.webdriver.crawler.helpers.ClickOnElement;
+import org.webdriver.crawler.helpers.FindVisibleElements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per element WebDriver paths: the visible elements condition, the click condition and the link availability
+ * check with and without the harvest script
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ElementBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int domSize;
+
+    @Param({"0"})
+    public long latencyMicros;
+
+    private FakeWebDriver fakeWebDriver;
+    private WebCrawlerDriver scriptDriver;
+    private WebCrawlerDriver elementsDriver;
+    private By links;
+    private By firstLink;
+
+    @Setup
+    public void setUp() {
+        fakeWebDriver = new FakeWebDriver(domSize, 1000, latencyMicros, true);
+        scriptDriver = FakeBrowser.open(fakeWebDriver);
+        elementsDriver = FakeBrowser.open(new FakeWebDriver(domSize, 1000, latencyMicros, false));
+        links = By.xpath(ApplicationCrawler.LINKS_XPATH);
+        firstLink = ApplicationCrawlerHelper.byIndex(ApplicationCrawler.LINKS_XPATH, 0);
+    }
+
+    /**
+     * A fresh condition needs two reads with the same count, as the first poll of a FluentWait does
+     */
+    @Benchmark
+    public List<WebElement> findVisibleElements() {
+        ExpectedCondition<List<WebElement>> condition = new FindVisibleElements(links, 0);
+        condition.apply(fakeWebDriver);
+        return condition.apply(fakeWebDriver);
+    }
+
+    @Benchmark
+    public Boolean clickOnElement() {
+        return new ClickOnElement(firstLink).apply(fakeWebDriver);
+    }
+
+    @Benchmark
+    public boolean isAvailableByScript() {
+        return scriptDriver.isAvailable(firstLink);
+    }
+
+    @Benchmark
+    public boolean isAvailableByElements() {
+        return elementsDriver.isAvailable(firstLink);
+    }
+}
@@ -0,0 +1,34 @@
+package org.webdriver.crawler.benchmarks;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.webdriver.crawler.WebCrawlerDriver;
+import org.webdriver.crawler.helpers.PageSettleDetector;
+
+/**
+ * Builds {@link WebCrawlerDriver}s on top of a {@link FakeWebDriver} already showing a page
+ */
+public class FakeBrowser {
+
+    public static final String START_URL = "http://fake.local/page/0";
+
+    public static WebCrawlerDriver open(FakeWebDriver fakeWebDriver) {
+        fakeWebDriver.get(START_URL);
+        WebCrawlerDriver webCrawlerDriver = new WebCrawlerDriver(DesiredCapabilities.chrome(), fakeWebDriver);
+        webCrawlerDriver.setPageSettleDetector(settled());
+        webCrawlerDriver.waitForPageToSettle();
+        return webCrawlerDriver;
+    }
+
+    /**
+     * @return a detector confirming every page as settled at once, so the link reads trust their first result
+     */
+    public static PageSettleDetector settled() {
+        return new PageSettleDetector("fake", 0) {
+            @Override
+            protected boolean awaitSettled(WebDriver webDriver, long maxWaitMillis) {
+                return true;
+            }
+        };
+    }
+}
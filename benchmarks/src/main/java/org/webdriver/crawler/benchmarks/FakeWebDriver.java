@@ -0,0 +1,469 @@
+package org.webdriver.crawler.benchmarks;
+
+import org.openqa.selenium.Alert;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.logging.Logs;
+import org.webdriver.crawler.dedupe.PageFingerprint;
+import org.webdriver.crawler.fetch.FetchedPage;
+import org.webdriver.crawler.fetch.HtmlLinkTokenizer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for a browser: every page holds the same number of anchors whose hrefs point to other pages
+ * of a fixed size site, each command costs a configurable latency and nothing touches the network.
+ * <p>
+ * Understands the locators the crawler builds: "(...)[n]" returns the n-th anchor, "...,'text')..." the anchors
+ * containing the text and anything else all the anchors. The harvest script is answered with the anchor rows and
+ * the page settle script with true, the page fingerprint script with the anchor texts as the page text; JavaScript
+ * can be disabled to exercise the per element fallbacks.
+ */
+public class FakeWebDriver implements WebDriver, JavascriptExecutor {
+
+    private static final Pattern INDEX_LOCATOR = Pattern.compile("\\)\\[(\\d+)\\]$");
+    private static final Pattern PAGE_PATH = Pattern.compile("/page/(\\d+)");
+    private static final Pattern TEXT_LOCATOR = Pattern.compile(",'([^']*)'\\) and @href\\]$");
+
+    private final int domSize;
+    private final int pageCount;
+    private final long latencyNanos;
+    private final boolean javascript;
+    private final boolean fetchPages;
+    private final AtomicLong commands = new AtomicLong();
+    private final LinkedList<String> history = new LinkedList<>();
+
+    private String currentUrl = "about:blank";
+    private List<WebElement> anchors = Collections.emptyList();
+    private boolean closed = false;
+
+    /**
+     * @param domSize anchors on every page
+     * @param pageCount pages of the site, the anchor hrefs spread over them
+     * @param latencyMicros cost of every WebDriver command, 0 for none
+     * @param javascript false to make every script fail as unsupported
+     */
+    public FakeWebDriver(int domSize, int pageCount, long latencyMicros, boolean javascript) {
+        this(domSize, pageCount, latencyMicros, javascript, false);
+    }
+
+    /**
+     * @param fetchPages true to fetch every page over HTTP and take its static anchors (scripts are not run)
+     * instead of generating them, domSize and pageCount are then ignored
+     */
+    public FakeWebDriver(int domSize, int pageCount, long latencyMicros, boolean javascript, boolean fetchPages) {
+        this.domSize = domSize;
+        this.pageCount = Math.max(1, pageCount);
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        this.javascript = javascript;
+        this.fetchPages = fetchPages;
+    }
+
+    /**
+     * Configured by the system properties fake.dom.size (default 50), fake.page.count (default 1000),
+     * fake.latency.micros (default 0), fake.javascript (default true) and fake.fetch (default false)
+     */
+    public FakeWebDriver() {
+        this(Integer.getInteger("fake.dom.size", 50), Integer.getInteger("fake.page.count", 1000),
+                Long.getLong("fake.latency.micros", 0L), Boolean.parseBoolean(System.getProperty("fake.javascript", "true")),
+                Boolean.getBoolean("fake.fetch"));
+    }
+
+    void command() {
+        commands.incrementAndGet();
+        if (latencyNanos > 0) {
+            long deadline = System.nanoTime() + latencyNanos;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    public long getCommands() {
+        return commands.get();
+    }
+
+    public int getDomSize() {
+        return domSize;
+    }
+
+    @Override
+    public void get(String url) {
+        command();
+        if (!currentUrl.equals("about:blank")) {
+            history.push(currentUrl);
+        }
+        load(url);
+    }
+
+    private void load(String url) {
+        currentUrl = url;
+        if (url.startsWith("about:")) {
+            anchors = Collections.emptyList();
+            return;
+        }
+        if (fetchPages) {
+            anchors = fetch(url);
+            return;
+        }
+        String base;
+        int page;
+        try {
+            URL parsed = new URL(url);
+            base = parsed.getProtocol() + "://" + parsed.getAuthority();
+            Matcher matcher = PAGE_PATH.matcher(parsed.getPath());
+            page = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+        } catch (Exception exception) {
+            base = "http://fake.local";
+            page = 0;
+        }
+        List<WebElement> elements = new ArrayList<>(domSize);
+        for (int index = 0; index < domSize; index++) {
+            int target = (int) ((page * 31L + index * 7L + 1) % pageCount);
+            elements.add(new FakeWebElement(this, index, "Link " + target, base + "/page/" + target));
+        }
+        anchors = elements;
+    }
+
+    private List<WebElement> fetch(String url) {
+        List<WebElement> elements = new ArrayList<>();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                int index = 0;
+                for (FetchedPage.Link link : HtmlLinkTokenizer.parse(reader, url).getLinks()) {
+                    elements.add(new FakeWebElement(this, index++, link.getText(), link.getHref()));
+                }
+            }
+        } catch (IOException ioException) {
+            elements.clear();
+        }
+        return elements;
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        command();
+        return currentUrl;
+    }
+
+    @Override
+    public String getTitle() {
+        command();
+        return currentUrl;
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        command();
+        return match(by);
+    }
+
+    private List<WebElement> match(By by) {
+        String locator = by.toString();
+        Matcher index = INDEX_LOCATOR.matcher(locator);
+        if (index.find()) {
+            int position = Integer.parseInt(index.group(1)) - 1;
+            return position >= 0 && position < anchors.size() ?
+                    Collections.singletonList(anchors.get(position)) : Collections.<WebElement>emptyList();
+        }
+        Matcher text = TEXT_LOCATOR.matcher(locator);
+        if (text.find()) {
+            List<WebElement> matching = new ArrayList<>();
+            for (WebElement anchor : anchors) {
+                if (((FakeWebElement) anchor).getTextNoCost().toLowerCase().contains(text.group(1))) {
+                    matching.add(anchor);
+                }
+            }
+            return matching;
+        }
+        return new ArrayList<>(anchors);
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        List<WebElement> elements = findElements(by);
+        if (elements.isEmpty()) {
+            throw new NoSuchElementException("No fake element for " + by);
+        }
+        return elements.get(0);
+    }
+
+    @Override
+    public String getPageSource() {
+        command();
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (WebElement anchor : anchors) {
+            FakeWebElement element = (FakeWebElement) anchor;
+            html.append("<a href=\"").append(element.getHrefNoCost()).append("\">").append(element.getTextNoCost()).append("</a>");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    @Override
+    public void close() {
+        command();
+        closed = true;
+    }
+
+    @Override
+    public void quit() {
+        closed = true;
+    }
+
+    @Override
+    public Set<String> getWindowHandles() {
+        command();
+        Set<String> handles = new HashSet<>();
+        if (!closed) {
+            handles.add("main");
+        }
+        return handles;
+    }
+
+    @Override
+    public String getWindowHandle() {
+        command();
+        return "main";
+    }
+
+    @Override
+    public Object executeScript(String script, Object... args) {
+        command();
+        if (!javascript) {
+            throw new UnsupportedCommandException("JavaScript is disabled in this fake driver");
+        }
+        if (args.length == 3 && ("xpath".equals(args[0]) || "css".equals(args[0]))) {
+            int limit = ((Number) args[2]).intValue();
+            List<Object> rows = new ArrayList<>();
+            for (WebElement anchor : match(By.xpath(String.valueOf(args[1])))) {
+                if (limit > 0 && rows.size() >= limit) {
+                    break;
+                }
+                rows.add(((FakeWebElement) anchor).toRow());
+            }
+            return rows;
+        }
+        if (PageFingerprint.SCRIPT.equals(script)) {
+            StringBuilder text = new StringBuilder();
+            StringBuilder pairs = new StringBuilder();
+            for (WebElement anchor : anchors) {
+                text.append(((FakeWebElement) anchor).getTextNoCost()).append('\n');
+                pairs.append("BODY>A ");
+            }
+            return Arrays.<Object>asList(text.toString(), pairs.toString());
+        }
+        return null;
+    }
+
+    @Override
+    public Object executeAsyncScript(String script, Object... args) {
+        command();
+        if (!javascript) {
+            throw new UnsupportedCommandException("JavaScript is disabled in this fake driver");
+        }
+        return Boolean.TRUE;
+    }
+
+    @Override
+    public TargetLocator switchTo() {
+        return new TargetLocator() {
+            @Override
+            public WebDriver frame(int index) {
+                return FakeWebDriver.this;
+            }
+
+            @Override
+            public WebDriver frame(String nameOrId) {
+                return FakeWebDriver.this;
+            }
+
+            @Override
+            public WebDriver frame(WebElement frameElement) {
+                return FakeWebDriver.this;
+            }
+
+            @Override
+            public WebDriver parentFrame() {
+                return FakeWebDriver.this;
+            }
+
+            @Override
+            public WebDriver window(String nameOrHandle) {
+                command();
+                return FakeWebDriver.this;
+            }
+
+            @Override
+            public WebDriver defaultContent() {
+                return FakeWebDriver.this;
+            }
+
+            @Override
+            public WebElement activeElement() {
+                return anchors.isEmpty() ? null : anchors.get(0);
+            }
+
+            @Override
+            public Alert alert() {
+                throw new UnsupportedCommandException("No alerts in the fake driver");
+            }
+        };
+    }
+
+    @Override
+    public Navigation navigate() {
+        return new Navigation() {
+            @Override
+            public void back() {
+                command();
+                if (!history.isEmpty()) {
+                    load(history.pop());
+                }
+            }
+
+            @Override
+            public void forward() {
+                command();
+            }
+
+            @Override
+            public void to(String url) {
+                get(url);
+            }
+
+            @Override
+            public void to(URL url) {
+                get(url.toString());
+            }
+
+            @Override
+            public void refresh() {
+                command();
+            }
+        };
+    }
+
+    @Override
+    public Options manage() {
+        return new Options() {
+            @Override
+            public void addCookie(Cookie cookie) {
+                command();
+            }
+
+            @Override
+            public void deleteCookieNamed(String name) {
+                command();
+            }
+
+            @Override
+            public void deleteCookie(Cookie cookie) {
+                command();
+            }
+
+            @Override
+            public void deleteAllCookies() {
+                command();
+            }
+
+            @Override
+            public Set<Cookie> getCookies() {
+                command();
+                return Collections.emptySet();
+            }
+
+            @Override
+            public Cookie getCookieNamed(String name) {
+                command();
+                return null;
+            }
+
+            @Override
+            public Timeouts timeouts() {
+                return new Timeouts() {
+                    @Override
+                    public Timeouts implicitlyWait(long time, TimeUnit unit) {
+                        return this;
+                    }
+
+                    @Override
+                    public Timeouts setScriptTimeout(long time, TimeUnit unit) {
+                        return this;
+                    }
+
+                    @Override
+                    public Timeouts pageLoadTimeout(long time, TimeUnit unit) {
+                        return this;
+                    }
+                };
+            }
+
+            @Override
+            public ImeHandler ime() {
+                throw new UnsupportedCommandException("No IME in the fake driver");
+            }
+
+            @Override
+            public Window window() {
+                return new Window() {
+                    @Override
+                    public void setSize(Dimension targetSize) {
+                    }
+
+                    @Override
+                    public void setPosition(Point targetPosition) {
+                    }
+
+                    @Override
+                    public Dimension getSize() {
+                        return new Dimension(1280, 1024);
+                    }
+
+                    @Override
+                    public Point getPosition() {
+                        return new Point(0, 0);
+                    }
+
+                    @Override
+                    public void maximize() {
+                    }
+
+                    @Override
+                    public void fullscreen() {
+                    }
+                };
+            }
+
+            @Override
+            public Logs logs() {
+                throw new UnsupportedCommandException("No logs in the fake driver");
+            }
+        };
+    }
+}
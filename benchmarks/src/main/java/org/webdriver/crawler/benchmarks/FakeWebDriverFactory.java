@@ -0,0 +1,17 @@
+package org.webdriver.crawler.benchmarks;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.webdriver.crawler.WebDriverFactory;
+
+/**
+ * Makes the crawler use a {@link FakeWebDriver} configured from the fake.* system properties:
+ * -Dwebdriver.factory=org.webdriver.crawler.benchmarks.FakeWebDriverFactory
+ */
+public class FakeWebDriverFactory implements WebDriverFactory {
+
+    @Override
+    public WebDriver create(Capabilities capabilities) {
+        return new FakeWebDriver();
+    }
+}
@@ -0,0 +1,146 @@
+package org.webdriver.crawler.benchmarks;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebElement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Anchor of a {@link FakeWebDriver} page, every getter is charged as one WebDriver command
+ */
+public class FakeWebElement implements WebElement {
+
+    private static final int HEIGHT = 20;
+
+    private final FakeWebDriver driver;
+    private final int index;
+    private final String text;
+    private final String href;
+
+    FakeWebElement(FakeWebDriver driver, int index, String text, String href) {
+        this.driver = driver;
+        this.index = index;
+        this.text = text;
+        this.href = href;
+    }
+
+    String getTextNoCost() {
+        return text;
+    }
+
+    String getHrefNoCost() {
+        return href;
+    }
+
+    /**
+     * Row of the harvest script: [index, text, href, displayed, enabled, x, y, width, height, script driven]
+     */
+    List<Object> toRow() {
+        return Arrays.<Object>asList((long) index, text, href, true, true, 10L, (long) index * HEIGHT, 100L, (long) HEIGHT, false);
+    }
+
+    @Override
+    public void click() {
+        driver.get(href);
+    }
+
+    @Override
+    public void submit() {
+        driver.command();
+    }
+
+    @Override
+    public void sendKeys(CharSequence... keysToSend) {
+        driver.command();
+    }
+
+    @Override
+    public void clear() {
+        driver.command();
+    }
+
+    @Override
+    public String getTagName() {
+        driver.command();
+        return "a";
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        driver.command();
+        return "href".equals(name) ? href : null;
+    }
+
+    @Override
+    public boolean isSelected() {
+        driver.command();
+        return false;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        driver.command();
+        return true;
+    }
+
+    @Override
+    public String getText() {
+        driver.command();
+        return text;
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        driver.command();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        driver.command();
+        throw new NoSuchElementException("Fake anchors have no children");
+    }
+
+    @Override
+    public boolean isDisplayed() {
+        driver.command();
+        return true;
+    }
+
+    @Override
+    public Point getLocation() {
+        driver.command();
+        return new Point(10, index * HEIGHT);
+    }
+
+    @Override
+    public Dimension getSize() {
+        driver.command();
+        return new Dimension(100, HEIGHT);
+    }
+
+    @Override
+    public Rectangle getRect() {
+        driver.command();
+        return new Rectangle(new Point(10, index * HEIGHT), new Dimension(100, HEIGHT));
+    }
+
+    @Override
+    public String getCssValue(String propertyName) {
+        driver.command();
+        return "";
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        throw new UnsupportedCommandException("No screenshots in the fake driver");
+    }
+}
@@ -0,0 +1,63 @@
+package org.webdriver.crawler.benchmarks;
+
+import org.openqa.selenium.By;
+import org.webdriver.crawler.ApplicationCrawler;
+import org.webdriver.crawler.WebCrawlerDriver;
+import org.webdriver.crawler.helpers.HarvestedLink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link reads of {@link WebCrawlerDriver} on a settled page, where a single harvest script call is trusted.
+ * The per element fallback is not measured here: its FluentWait sleeps a 2 second poll before the second read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HarvestBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int domSize;
+
+    @Param({"0"})
+    public long latencyMicros;
+
+    private WebCrawlerDriver webCrawlerDriver;
+    private By links;
+
+    @Setup
+    public void setUp() {
+        webCrawlerDriver = FakeBrowser.open(new FakeWebDriver(domSize, 1000, latencyMicros, true));
+        links = By.xpath(ApplicationCrawler.LINKS_XPATH);
+    }
+
+    @Benchmark
+    public List<String> getText() {
+        return webCrawlerDriver.getText(links);
+    }
+
+    @Benchmark
+    public List<String> getHref() {
+        return webCrawlerDriver.getHref(links);
+    }
+
+    @Benchmark
+    public List<HarvestedLink> harvestLinks() {
+        return webCrawlerDriver.harvestLinks(links);
+    }
+}
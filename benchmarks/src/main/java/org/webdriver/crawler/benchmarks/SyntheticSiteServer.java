@@ -0,0 +1,180 @@
+package org.webdriver.crawler.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates synthetic sites on an embedded HTTP server bound to the loopback address, so crawl speed can be
+ * measured without the latency of live sites. Site k is served at http://localhost:&lt;port&gt;/site&lt;k&gt;/page/&lt;n&gt;.
+ * <p>
+ * Pages form a tree: page n links to its children n * fanOut + 1 .. n * fanOut + fanOut (while below the page
+ * count and the depth limit) and back to page 0. Optionally:
+ * <ul>
+ * <li>the last child link of every page is rendered by JavaScript (no markup in the HTML), only a browser finds it</li>
+ * <li>the first child link opens in a popup (target=_blank)</li>
+ * <li>every page links to the same site on 127.0.0.1, another domain for the crawler</li>
+ * <li>every response is delayed</li>
+ * </ul>
+ * System properties read by {@link #fromProperties()}: synthetic.pages (default 500), synthetic.fan.out (5),
+ * synthetic.depth (10), synthetic.js.sections (true), synthetic.popups (true), synthetic.cross.domain (true),
+ * synthetic.delay.millis (0).
+ */
+public class SyntheticSiteServer implements Closeable {
+
+    private static final Pattern PAGE_PATH = Pattern.compile("^/site(\\d+)/page/(\\d+)$");
+
+    private final int pages;
+    private final int fanOut;
+    private final int depth;
+    private final boolean jsSections;
+    private final boolean popups;
+    private final boolean crossDomain;
+    private final long delayMillis;
+
+    private final Set<String> servedPaths = ConcurrentHashMap.newKeySet();
+    private final AtomicLong requests = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public SyntheticSiteServer(int pages, int fanOut, int depth, boolean jsSections, boolean popups, boolean crossDomain, long delayMillis) {
+        this.pages = Math.max(1, pages);
+        this.fanOut = Math.max(1, fanOut);
+        this.depth = depth;
+        this.jsSections = jsSections;
+        this.popups = popups;
+        this.crossDomain = crossDomain;
+        this.delayMillis = delayMillis;
+    }
+
+    public static SyntheticSiteServer fromProperties() {
+        return new SyntheticSiteServer(Integer.getInteger("synthetic.pages", 500), Integer.getInteger("synthetic.fan.out", 5),
+                Integer.getInteger("synthetic.depth", 10), Boolean.parseBoolean(System.getProperty("synthetic.js.sections", "true")),
+                Boolean.parseBoolean(System.getProperty("synthetic.popups", "true")),
+                Boolean.parseBoolean(System.getProperty("synthetic.cross.domain", "true")), Long.getLong("synthetic.delay.millis", 0L));
+    }
+
+    public SyntheticSiteServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return url of the first page of the given site
+     */
+    public String getSiteUrl(int site) {
+        return "http://localhost:" + getPort() + "/site" + site + "/page/0";
+    }
+
+    /**
+     * @return the number of different pages served
+     */
+    public int getServedPages() {
+        return servedPaths.size();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (delayMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        Matcher matcher = PAGE_PATH.matcher(exchange.getRequestURI().getPath());
+        int page = matcher.matches() ? Integer.parseInt(matcher.group(2)) : -1;
+        if (page < 0 || page >= pages) {
+            respond(exchange, 404, "<html><body>Not found</body></html>");
+            return;
+        }
+        servedPaths.add(exchange.getRequestHeaders().getFirst("Host") + exchange.getRequestURI().getPath());
+        respond(exchange, 200, render(Integer.parseInt(matcher.group(1)), page));
+    }
+
+    String render(int site, int page) {
+        String prefix = "/site" + site + "/page/";
+        StringBuilder html = new StringBuilder("<html><head><title>Site ").append(site).append(" page ").append(page)
+                .append("</title></head><body><h1>Page ").append(page).append("</h1><p>Synthetic page generated for crawl benchmarks.</p>");
+        html.append("<a href=\"").append(prefix).append("0\">Home</a> ");
+        StringBuilder scripted = new StringBuilder();
+        if (depthOf(page) < depth) {
+            for (int child = page * fanOut + 1; child <= page * fanOut + fanOut && child < pages; child++) {
+                boolean last = child == page * fanOut + fanOut || child == pages - 1;
+                if (jsSections && last && child != page * fanOut + 1) {
+                    scripted.append("\\x3ca href=\\\"").append(prefix).append(child).append("\\\">Section ").append(child).append("\\x3c/a> ");
+                } else {
+                    html.append("<a href=\"").append(prefix).append(child).append('"')
+                            .append(popups && child == page * fanOut + 1 ? " target=\"_blank\"" : "")
+                            .append(">Page ").append(child).append("</a> ");
+                }
+            }
+        }
+        if (crossDomain) {
+            html.append("<a href=\"http://127.0.0.1:").append(getPort()).append(prefix).append(page).append("\">Partner</a> ");
+        }
+        if (scripted.length() > 0) {
+            html.append("<div id=\"section\"></div><script>")
+                    .append("document.getElementById('section').innerHTML = \"").append(scripted).append("\";</script>");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    int depthOf(int page) {
+        int level = 0;
+        while (page > 0) {
+            page = (page - 1) / fanOut;
+            level++;
+        }
+        return level;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
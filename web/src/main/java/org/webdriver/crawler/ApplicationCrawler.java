@@ -6,15 +6,38 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.openqa.selenium.By;
-import org.openqa.selenium.Platform;
-import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.webdriver.crawler.dedupe.NearDuplicateIndex;
+import org.webdriver.crawler.executer.LaunchProfile;
 import org.webdriver.crawler.executer.SiteExecution;
+import org.webdriver.crawler.executer.VirtualThreads;
+import org.webdriver.crawler.executer.WebDriverSessionPool;
+import org.webdriver.crawler.fetch.FetchedPage;
+import org.webdriver.crawler.fetch.HttpPageFetcher;
+import org.webdriver.crawler.frontier.ConcurrentFrontier;
+import org.webdriver.crawler.frontier.FrontierEntry;
+import org.webdriver.crawler.frontier.FrontierStrategy;
+import org.webdriver.crawler.frontier.PersistentFrontier;
+import org.webdriver.crawler.frontier.UrlCanonicalizer;
 import org.webdriver.crawler.helpers.ApplicationCrawlerHelper;
+import org.webdriver.crawler.helpers.HarvestedLink;
+import org.webdriver.crawler.helpers.PageSettleDetector;
+import org.webdriver.crawler.helpers.SiteProperties;
+import org.webdriver.crawler.metrics.SiteMetrics;
+import org.webdriver.crawler.results.ResultsSink;
+import org.webdriver.crawler.results.SiteResult;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static java.lang.System.currentTimeMillis;
@@ -29,15 +52,24 @@ public class ApplicationCrawler {
     private static final long FUSE_TIMEOUT = toLong("fuse.timeout.seconds", 250L);
     private static final int FUSE_PATHS = toInt("fuse.paths", 4);
     private static final int FUSE_CLICKS_IN_PATH = toInt("fuse.clicks", 10);
+//    Adding the not(contains(@href, 'mailto')) to the xpath to avoid from clicking on "emails addresses" this cause in some machines to open the email application
+    public static final String LINKS_XPATH = "//a[text() and @href and not(contains(@href, 'mailto'))]";
 
     private static final ThreadLocal<String> threadLocal = new ThreadLocal<>();
     public static final String TARGET_TEST_CLASSES_GENERATED_FLOWS = "target/test-classes/generatedFlows";
+    private static final String FRONTIER_DIRECTORY = System.getProperty("frontier.directory", "target/frontier");
 
     private final DesiredCapabilities desiredCapabilities;
-    private final WebCrawlerDriver webCrawlerDriver;
     private final Site site;
+    private WebCrawlerDriver webCrawlerDriver;
+    private WebDriverSessionPool sessionPool;
+    private PersistentFrontier frontier;
+    private NearDuplicateIndex nearDuplicates;
+    private UrlCanonicalizer canonicalizer;
 
     private long startTestTime;
+    private long startWaitNanos;
+    private long startWorkNanos;
 
     private static long toLong(String key, long defaultValue) {
         try {
@@ -54,17 +86,13 @@ public class ApplicationCrawler {
     }
 
     public ApplicationCrawler(Site site) {
-        this.webCrawlerDriver = new WebCrawlerDriver(this.desiredCapabilities = initCapabilities());
+        this.desiredCapabilities = initCapabilities();
         this.site = site;
     }
 
-    private static DesiredCapabilities initCapabilities() {
-        DesiredCapabilities desiredCapabilities = DesiredCapabilities.chrome();
-        desiredCapabilities.setPlatform(Platform.WINDOWS);
-        ChromeOptions chromeOptions = new ChromeOptions();
-        chromeOptions.addArguments("incognito", "test-type", "disable-extensions");
-        desiredCapabilities.setCapability(ChromeOptions.CAPABILITY, chromeOptions);
-        return desiredCapabilities;
+    @SiteExecution.SessionCapabilities
+    public static DesiredCapabilities initCapabilities() {
+        return LaunchProfile.current().capabilities();
     }
 
     @Parameterized.Parameters
@@ -76,31 +104,50 @@ public class ApplicationCrawler {
     @Before
     public void init() {
         this.startTestTime = currentTimeMillis();
-        this.webCrawlerDriver.initialize();
+        this.startWaitNanos = SiteMetrics.getWaitNanos(site.getSiteName());
+        this.startWorkNanos = SiteMetrics.getWorkNanos(site.getSiteName());
+        this.sessionPool = SiteExecution.getSessionPool();
+        this.webCrawlerDriver = borrowSession();
+        this.webCrawlerDriver.setPageSettleDetector(PageSettleDetector.forSite(site));
+        this.site.startStory(TARGET_TEST_CLASSES_GENERATED_FLOWS);
+        this.canonicalizer = UrlCanonicalizer.forSite(site);
+        this.nearDuplicates = NearDuplicateIndex.forSite(site);
+        if (SiteProperties.getBoolean(site, "frontier.persistent", false)) {
+            try {
+                this.frontier = new PersistentFrontier(new File(FRONTIER_DIRECTORY, site.getSiteName()));
+            } catch (IOException ioException) {
+                throw new RuntimeException("Failed to open the frontier of " + site, ioException);
+            }
+        }
     }
 
     @Test
     public void crawlingApplication() {
+        FrontierStrategy strategy = FrontierStrategy.forSite(site);
+        boolean navigateByHref = !"text".equalsIgnoreCase(SiteProperties.getString(site, "navigation.mode", "href"));
+        if ("hybrid".equalsIgnoreCase(SiteProperties.getString(site, "crawl.mode", "browser"))) {
+            crawlingHybrid(strategy != null ? strategy : new FrontierStrategy.RandomOrder(Integer.MAX_VALUE, FrontierStrategy.newRandom(site)));
+            return;
+        }
+        if (SiteProperties.getInt(site, "crawl.workers", 1) > 1 && strategy == null) {
+            strategy = new FrontierStrategy.BreadthFirst(SiteProperties.getInt(site, "frontier.capacity", 100000));
+        }
+        if (strategy != null && navigateByHref) {
+            crawlingFrontier(strategy);
+            return;
+        }
         Set<String> clickedHref = new HashSet<>();
         site.addAction(CrawlerAction.getUrl(site.getUrl())).doIt(webCrawlerDriver).reportSuccessful();
         String domain = webCrawlerDriver.getCurrentDomain();
-        Random random = new Random();
+        Random random = FrontierStrategy.newRandom(site);
+        markVisited(canonicalizer.canonicalizeVisited(site.getUrl()));
 
         boolean domainWasChangeCounter = false;
 
         while (true) {
-//            Adding the not(contains(@href, 'mailto')) to the xpath to avoid from clicking on "emails addresses" this cause in some machines to open the email application
-            List<String> elements = new ArrayList<>();
-            int retry = 6;
-            while (retry > 0) {
-                List<String> temp = webCrawlerDriver.getText(By.xpath("//a[text() and @href and not(contains(@href, 'mailto'))]"));
-                if (temp.containsAll(elements) && elements.containsAll(temp)) {
-                    break;
-                } else {
-                    elements = temp;
-                    try {retry--; TimeUnit.SECONDS.sleep(5);} catch (Exception e) {return;}
-                }
-            }
+            webCrawlerDriver.waitForPageToSettle();
+            List<String> elements = navigateByHref ? null : webCrawlerDriver.getText(By.xpath(LINKS_XPATH));
+            List<HarvestedLink> links = navigateByHref ? webCrawlerDriver.harvestLinks(By.xpath(LINKS_XPATH)) : null;
             String currentDomain = webCrawlerDriver.getCurrentDomain();
             if (!domain.equalsIgnoreCase(currentDomain)) {
                 if (domainWasChangeCounter) {
@@ -113,39 +160,17 @@ public class ApplicationCrawler {
                 continue;
             }
             domainWasChangeCounter = false;
-            boolean nothingWasClickedHere = true;
-            while (!elements.isEmpty()) {
-                int i = random.nextInt(elements.size());
-                String text = elements.remove(i);
-                By linkLocation =
-                        By.xpath(String.format("//a[contains(translate(.,'ABCDEFGHIJKLMNOPQRSTUVWXYZ','abcdefghijklmnopqrstuvwxyz'),'%s') and @href]", text.toLowerCase()));
-                if (!clickedHref.contains(text) &&
-                        webCrawlerDriver.isAvailable(linkLocation)) {
-                    try {
-                        site.addAction(CrawlerAction.clickOn(linkLocation)).doIt(webCrawlerDriver).reportSuccessful();
-                        nothingWasClickedHere = false;
-                    } catch (Throwable throwable) {
-                        log.info("Skipping: Failed to click on " + text);
-                        site.removeLastAddAction();
-                        continue;
-                    }
-                    clickedHref.add(text);
-                    break;
-                }
+            fingerprint(webCrawlerDriver);
+            boolean nothingWasClickedHere = navigateByHref ?
+                    !followNextLink(links, domain, clickedHref, random) : !clickNextText(elements, clickedHref, random);
+            if (nothingWasClickedHere && navigateByHref && resumeFromFrontier(clickedHref)) {
+                nothingWasClickedHere = false;
             }
 
-//            Check run fuse
-            if (clickedHref.size() >= FUSE_CLICKS_IN_PATH * FUSE_PATHS) {
-                log.info("Reached clicks and paths fuse (" + (FUSE_CLICKS_IN_PATH * FUSE_PATHS) + ")");
+            if (isFuseReached(clickedHref.size())) {
                 break;
             }
 
-            if (TimeUnit.SECONDS.convert(currentTimeMillis() - startTestTime, TimeUnit.MILLISECONDS) > FUSE_TIMEOUT) {
-                log.info("Reached timeout fuse (" + FUSE_TIMEOUT + " seconds)");
-                break;
-            }
-
-//            End - Check run fuse
             Set<String> windowHandles = webCrawlerDriver.getWrappedDriver().getWindowHandles();
             if (windowHandles.size() > 1) {
                 this.site.addAction(CrawlerAction.closeTabs()).doIt(webCrawlerDriver).reportSuccessful();
@@ -159,14 +184,423 @@ public class ApplicationCrawler {
                 site.addAction(CrawlerAction.getUrl(site.getUrl())).doIt(webCrawlerDriver).reportSuccessful();
             }
         }
-        this.site.writeStory(TARGET_TEST_CLASSES_GENERATED_FLOWS);
+        reportCoverage("walk", clickedHref.size() + 1);
+    }
+
+    /**
+     * Crawl driven by a frontier strategy: the same domain links of each page are added to the frontier and the
+     * strategy decides which url is navigated to next. Script driven anchors are not urls, they are only clicked
+     * by the random walk.
+     * With crawl.workers greater than 1 that many sessions crawl the site in parallel, sharing the frontier and the
+     * visited-set, each worker records its own actions and they are merged into the site story at the end. Once
+     * the shared frontier is drained it is refilled from the persistent frontier and the deferred near-duplicates.
+     */
+    private void crawlingFrontier(FrontierStrategy strategy) {
+        String root = canonicalizer.canonicalizeVisited(site.getUrl());
+        final ConcurrentFrontier shared = new ConcurrentFrontier(strategy, new ConcurrentFrontier.Refill() {
+            @Override
+            public FrontierEntry poll() {
+                String url = pollFrontier();
+                return url == null ? null : new FrontierEntry(url, "", 1, 0);
+            }
+        });
+        final Set<String> discovered = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger visitedPages = new AtomicInteger();
+        final AtomicReference<String> domain = new AtomicReference<>();
+        discovered.add(root);
+        shared.add(new FrontierEntry(root, site.getSiteName(), 0, 0));
+
+        int workers = Math.max(1, SiteProperties.getInt(site, "crawl.workers", 1));
+        List<Site> lanes = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService workerExecutor = workers > 1 ? VirtualThreads.newExecutor("crawl-worker-", workers - 1) : null;
+        for (int index = 1; index < workers; index++) {
+            final Site lane = site.newLane();
+            lanes.add(lane);
+            futures.add(workerExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    WebCrawlerDriver workerDriver = borrowSession();
+                    try {
+                        crawlWorker(workerDriver, lane, shared, discovered, domain, visitedPages);
+                    } finally {
+                        releaseSession(workerDriver);
+                    }
+                }
+            }));
+        }
+        try {
+            crawlWorker(webCrawlerDriver, site, shared, discovered, domain, visitedPages);
+        } finally {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception exception) {
+                    log.log(Level.INFO, "Crawl worker of " + site + " failed", exception);
+                }
+            }
+            if (workerExecutor != null) {
+                workerExecutor.shutdown();
+            }
+        }
+        site.mergeActions(lanes);
+        reportCoverage(shared.getName() + (workers > 1 ? " x" + workers : ""), visitedPages.get());
+    }
+
+    private void crawlWorker(WebCrawlerDriver driver, Site lane, ConcurrentFrontier shared, Set<String> discovered,
+                             AtomicReference<String> domain, AtomicInteger visitedPages) {
+        driver.setPageSettleDetector(webCrawlerDriver.getPageSettleDetector());
+        while (true) {
+            if (isFuseReached(visitedPages.get())) {
+                shared.close();
+                break;
+            }
+            FrontierEntry entry;
+            try {
+                entry = shared.next();
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (entry == null) {
+                break;
+            }
+            try {
+                if (entry.getDepth() > 0 && (isVisited(entry.getUrl()) || !isWorthCrawling(entry.getUrl()))) {
+                    continue;
+                }
+                try {
+                    lane.addAction(entry.getDepth() == 0 ? CrawlerAction.getUrl(site.getUrl()) :
+                            CrawlerAction.followLink(entry.getText(), entry.getUrl())).doIt(driver).reportSuccessful();
+                } catch (Throwable throwable) {
+                    log.info("Skipping: Failed to follow " + entry);
+                    lane.removeLastAddAction();
+                    continue;
+                }
+                markVisited(entry.getUrl());
+                visitedPages.incrementAndGet();
+                domain.compareAndSet(null, driver.getCurrentDomain());
+
+                driver.waitForPageToSettle();
+                fingerprint(driver);
+                List<FrontierEntry> found = new ArrayList<>();
+                for (HarvestedLink link : driver.harvestLinks(By.xpath(LINKS_XPATH))) {
+                    String url = link.isScriptDriven() ? null : canonicalizer.canonicalize(link.getHref());
+                    if (url != null && domain.get().equalsIgnoreCase(ApplicationCrawlerHelper.getHost(url)) && discovered.add(url) && !isVisited(url)) {
+                        found.add(new FrontierEntry(url, link.getText(), entry.getDepth() + 1, 0));
+                    }
+                }
+                for (FrontierEntry child : found) {
+                    shared.add(new FrontierEntry(child.getUrl(), child.getText(), child.getDepth(), found.size()));
+                    if (frontier != null) {
+                        offer(child.getUrl());
+                    }
+                }
+                if (driver.getWrappedDriver().getWindowHandles().size() > 1) {
+                    lane.addAction(CrawlerAction.closeTabs()).doIt(driver).reportSuccessful();
+                }
+            } catch (Throwable throwable) {
+                log.log(Level.INFO, "Skipping: Failed to crawl " + entry, throwable);
+            } finally {
+                shared.done();
+            }
+        }
+    }
+
+    private WebCrawlerDriver borrowSession() {
+        WebCrawlerDriver workerDriver;
+        if (sessionPool != null) {
+            workerDriver = sessionPool.borrow();
+        } else {
+            workerDriver = new WebCrawlerDriver(desiredCapabilities);
+            workerDriver.initialize();
+        }
+        workerDriver.setSite(site);
+        return workerDriver;
+    }
+
+    private void releaseSession(WebCrawlerDriver workerDriver) {
+        if (sessionPool != null) {
+            sessionPool.release(workerDriver);
+        } else {
+            workerDriver.quit();
+        }
+    }
+
+    private boolean isFuseReached(int visitedPages) {
+        if (visitedPages >= FUSE_CLICKS_IN_PATH * FUSE_PATHS) {
+            log.info("Reached clicks and paths fuse (" + (FUSE_CLICKS_IN_PATH * FUSE_PATHS) + ")");
+            return true;
+        }
+        if (TimeUnit.SECONDS.convert(currentTimeMillis() - startTestTime, TimeUnit.MILLISECONDS) > FUSE_TIMEOUT) {
+            log.info("Reached timeout fuse (" + FUSE_TIMEOUT + " seconds)");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Logs the unique pages reached per minute, so the frontier strategies can be compared
+     */
+    private void reportCoverage(String strategyName, int uniquePages) {
+        site.setPagesVisited(uniquePages);
+        long elapsed = Math.max(1, currentTimeMillis() - startTestTime);
+        log.info(String.format("%s: %d unique pages reached with the %s strategy in %,d Milli-Second (%.1f pages per minute)",
+                site, uniquePages, strategyName, elapsed, uniquePages * 60000.0 / elapsed));
+    }
+
+    /**
+     * HTTP first crawl: pages are fetched with a plain HTTP client and their links read by a streaming tokenizer,
+     * the browser renders only the pages the heuristic (or the hybrid.browser.pattern site rule) says need JavaScript
+     */
+    private void crawlingHybrid(FrontierStrategy strategy) {
+        HttpPageFetcher fetcher = new HttpPageFetcher(site);
+        String root = canonicalizer.canonicalizeVisited(site.getUrl());
+        String domain = ApplicationCrawlerHelper.getHost(root);
+        Set<String> discovered = new HashSet<>();
+        discovered.add(root);
+        int visitedPages = 0;
+        FrontierEntry entry = new FrontierEntry(root, site.getSiteName(), 0, 0);
+
+        for (; entry != null; entry = strategy.next()) {
+            String url = entry.getUrl();
+            if (visitedPages > 0 && isVisited(url)) {
+                continue;
+            }
+            List<String> hrefs = new ArrayList<>();
+            try {
+                CrawlerAction.HttpGet httpGet = CrawlerAction.httpGet(url, fetcher);
+                site.addAction(httpGet).doIt(webCrawlerDriver).reportSuccessful();
+                FetchedPage page = httpGet.getPage();
+                String reason = fetcher.getBrowserReason(page);
+                if (reason != null) {
+                    site.addAction(CrawlerAction.renderInBrowser(url, reason)).doIt(webCrawlerDriver).reportSuccessful();
+                    for (HarvestedLink link : webCrawlerDriver.harvestLinks(By.xpath(LINKS_XPATH))) {
+                        if (!link.isScriptDriven()) {
+                            hrefs.add(link.getHref());
+                        }
+                    }
+                } else {
+                    for (FetchedPage.Link link : page.getLinks()) {
+                        hrefs.add(link.getHref());
+                    }
+                }
+            } catch (Throwable throwable) {
+                log.info("Skipping: Failed to crawl " + url + " (" + throwable.getMessage() + ")");
+                site.removeLastAddAction();
+                continue;
+            }
+            visitedPages++;
+            markVisited(url);
+            List<String> found = new ArrayList<>();
+            for (String href : hrefs) {
+                String canonical = canonicalizer.canonicalize(href);
+                if (canonical != null && domain.equalsIgnoreCase(ApplicationCrawlerHelper.getHost(canonical)) &&
+                        discovered.add(canonical)) {
+                    found.add(canonical);
+                }
+            }
+            for (String canonical : found) {
+                strategy.add(new FrontierEntry(canonical, "", entry.getDepth() + 1, found.size()));
+                if (frontier != null) {
+                    offer(canonical);
+                }
+            }
+
+            if (isFuseReached(visitedPages)) {
+                break;
+            }
+        }
+        long elapsed = Math.max(1, currentTimeMillis() - startTestTime);
+        log.info(String.format("%s: %d pages in %,d Milli-Second (%.1f pages per second), %s",
+                site, visitedPages, elapsed, visitedPages * 1000.0 / elapsed, fetcher.getSummary()));
+        reportCoverage(strategy.getName(), visitedPages);
+    }
+
+    /**
+     * Legacy navigation: re-locates a random link by its text and clicks on it
+     * @return true when a link was clicked
+     */
+    private boolean clickNextText(List<String> elements, Set<String> clickedHref, Random random) {
+        while (!elements.isEmpty()) {
+            int i = random.nextInt(elements.size());
+            String text = elements.remove(i);
+            By linkLocation = ApplicationCrawlerHelper.byLinkText(text);
+            if (!clickedHref.contains(text) &&
+                    webCrawlerDriver.isAvailable(linkLocation)) {
+                try {
+                    site.addAction(CrawlerAction.clickOn(linkLocation)).doIt(webCrawlerDriver).reportSuccessful();
+                } catch (Throwable throwable) {
+                    log.info("Skipping: Failed to click on " + text);
+                    site.removeLastAddAction();
+                    continue;
+                }
+                clickedHref.add(text);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Href keyed navigation: plain links of the crawled domain are visited directly by their canonical href,
+     * only script driven anchors are clicked, located by their position in the harvest result.
+     * Plain links leaving the domain are skipped.
+     * @return true when a link was followed
+     */
+    private boolean followNextLink(List<HarvestedLink> links, String domain, Set<String> visited, Random random) {
+        if (frontier != null) {
+            for (HarvestedLink link : links) {
+                String url = link.isScriptDriven() ? null : canonicalizer.canonicalize(link.getHref());
+                if (url != null && domain.equalsIgnoreCase(ApplicationCrawlerHelper.getHost(url))) {
+                    offer(url);
+                }
+            }
+        }
+        while (!links.isEmpty()) {
+            HarvestedLink link = links.remove(random.nextInt(links.size()));
+            CrawlerAction action;
+            String key;
+            if (link.isScriptDriven()) {
+                if (link.getIndex() < 0) {
+                    continue;
+                }
+                key = "click:" + link.getText();
+                action = CrawlerAction.clickOn(ApplicationCrawlerHelper.byIndex(LINKS_XPATH, link.getIndex()), link.getText());
+            } else {
+                key = canonicalizer.canonicalize(link.getHref());
+                if (key == null || !domain.equalsIgnoreCase(ApplicationCrawlerHelper.getHost(key))) {
+                    continue;
+                }
+                action = CrawlerAction.followLink(link.getText(), key);
+            }
+            if (visited.contains(key) || isVisited(key) || (!link.isScriptDriven() && !isWorthCrawling(key))) {
+                continue;
+            }
+            try {
+                site.addAction(action).doIt(webCrawlerDriver).reportSuccessful();
+            } catch (Throwable throwable) {
+                log.info("Skipping: Failed to follow " + link);
+                site.removeLastAddAction();
+                continue;
+            }
+            visited.add(key);
+            markVisited(key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * When the current page has nothing left to follow, continues from the next url queued in the persistent
+     * frontier (also the way a crawl resumes from the checkpoint of an earlier run)
+     * @return true when navigated to a queued url
+     */
+    private boolean resumeFromFrontier(Set<String> visited) {
+        String url;
+        while ((url = pollFrontier()) != null) {
+            try {
+                site.addAction(CrawlerAction.getUrl(url)).doIt(webCrawlerDriver).reportSuccessful();
+            } catch (Throwable throwable) {
+                log.info("Skipping: Failed to navigate to queued url " + url);
+                site.removeLastAddAction();
+                continue;
+            }
+            visited.add(url);
+            markVisited(url);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the next url queued in the persistent frontier and not visited yet, then the next url deferred as a
+     * near-duplicate, null when there is none
+     */
+    private String pollFrontier() {
+        if (frontier != null) {
+            try {
+                String url = frontier.poll();
+                if (url != null) {
+                    return url;
+                }
+            } catch (IOException ioException) {
+                log.log(Level.INFO, "Failed to read from the frontier of " + site, ioException);
+            }
+        }
+        return nearDuplicates != null ? nearDuplicates.pollDeferred() : null;
+    }
+
+    /**
+     * Adds the fingerprint of the page the driver is on to the near-duplicate index of the site
+     */
+    private void fingerprint(WebCrawlerDriver driver) {
+        if (nearDuplicates == null) {
+            return;
+        }
+        Long fingerprint = driver.fingerprintPage();
+        String url = fingerprint == null ? null : canonicalizer.canonicalizeVisited(driver.getWrappedDriver().getCurrentUrl());
+        if (url != null) {
+            nearDuplicates.add(url, fingerprint);
+        }
+    }
+
+    /**
+     * @return false when the url leads into a template clone and is skipped or deferred (see {@link NearDuplicateIndex})
+     */
+    private boolean isWorthCrawling(String url) {
+        return nearDuplicates == null || nearDuplicates.check(url) == NearDuplicateIndex.Decision.CRAWL;
+    }
+
+    private void offer(String url) {
+        try {
+            frontier.offer(url);
+        } catch (IOException ioException) {
+            log.log(Level.INFO, "Failed to add " + url + " to the frontier of " + site, ioException);
+        }
+    }
+
+    private boolean isVisited(String url) {
+        try {
+            return frontier != null && frontier.isVisited(url);
+        } catch (IOException ioException) {
+            log.log(Level.INFO, "Failed to read from the frontier of " + site, ioException);
+            return false;
+        }
+    }
+
+    private void markVisited(String url) {
+        if (frontier == null || url == null) {
+            return;
+        }
+        try {
+            frontier.markVisited(url);
+        } catch (IOException ioException) {
+            log.log(Level.INFO, "Failed to record " + url + " in the frontier of " + site, ioException);
+        }
     }
 
     @After
     public void end() {
-        this.webCrawlerDriver.quit();
+        log.info(webCrawlerDriver.getPageSettleDetector().getSummary());
+        releaseSession(webCrawlerDriver);
+        log.info(canonicalizer.getSummary());
+        if (nearDuplicates != null) {
+            log.info(nearDuplicates.getSummary());
+        }
+        if (frontier != null) {
+            try {
+                frontier.close();
+                log.info(frontier.getSummary());
+            } catch (IOException ioException) {
+                log.log(Level.INFO, "Failed to checkpoint the frontier of " + site, ioException);
+            }
+        }
         this.site.end();
-        ApplicationCrawlerHelper.write(TARGET_TEST_CLASSES_GENERATED_FLOWS + "/flowDurations.properties", site.getSiteName(), String.valueOf(currentTimeMillis() - startTestTime));
+        ResultsSink.forFile(TARGET_TEST_CLASSES_GENERATED_FLOWS + "/flowDurations.properties").submit(
+                new SiteResult(site.getSiteName(), currentTimeMillis() - startTestTime, site.getPagesVisited(), site.getSteps(), site.getFailedSteps(),
+                        TimeUnit.NANOSECONDS.toMillis(SiteMetrics.getWaitNanos(site.getSiteName()) - startWaitNanos),
+                        TimeUnit.NANOSECONDS.toMillis(SiteMetrics.getWorkNanos(site.getSiteName()) - startWorkNanos)));
     }
 
 }
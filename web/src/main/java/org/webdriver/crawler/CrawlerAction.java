@@ -2,7 +2,13 @@ package org.webdriver.crawler;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
+import org.webdriver.crawler.capture.PageCapture;
+import org.webdriver.crawler.fetch.FetchedPage;
+import org.webdriver.crawler.fetch.HttpPageFetcher;
+import org.webdriver.crawler.metrics.Metrics;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
@@ -20,6 +26,11 @@ public abstract class CrawlerAction {
     private static final Logger logger = Logger.getLogger(CrawlerAction.class.getName());
 
     private final String step;
+    private long startTime;
+    private long startNanos;
+    private Site site;
+    private boolean recorded;
+    private WebCrawlerDriver driver;
 
     ThreadLocal<DateFormat> dateFormat = new ThreadLocal<DateFormat>() {
         @Override
@@ -46,19 +57,101 @@ public abstract class CrawlerAction {
         return step;
     }
 
+    /**
+     * @return what the action works on (url or locator) so that it can be replayed, empty when nothing
+     */
+    public String getTarget() {
+        return "";
+    }
+
+    /**
+     * @return time the action was started at, 0 when it was not done yet
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * The site whose story records the outcome of this action, set when the action is added to the site
+     */
+    void setSite(Site site) {
+        this.site = site;
+    }
+
     public CrawlerAction doIt(WebCrawlerDriver webCrawlerDriver) {
-        startTimeKeeper.set(System.currentTimeMillis());
-        return perform(webCrawlerDriver);
+        startTime = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        startTimeKeeper.set(startTime);
+        recorded = false;
+        driver = webCrawlerDriver;
+        try {
+            return perform(webCrawlerDriver);
+        } catch (RuntimeException | Error throwable) {
+            record(Site.FAILED);
+            throw throwable;
+        }
     }
 
     public void reportSuccessful() {
+        record(Site.SUCCESSFUL);
         logger.log(Level.INFO, formatStep());
+        capture();
     }
 
     public void reportFailed(Throwable throwable) {
+        record(Site.FAILED);
         logger.log(Level.INFO, formatStep(), throwable);
     }
 
+    private void record(String outcome) {
+        if (recorded) {
+            return;
+        }
+        recorded = true;
+        long durationNanos = System.nanoTime() - startNanos;
+        String type = getClass().getSimpleName();
+        Metrics.histogram(Metrics.ACTION_LATENCY, "type", type).record(durationNanos);
+        if (Site.FAILED.equals(outcome)) {
+            Metrics.counter(Metrics.ACTION_FAILURES, "type", type).increment();
+        }
+        if (site != null) {
+            Metrics.histogram(Metrics.SITE_ACTION_LATENCY, "site", site.getSiteName(), "type", type).record(durationNanos);
+            site.record(this, outcome, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        }
+    }
+
+    /**
+     * Hands the page a successful action ended on to the {@link PageCapture} of its site, only the raw bytes are
+     * grabbed on this thread
+     */
+    private void capture() {
+        WebCrawlerDriver doneWith = driver;
+        driver = null;
+        if (doneWith == null || site == null) {
+            return;
+        }
+        if (capturesPage()) {
+            PageCapture.capture(site, doneWith.getWrappedDriver());
+        } else if (capturesSettledPage()) {
+            doneWith.captureOnceSettled(site);
+        }
+    }
+
+    /**
+     * @return true when the action ends on a settled page worth capturing
+     */
+    protected boolean capturesPage() {
+        return false;
+    }
+
+    /**
+     * @return true when the action ends on a page worth capturing which may still be loading, it is captured by the
+     * next {@link WebCrawlerDriver#waitForPageToSettle()} instead of settling it twice
+     */
+    protected boolean capturesSettledPage() {
+        return false;
+    }
+
     protected String formatStep() {
         long startTime = startTimeKeeper.get(); startTimeKeeper.remove();
         long stepTime = System.currentTimeMillis() - startTime;
@@ -69,10 +162,26 @@ public abstract class CrawlerAction {
         return new ClickOn(by);
     }
 
+    public static CrawlerAction clickOn(By by, String linkText) {
+        return new ClickOn(by, linkText);
+    }
+
     public static CrawlerAction getUrl(String url) {
         return new GetURL(url);
     }
 
+    public static CrawlerAction followLink(String linkText, String url) {
+        return new FollowLink(linkText, url);
+    }
+
+    public static HttpGet httpGet(String url, HttpPageFetcher fetcher) {
+        return new HttpGet(url, fetcher);
+    }
+
+    public static CrawlerAction renderInBrowser(String url, String reason) {
+        return new RenderInBrowser(url, reason);
+    }
+
     public static CrawlerAction goBack() {
         return new GoBack();
     }
@@ -92,6 +201,11 @@ public abstract class CrawlerAction {
             super(String.format("Click on element with locator: '%s'", by.toString().replace("By.xpath: ", "xpath:")));
             this.by = by;
         }
+
+        public ClickOn(By by, String linkText) {
+            super(String.format("Click on script driven link '%s' with locator: '%s'", linkText, by.toString().replace("By.xpath: ", "xpath:")));
+            this.by = by;
+        }
     
         @Override
         public CrawlerAction perform(WebCrawlerDriver webCrawlerDriver) {
@@ -99,6 +213,16 @@ public abstract class CrawlerAction {
             return this;
         }
 
+        @Override
+        public String getTarget() {
+            return by.toString();
+        }
+
+        @Override
+        protected boolean capturesSettledPage() {
+            return true;
+        }
+
     }
 
     /**
@@ -109,19 +233,88 @@ public abstract class CrawlerAction {
         private final String url;
     
         public GetURL(String url) {
-            super(String.format("Navigating to url: %s", url));
+            this(String.format("Navigating to url: %s", url), url);
+        }
+
+        protected GetURL(String step, String url) {
+            super(step);
             this.url = url;
         }
         @Override
         public CrawlerAction perform(WebCrawlerDriver webCrawlerDriver) {
             webCrawlerDriver.get(url);
+            webCrawlerDriver.waitForPageToSettle();
+            return this;
+        }
+
+        @Override
+        public String getTarget() {
+            return url;
+        }
+
+        @Override
+        protected boolean capturesPage() {
+            return true;
+        }
+
+    }
+
+    /**
+     * Follows a harvested link by navigating directly to its href instead of clicking on it
+     */
+    public static class FollowLink extends GetURL {
+
+        public FollowLink(String linkText, String url) {
+            super(String.format("Following link '%s' by direct navigation to url: %s", linkText, url), url);
+        }
+
+    }
+
+    /**
+     * Navigates the browser to a page the hybrid crawl could not handle over plain HTTP
+     */
+    public static class RenderInBrowser extends GetURL {
+
+        public RenderInBrowser(String url, String reason) {
+            super(String.format("Navigating to url: %s (rendered in browser: %s)", url, reason), url);
+        }
+
+    }
+
+    /**
+     * Fetches a page with the plain HTTP client of the hybrid crawl, the browser is not used
+     */
+    public static class HttpGet extends CrawlerAction {
+
+        private final String url;
+        private final HttpPageFetcher fetcher;
+        private FetchedPage page;
+
+        public HttpGet(String url, HttpPageFetcher fetcher) {
+            super(String.format("Fetching over HTTP url: %s", url));
+            this.url = url;
+            this.fetcher = fetcher;
+        }
+
+        @Override
+        public CrawlerAction perform(WebCrawlerDriver webCrawlerDriver) {
             try {
-                TimeUnit.SECONDS.sleep(2);
-            } catch (Exception e) {
+                page = fetcher.fetch(url);
+            } catch (IOException ioException) {
+                throw new UncheckedIOException("Failed to fetch " + url, ioException);
             }
             return this;
         }
 
+        public FetchedPage getPage() {
+            return page;
+        }
+
+        @Override
+        public String getTarget() {
+            return url;
+        }
+
     }
 
     /**
@@ -0,0 +1,157 @@
+package org.webdriver.crawler;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.webdriver.crawler.executer.SiteExecution;
+import org.webdriver.crawler.executer.WebDriverSessionPool;
+import org.webdriver.crawler.flow.FlowReader;
+import org.webdriver.crawler.flow.FlowReplayer;
+import org.webdriver.crawler.flow.FlowStep;
+import org.webdriver.crawler.helpers.PageSettleDetector;
+import org.webdriver.crawler.helpers.SiteProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays the flows recorded by {@link ApplicationCrawler}, one site per flow file, in parallel with the same
+ * {@link SiteExecution} scheduler and session pool. Pages are considered settled after a short quiet window, clicks
+ * wait a short time for their element, so the replay runs as fast as the pages allow.
+ * <p>
+ * Writes, per flow, the recorded and replayed duration of every step to target/test-classes/replays/&lt;site&gt;.txt
+ * and logs the steps which became slower. System properties (per site overrides with {@link SiteProperties}):
+ * <ul>
+ * <li>replay.directory - folder of the flow files (default target/test-classes/generatedFlows)</li>
+ * <li>replay.settle.max.millis / replay.settle.quiet.millis - page settle bounds (default 5000 / 100)</li>
+ * <li>replay.element.wait.millis - how long a click waits for its element (default 2000)</li>
+ * <li>replay.regression.factor / replay.regression.min.millis - a step is a regression when slower than factor
+ * times its recording and by more than min millis (default 1.5 / 100)</li>
+ * <li>replay.fail.on.regression - fail the site when a step regressed or failed (default false)</li>
+ * </ul>
+ */
+@RunWith(SiteExecution.class)
+public class FlowReplay {
+
+    private static final Logger log = Logger.getLogger(FlowReplay.class.getName());
+    private static final String REPLAY_DIRECTORY = System.getProperty("replay.directory", ApplicationCrawler.TARGET_TEST_CLASSES_GENERATED_FLOWS);
+    public static final String TARGET_TEST_CLASSES_REPLAYS = "target/test-classes/replays";
+
+    private final Site site;
+    private final List<FlowStep> steps;
+    private WebDriverSessionPool sessionPool;
+    private WebCrawlerDriver webCrawlerDriver;
+
+    public FlowReplay(Site site, List<FlowStep> steps) {
+        this.site = site;
+        this.steps = steps;
+    }
+
+    @SiteExecution.SessionCapabilities
+    public static DesiredCapabilities initCapabilities() {
+        return ApplicationCrawler.initCapabilities();
+    }
+
+    @Parameterized.Parameters
+    public static List<Object[]> flows() {
+        List<Object[]> flows = new ArrayList<>();
+        File[] files = new File(REPLAY_DIRECTORY).listFiles();
+        if (files == null) {
+            log.info("No flows to replay in " + REPLAY_DIRECTORY);
+            return flows;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (!file.isFile() || !file.getName().endsWith(".txt")) {
+                continue;
+            }
+            try {
+                List<FlowStep> steps = FlowReader.read(file);
+                String url = FlowReader.getStartUrl(steps);
+                if (url == null) {
+                    log.info("Skipping " + file + ", it opens no page");
+                    continue;
+                }
+                flows.add(new Object[]{new Site(file.getName().substring(0, file.getName().length() - ".txt".length()), url), steps});
+            } catch (IOException ioException) {
+                log.log(Level.INFO, "Skipping " + file, ioException);
+            }
+        }
+        return flows;
+    }
+
+    @Before
+    public void init() {
+        this.sessionPool = SiteExecution.getSessionPool();
+        if (sessionPool != null) {
+            webCrawlerDriver = sessionPool.borrow();
+        } else {
+            webCrawlerDriver = new WebCrawlerDriver(initCapabilities());
+            webCrawlerDriver.initialize();
+        }
+        webCrawlerDriver.setSite(site);
+        webCrawlerDriver.setPageSettleDetector(PageSettleDetector.script(site.getSiteName(),
+                SiteProperties.getLong(site, "replay.settle.max.millis", 5000L), SiteProperties.getLong(site, "replay.settle.quiet.millis", 100L)));
+    }
+
+    @Test
+    public void replayFlow() throws IOException {
+        FlowReplayer replayer = new FlowReplayer(webCrawlerDriver, SiteProperties.getLong(site, "replay.element.wait.millis", 2000L));
+        List<FlowReplayer.ReplayedStep> replayed = replayer.replay(steps);
+
+        double factor = SiteProperties.getDouble(site, "replay.regression.factor", 1.5);
+        long minMillis = SiteProperties.getLong(site, "replay.regression.min.millis", 100L);
+        long recordedMillis = 0;
+        long replayedMillis = 0;
+        int regressions = 0;
+        int failures = 0;
+        File report = new File(TARGET_TEST_CLASSES_REPLAYS, site.getSiteName() + ".txt");
+        report.getParentFile().mkdirs();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(report.toPath(), StandardCharsets.UTF_8))) {
+            writer.println("# step\ttype\trecorded.millis\treplayed.millis\tdiff.millis\toutcome\ttarget\terror");
+            for (FlowReplayer.ReplayedStep step : replayed) {
+                FlowStep recorded = step.getRecorded();
+                recordedMillis += recorded.getDurationMillis();
+                replayedMillis += step.getReplayedMillis();
+                boolean regression = step.isRegression(factor, minMillis);
+                if (regression) {
+                    regressions++;
+                    log.info(String.format("%s: step %d %s %s took %,d Milli-Second, recorded %,d Milli-Second", site.getSiteName(), recorded.getStep(),
+                            recorded.getType(), recorded.getTarget(), step.getReplayedMillis(), recorded.getDurationMillis()));
+                }
+                if (!step.isSuccessful()) {
+                    failures++;
+                }
+                writer.println(String.format("%d\t%s\t%d\t%d\t%+d\t%s\t%s\t%s", recorded.getStep(), recorded.getType(), recorded.getDurationMillis(),
+                        step.getReplayedMillis(), step.getDifferenceMillis(), regression ? "SLOWER" : step.getOutcome(), recorded.getTarget(), step.getError()));
+            }
+        }
+        log.info(String.format("%s: replayed %d steps in %,d Milli-Second (recorded %,d Milli-Second), %d slower than x%.1f, %d failed, report %s",
+                site.getSiteName(), replayed.size(), replayedMillis, recordedMillis, regressions, factor, failures, report));
+        if (SiteProperties.getBoolean(site, "replay.fail.on.regression", false)) {
+            Assert.assertEquals(site.getSiteName() + ": regressed or failed steps, see " + report, 0, regressions + failures);
+        }
+    }
+
+    @After
+    public void end() {
+        log.info(webCrawlerDriver.getPageSettleDetector().getSummary());
+        if (sessionPool != null) {
+            sessionPool.release(webCrawlerDriver);
+        } else {
+            webCrawlerDriver.quit();
+        }
+    }
+}
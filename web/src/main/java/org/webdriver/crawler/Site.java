@@ -1,23 +1,63 @@
 package org.webdriver.crawler;
 
-import java.io.*;
-import java.nio.file.Files;
+import org.webdriver.crawler.flow.StoryWriter;
+import org.webdriver.crawler.helpers.SiteProperties;
+import org.webdriver.crawler.metrics.SiteMetrics;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Created by ganak on 7/1/2015.
  */
 public class Site {
 
-    private final List<CrawlerAction> actions = new ArrayList<>();
+    private static final Logger log = Logger.getLogger(Site.class.getName());
+
+    public static final String SUCCESSFUL = "OK";
+    public static final String FAILED = "FAILED";
+
+    /**
+     * Only the last actions are kept in memory, the whole story is streamed to the flow file by the {@link StoryWriter}
+     */
+    private final Deque<CrawlerAction> actions = new ArrayDeque<>();
+    private final int tailSize;
+    private final AtomicLong steps;
+    private final AtomicLong failedSteps;
+    private volatile long pagesVisited = -1;
 
     private final String siteName;
     private final String url;
+    private volatile StoryWriter story;
 
     public Site(String siteName, String url) {
+        this(siteName, url, new AtomicLong(), new AtomicLong());
+    }
+
+    private Site(String siteName, String url, AtomicLong steps, AtomicLong failedSteps) {
         this.siteName = siteName;
         this.url = url;
+        this.steps = steps;
+        this.failedSteps = failedSteps;
+        this.tailSize = Math.max(1, SiteProperties.getInt(this, "story.tail.size", 100));
+    }
+
+    /**
+     * @return a site recording the actions of one more worker crawling this site, its steps are streamed to the
+     * same story and counted with the steps of this site
+     */
+    public Site newLane() {
+        Site lane = new Site(siteName, url, steps, failedSteps);
+        lane.story = story;
+        return lane;
     }
 
     public String getSiteName() {
@@ -28,35 +68,105 @@ public class Site {
         return url;
     }
 
+    /**
+     * @return the last actions of the site (up to story.tail.size), oldest first
+     */
     public List<CrawlerAction> getActions(){
-        return actions;
+        return new ArrayList<>(actions);
     }
 
     public CrawlerAction addAction(CrawlerAction action) {
-        actions.add(action);
+        action.setSite(this);
+        actions.addLast(action);
+        if (actions.size() > tailSize) {
+            actions.removeFirst();
+        }
         return action;
     }
 
     public CrawlerAction removeLastAddAction() {
-        return actions.remove(actions.size() - 1);
+        return actions.pollLast();
     }
 
-    public void end() {
+    /**
+     * Merges the actions recorded by the workers which crawled this site in parallel into one tail, ordered by
+     * the time each action was started
+     */
+    public void mergeActions(List<Site> workers) {
+        List<CrawlerAction> merged = new ArrayList<>(actions);
+        for (Site worker : workers) {
+            merged.addAll(worker.getActions());
+        }
+        Collections.sort(merged, new Comparator<CrawlerAction>() {
+            @Override
+            public int compare(CrawlerAction first, CrawlerAction second) {
+                return Long.compare(first.getStartTime(), second.getStartTime());
+            }
+        });
+        actions.clear();
+        actions.addAll(merged.subList(Math.max(0, merged.size() - tailSize), merged.size()));
+    }
 
+    /**
+     * Starts streaming the story of the site to "&lt;outputFolder&gt;/&lt;site name&gt;.txt"
+     */
+    public void startStory(String outputFolder) {
+        try {
+            story = StoryWriter.forSite(this, outputFolder);
+        } catch (IOException ioException) {
+            log.log(Level.INFO, "Site: Failed to open the story of " + siteName + ", steps are only logged", ioException);
+        }
     }
 
-    public void writeStory(String outputFolder) {
-        List<String> lines = new ArrayList<>();
-        for (CrawlerAction currentAction : actions) {
-            lines.add(currentAction.getStep());
+    /**
+     * Appends the outcome of a done action to the story
+     */
+    void record(CrawlerAction action, String outcome, long durationMillis) {
+        steps.incrementAndGet();
+        if (FAILED.equals(outcome)) {
+            failedSteps.incrementAndGet();
+        }
+        StoryWriter writer = story;
+        if (writer == null) {
+            return;
         }
         try {
-            File file = new File(outputFolder, siteName + ".txt");
-            file.getParentFile().mkdirs();
-            Files.write(file.toPath(), lines);
-        } catch (Exception e) {
-            System.out.println("Site: Ignoring exception in the writeStory method, cause: " + e.getCause().getMessage());
+            writer.append(action.getClass().getSimpleName(), action.getStartTime(), durationMillis, outcome, action.getTarget(), action.getStep());
+        } catch (IOException ioException) {
+            log.log(Level.INFO, "Site: Ignoring exception while writing the story of " + siteName, ioException);
+        }
+    }
+
+    public long getSteps() {
+        return steps.get();
+    }
+
+    public long getFailedSteps() {
+        return failedSteps.get();
+    }
+
+    /**
+     * @return unique pages reached by the crawl of this site, -1 when not reported
+     */
+    public long getPagesVisited() {
+        return pagesVisited;
+    }
+
+    public void setPagesVisited(long pagesVisited) {
+        this.pagesVisited = pagesVisited;
+    }
+
+    public void end() {
+        StoryWriter writer = story;
+        if (writer != null) {
+            try {
+                writer.close();
+                log.info(String.format("%s: %,d steps written to %s", siteName, writer.getSteps(), writer.getFile()));
+            } catch (IOException ioException) {
+                log.log(Level.INFO, "Site: Ignoring exception while closing the story of " + siteName, ioException);
+            }
         }
+        SiteMetrics.logSummary(siteName);
     }
 
     public String toString() {
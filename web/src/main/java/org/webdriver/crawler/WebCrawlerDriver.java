@@ -19,16 +19,44 @@ import org.openqa.selenium.safari.SafariDriver;
 import org.openqa.selenium.safari.SafariOptions;
 import org.openqa.selenium.support.ui.FluentWait;
 import org.openqa.selenium.support.ui.Wait;
+import org.webdriver.crawler.capture.PageCapture;
+import org.webdriver.crawler.dedupe.PageFingerprint;
+import org.webdriver.crawler.executer.ChromeDevTools;
+import org.webdriver.crawler.executer.CommandLatency;
+import org.webdriver.crawler.executer.DriverServices;
+import org.webdriver.crawler.executer.HostLimiter;
+import org.webdriver.crawler.executer.LaunchProfile;
+import org.webdriver.crawler.executer.ProcessMemory;
+import org.webdriver.crawler.helpers.AdaptiveWait;
+import org.webdriver.crawler.helpers.ApplicationCrawlerHelper;
 import org.webdriver.crawler.helpers.ClickOnElement;
 import org.webdriver.crawler.helpers.FindVisibleElements;
+import org.webdriver.crawler.helpers.HarvestLinks;
+import org.webdriver.crawler.helpers.HarvestedLink;
+import org.webdriver.crawler.helpers.PageSettleDetector;
+import org.webdriver.crawler.helpers.SiteProperties;
+import org.webdriver.crawler.helpers.WaitHistory;
+import org.webdriver.crawler.metrics.Metrics;
+import org.webdriver.crawler.metrics.TimedWait;
+import org.webdriver.crawler.proxy.ResourceProxy;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,36 +67,111 @@ import java.util.logging.Logger;
 public class WebCrawlerDriver implements WrapsDriver {
 
     private static final Logger log = Logger.getLogger(WebCrawlerDriver.class.getName());
+    /**
+     * "script" (default) reads all the links in a single JavaScript call, "elements" uses WebDriver commands per element
+     */
+    private static final String HARVEST_MODE = System.getProperty("harvest.mode", "script");
+    private static final LaunchProfile LAUNCH_PROFILE = LaunchProfile.current();
+    private static final Collection<Class<? extends Throwable>> IGNORED_EXCEPTIONS = Arrays.<Class<? extends Throwable>>asList(
+            StaleElementReferenceException.class, NoSuchElementException.class, ElementNotVisibleException.class);
 
     private WebDriver webDriver = null;
     private Capabilities desiredCapabilities;
+    private boolean harvestByScript = "script".equalsIgnoreCase(HARVEST_MODE);
+    private boolean fingerprintByScript = true;
+    private PageSettleDetector pageSettleDetector = PageSettleDetector.forSite(null);
+    private boolean pageSettled = false;
+    /**
+     * Site whose current page is captured once it settled, null when none
+     */
+    private Site settledPageCapture;
+    private Site site;
+    /**
+     * Origins navigated to since the last {@link #reset()}, their state is cleared before the session is reused
+     */
+    private final Set<String> visitedOrigins = new LinkedHashSet<>();
+    private ResourceProxy resourceProxy;
+    private boolean devToolsBlocking = true;
+    private boolean urlsBlockedInBrowser = false;
+    private boolean sharedService;
+    /**
+     * Per session Chrome user data directory of a local session, also tells its processes apart
+     */
+    private Path userDataDir;
 
     public WebCrawlerDriver(Capabilities desiredCapabilities) {
         this.desiredCapabilities = desiredCapabilities;
     }
 
+    /**
+     * Wraps an already started WebDriver, {@link #initialize()} must not be called
+     */
+    public WebCrawlerDriver(Capabilities desiredCapabilities, WebDriver webDriver) {
+        this.desiredCapabilities = desiredCapabilities;
+        this.webDriver = webDriver;
+    }
+
     public void initialize() {
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         try {
-            webDriver = (getRemoteWebDriverUrl() != null) ? createRemoteWebDriver() : createLocalWebDriver();
-            try {
-                webDriver.manage().window().maximize();
-            } catch (Exception exception) {
-                log.log(Level.INFO, "*********** WebDriver failed to maximize ************", exception);
+            boolean remote = getRemoteWebDriverUrl() != null && System.getProperty("webdriver.factory") == null;
+            if (ResourceProxy.isEnabled(remote)) {
+                resourceProxy = new ResourceProxy();
+                resourceProxy.setSite(site);
+                desiredCapabilities = resourceProxy.configure(desiredCapabilities);
+                log.info("WebDriver session requests go through the resource proxy on port " + resourceProxy.getPort());
+            }
+            String factory = System.getProperty("webdriver.factory");
+            if (factory != null) {
+                webDriver = ((WebDriverFactory) Class.forName(factory).getConstructor().newInstance()).create(desiredCapabilities);
+            } else {
+                webDriver = (getRemoteWebDriverUrl() != null) ? createRemoteWebDriver() : createLocalWebDriver();
+            }
+            if (LAUNCH_PROFILE.maximizeWindow()) {
+                try {
+                    webDriver.manage().window().maximize();
+                } catch (Exception exception) {
+                    log.log(Level.INFO, "*********** WebDriver failed to maximize ************", exception);
+                }
             }
         } catch (Throwable throwable) {
             log.log(Level.INFO, "*********** WebDriver Initialization Failure ************", throwable);
+            if (resourceProxy != null) {
+                resourceProxy.close();
+                resourceProxy = null;
+            }
+            deleteUserDataDir();
             throw new RuntimeException("WebDriver Initialization Failure : " + throwable.getMessage(), throwable);
         }
-        log.log(Level.INFO,
-                "WebDriver initialization took " + TimeUnit.SECONDS.convert(System.currentTimeMillis() - startTime, TimeUnit.MILLISECONDS) + " seconds");
+        Metrics.histogram(Metrics.DRIVER_INIT_LATENCY, "browser", desiredCapabilities.getBrowserName(), "profile", LAUNCH_PROFILE.getName()).recordSince(startNanos);
+        log.log(Level.INFO, String.format("WebDriver initialization took %,d Milli-Second (launch profile %s, %s)", System.currentTimeMillis() - startTime,
+                LAUNCH_PROFILE, sharedService ? "shared driver service" : "own driver service"));
+        logMemory("after start");
+    }
+
+    /**
+     * Logs the memory of the browser processes of this session, when they can be told apart (local Chrome on Linux)
+     */
+    private void logMemory(String when) {
+        if (userDataDir != null) {
+            ProcessMemory memory = ProcessMemory.ofProcesses(userDataDir.toString());
+            if (memory != null) {
+                log.info("WebDriver session memory " + when + ": " + memory);
+            }
+        }
     }
 
-    private WebDriver createLocalWebDriver() {
+    private WebDriver createLocalWebDriver() throws IOException {
         String browserName = desiredCapabilities.getBrowserName();
+        URL serviceUrl = DriverServices.isShared() ? DriverServices.getUrl(browserName) : null;
+        sharedService = serviceUrl != null;
         switch (browserName.toLowerCase()) {
             case BrowserType.CHROME:
-                return new ChromeDriver(new ChromeOptions().merge(getDesiredCapabilities()));
+                ChromeOptions chromeOptions = toChromeOptions(getDesiredCapabilities());
+                userDataDir = Files.createTempDirectory("crawler-session-");
+                chromeOptions.addArguments("user-data-dir=" + userDataDir);
+                return sharedService ? new RemoteWebDriver(serviceUrl, chromeOptions) : new ChromeDriver(chromeOptions);
             case BrowserType.IE:
                 return new InternetExplorerDriver(new InternetExplorerOptions(getDesiredCapabilities()));
             case BrowserType.EDGE:
@@ -78,11 +181,42 @@ public class WebCrawlerDriver implements WrapsDriver {
             case BrowserType.OPERA_BLINK:
                 return new OperaDriver(new OperaOptions().merge(getDesiredCapabilities()));
             case BrowserType.FIREFOX:
+                return sharedService ? new RemoteWebDriver(serviceUrl, new FirefoxOptions().merge(getDesiredCapabilities()))
+                        : new FirefoxDriver(new FirefoxOptions().merge(getDesiredCapabilities()));
             default:
                 return new FirefoxDriver(new FirefoxOptions().merge(getDesiredCapabilities()));
         }
     }
 
+    /**
+     * ChromeOptions.merge ignores the arguments, extensions and experimental options of the ChromeOptions nested in
+     * the capabilities, they are copied here before merging the other capabilities
+     */
+    @SuppressWarnings("unchecked")
+    public static ChromeOptions toChromeOptions(Capabilities capabilities) {
+        ChromeOptions chromeOptions = new ChromeOptions();
+        Object nested = capabilities.getCapability(ChromeOptions.CAPABILITY);
+        Object nestedOptions = nested instanceof ChromeOptions ? ((ChromeOptions) nested).asMap().get(ChromeOptions.CAPABILITY) : nested;
+        if (nestedOptions instanceof Map) {
+            for (Map.Entry<String, Object> option : ((Map<String, Object>) nestedOptions).entrySet()) {
+                switch (option.getKey()) {
+                    case "args":
+                        chromeOptions.addArguments((List<String>) option.getValue());
+                        break;
+                    case "extensions":
+                        chromeOptions.addEncodedExtensions((List<String>) option.getValue());
+                        break;
+                    case "binary":
+                        chromeOptions.setBinary((String) option.getValue());
+                        break;
+                    default:
+                        chromeOptions.setExperimentalOption(option.getKey(), option.getValue());
+                }
+            }
+        }
+        return chromeOptions.merge(capabilities);
+    }
+
     private WebDriver createRemoteWebDriver() throws MalformedURLException {
         return new RemoteWebDriver(new URL(getRemoteWebDriverUrl()), desiredCapabilities);
     }
@@ -101,11 +235,157 @@ public class WebCrawlerDriver implements WrapsDriver {
     }
 
     public void quit() {
-        webDriver.quit();
+        logMemory("before quit");
+        try {
+            webDriver.quit();
+        } finally {
+            if (resourceProxy != null) {
+                resourceProxy.close();
+            }
+            deleteUserDataDir();
+        }
+    }
+
+    private void deleteUserDataDir() {
+        if (userDataDir == null) {
+            return;
+        }
+        try {
+            Files.walkFileTree(userDataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException exception) throws IOException {
+                    Files.deleteIfExists(directory);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ioException) {
+            log.log(Level.INFO, "Failed to delete the browser user data directory " + userDataDir, ioException);
+        }
+    }
+
+    /**
+     * Health check used before lending a pooled session
+     */
+    public boolean isAlive() {
+        try {
+            return webDriver != null && !webDriver.getWindowHandles().isEmpty();
+        } catch (Throwable throwable) {
+            return false;
+        }
+    }
+
+    /**
+     * Brings the session back to a clean state between sites: closes all windows but one, clears the cookies, the
+     * cache and the storage of every origin the previous site reached (through the Chrome DevTools when available,
+     * see {@link ChromeDevTools}), restores the per site state of the driver and navigates to about:blank.
+     * Without the DevTools only the storage and cookies of the current page can be cleared, so a session whose site
+     * navigated to more than one origin is not reused.
+     * @return false when the session could not be reset and should not be reused
+     */
+    public boolean reset() {
+        try {
+            List<String> windowHandles = new ArrayList<>(webDriver.getWindowHandles());
+            String keptWindow = windowHandles.remove(0);
+            for (String currentWindow : windowHandles) {
+                webDriver.switchTo().window(currentWindow);
+                webDriver.close();
+            }
+            webDriver.switchTo().window(keptWindow);
+            String currentOrigin = originOf(webDriver.getCurrentUrl());
+            if (currentOrigin != null) {
+                visitedOrigins.add(currentOrigin);
+            }
+            if (!clearBrowserState()) {
+                if (visitedOrigins.size() > 1) {
+                    log.info("WebDriver session reached " + visitedOrigins.size() + " origins and its state can not be cleared, it is not reused");
+                    return false;
+                }
+                if (webDriver instanceof JavascriptExecutor) {
+                    ((JavascriptExecutor) webDriver).executeScript(
+                            "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) { }");
+                }
+                webDriver.manage().deleteAllCookies();
+            }
+            get("about:blank");
+            visitedOrigins.clear();
+            harvestByScript = "script".equalsIgnoreCase(HARVEST_MODE);
+            fingerprintByScript = true;
+            pageSettleDetector = PageSettleDetector.forSite(null);
+            pageSettled = false;
+            settledPageCapture = null;
+            setSite(null);
+            return true;
+        } catch (Throwable throwable) {
+            log.log(Level.INFO, "Failed to reset the WebDriver session", throwable);
+            return false;
+        }
+    }
+
+    /**
+     * Clears the cookies and cache of the browser and the storage of the visited origins and of the cookie domains
+     * @return false when the DevTools are not available for this session
+     */
+    @SuppressWarnings("unchecked")
+    private boolean clearBrowserState() throws IOException {
+        Map<String, Object> cookies;
+        try {
+            cookies = ChromeDevTools.execute(webDriver, "Network.getAllCookies", null);
+        } catch (UnsupportedCommandException unsupportedCommandException) {
+            return false;
+        }
+        Set<String> origins = new LinkedHashSet<>(visitedOrigins);
+        Object cookieList = cookies.get("cookies");
+        if (cookieList instanceof List) {
+            for (Object cookie : (List<Object>) cookieList) {
+                Object domain = cookie instanceof Map ? ((Map<String, Object>) cookie).get("domain") : null;
+                if (domain != null) {
+                    String host = domain.toString().replaceFirst("^\\.", "");
+                    origins.add("http://" + host);
+                    origins.add("https://" + host);
+                }
+            }
+        }
+        ChromeDevTools.execute(webDriver, "Network.clearBrowserCookies", null);
+        ChromeDevTools.execute(webDriver, "Network.clearBrowserCache", null);
+        for (String origin : origins) {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("origin", origin);
+            parameters.put("storageTypes", "all");
+            ChromeDevTools.execute(webDriver, "Storage.clearDataForOrigin", parameters);
+        }
+        return true;
+    }
+
+    private static String originOf(String url) {
+        try {
+            URL parsed = new URL(url);
+            if (!parsed.getProtocol().startsWith("http")) {
+                return null;
+            }
+            return parsed.getProtocol() + "://" + parsed.getHost() + (parsed.getPort() == -1 ? "" : ":" + parsed.getPort());
+        } catch (MalformedURLException | RuntimeException exception) {
+            return null;
+        }
     }
 
     public boolean isAvailable(final By linkLocation) {
         try {
+            if (canHarvest(linkLocation)) {
+                try {
+                    List<HarvestedLink> links = HarvestLinks.harvest(webDriver, linkLocation, 1);
+                    return !links.isEmpty() && links.get(0).isAvailable();
+                } catch (JavascriptException javascriptException) {
+                    logScriptFailure("harvest", javascriptException);
+                } catch (UnsupportedCommandException unsupportedCommandException) {
+                    disableHarvest(unsupportedCommandException);
+                }
+            }
             List<WebElement> elements = webDriver.findElements(linkLocation);
             if (!elements.isEmpty()) {
                 WebElement webElement = elements.get(0);
@@ -118,8 +398,16 @@ public class WebCrawlerDriver implements WrapsDriver {
     }
 
     public List<String> getText(By by) {
-        List<WebElement> elements = getElements(by);
         List<String> list = new ArrayList<>();
+        List<HarvestedLink> links = harvestByScript(by);
+        if (links != null) {
+            for (HarvestedLink link : links) {
+                if (link.hasText())
+                    list.add(link.getText());
+            }
+            return list;
+        }
+        List<WebElement> elements = getElements(by);
         for (WebElement element : elements) {
             String text = element.getText();
             if (text != null && !text.trim().isEmpty())
@@ -130,20 +418,98 @@ public class WebCrawlerDriver implements WrapsDriver {
     }
 
     public List<String> getHref(By by) {
-        List<WebElement> elements = getElements(by);
         List<String> list = new ArrayList<>();
+        List<HarvestedLink> links = harvestByScript(by);
+        if (links != null) {
+            for (HarvestedLink link : links) {
+                list.add(link.getHref());
+            }
+            return list;
+        }
+        List<WebElement> elements = getElements(by);
         for (WebElement element : elements) {
             list.add(element.getAttribute("href"));
         }
         return list;
     }
 
+    /**
+     * Returns the available (displayed, enabled and sized) links matching the locator, using a single script call
+     * per read when possible and the per element WebDriver commands otherwise (index is -1 on that path)
+     */
+    public List<HarvestedLink> harvestLinks(By by) {
+        long startNanos = System.nanoTime();
+        List<HarvestedLink> links = harvestByScript(by);
+        if (links != null) {
+            Metrics.histogram(Metrics.HARVEST_LATENCY, "mode", "script").recordSince(startNanos);
+            return links;
+        }
+        links = new ArrayList<>();
+        for (WebElement element : getElements(by)) {
+            links.add(HarvestedLink.fromElement(-1, element));
+        }
+        Metrics.histogram(Metrics.HARVEST_LATENCY, "mode", "elements").recordSince(startNanos);
+        return links;
+    }
+
+    private List<HarvestedLink> harvestByScript(By by) {
+        if (canHarvest(by)) {
+            try {
+                return getWait("harvest", by, 160, 2000, "Fail to harvest links " + by).until(new HarvestLinks(by, 0, !pageSettled, 2000));
+            } catch (JavascriptException javascriptException) {
+                logScriptFailure("harvest", javascriptException);
+            } catch (UnsupportedCommandException unsupportedCommandException) {
+                disableHarvest(unsupportedCommandException);
+            }
+        }
+        return null;
+    }
+
+    private boolean canHarvest(By by) {
+        return harvestByScript && HarvestLinks.isSupported(webDriver, by);
+    }
+
+    private void disableHarvest(WebDriverException exception) {
+        harvestByScript = false;
+        log.log(Level.INFO, "Link harvesting script is not supported by this driver, falling back to per element commands", exception);
+    }
+
+    /**
+     * A script failing once (the document unloaded by a navigation or a redirect while it ran) only makes that call
+     * fall back, the script stays on for the next ones
+     */
+    private static void logScriptFailure(String script, JavascriptException javascriptException) {
+        log.info("The " + script + " script failed on this page, falling back for this call: " + String.valueOf(javascriptException.getMessage()).split("\n")[0]);
+    }
+
+    /**
+     * @return the {@link PageFingerprint} of the current page, null when it could not be read (the fingerprint is
+     * not read again once the driver turns out not to support scripts)
+     */
+    public Long fingerprintPage() {
+        if (!fingerprintByScript || !(webDriver instanceof JavascriptExecutor)) {
+            return null;
+        }
+        try {
+            return PageFingerprint.fromScriptResult(((JavascriptExecutor) webDriver).executeScript(PageFingerprint.SCRIPT,
+                    PageFingerprint.MAX_TEXT, PageFingerprint.MAX_ELEMENTS));
+        } catch (JavascriptException javascriptException) {
+            logScriptFailure("fingerprint", javascriptException);
+        } catch (UnsupportedCommandException unsupportedCommandException) {
+            fingerprintByScript = false;
+            log.log(Level.INFO, "Page fingerprint script is not supported by this driver, near-duplicate pages are not detected", unsupportedCommandException);
+        } catch (WebDriverException webDriverException) {
+            log.info("Failed to fingerprint " + webDriverException.getClass().getSimpleName() + ": " + webDriverException.getMessage().split("\n")[0]);
+        }
+        return null;
+    }
+
     public List<WebElement> getElements(By by) {
-        return getFluentWaitWithDefault(160, 2000, "Fail to find clickable elements " + by).until(new FindVisibleElements(by, 0));
+        return getWait("elements", by, 160, 2000, "Fail to find clickable elements " + by).until(new FindVisibleElements(by, 0, 2000));
     }
 
     public String getElementText(final By by) {
-        return getFluentWaitWithDefault(20, 2000, "Fail to get text from element " + by).until(new Function<WebDriver, String>() {
+        return getWait("text", by, 20, 2000, "Fail to get text from element " + by).until(new Function<WebDriver, String>() {
             @Override
             public String apply(WebDriver input) {
                 WebElement element = input.findElement(by);
@@ -153,7 +519,7 @@ public class WebCrawlerDriver implements WrapsDriver {
     }
 
     public String getElementAttribute(final By by, final String attributeName) {
-        return getFluentWaitWithDefault(20, 2000, "Fail to get attribute from element " + by).until(new Function<WebDriver, String>() {
+        return getWait("attribute", by, 20, 2000, "Fail to get attribute from element " + by).until(new Function<WebDriver, String>() {
             @Override
             public String apply(WebDriver input) {
                 WebElement element = input.findElement(by);
@@ -163,18 +529,34 @@ public class WebCrawlerDriver implements WrapsDriver {
         });
     }
 
+    /**
+     * Wait for an element condition: with the "wait.mode" property "adaptive" (default) an {@link AdaptiveWait}
+     * backing off from "wait.poll.min.millis" (default 10) up to the given polling interval and learning the
+     * expected wait of the site and locator, with "fixed" a {@link FluentWait} polling at the given interval.
+     * Conditions comparing two reads (stable element counts) carry their own time window, see {@link FindVisibleElements}
+     */
+    public Wait<WebDriver> getWait(String kind, By by, int timeoutInSeconds, int polingInMilli, String message) {
+        if ("fixed".equalsIgnoreCase(SiteProperties.getString(site, "wait.mode", "adaptive"))) {
+            return getFluentWaitWithDefault(timeoutInSeconds, polingInMilli, message);
+        }
+        return new TimedWait<WebDriver>(new AdaptiveWait<WebDriver>(webDriver, site, WaitHistory.key(site, kind, by),
+                TimeUnit.SECONDS.toMillis(timeoutInSeconds), SiteProperties.getLong(site, "wait.poll.min.millis", 10L), polingInMilli,
+                message, IGNORED_EXCEPTIONS));
+    }
+
     public Wait<WebDriver> getFluentWaitWithDefault(int timeoutInSeconds, int polingInMilli, String message) {
-        Collection<Class<? extends Throwable>> c = new ArrayList<Class<? extends Throwable>>(
-                Arrays.asList(StaleElementReferenceException.class, NoSuchElementException.class, ElementNotVisibleException.class));
-        return new FluentWait<WebDriver>(webDriver)
+        Collection<Class<? extends Throwable>> c = new ArrayList<Class<? extends Throwable>>(IGNORED_EXCEPTIONS);
+        return new TimedWait<WebDriver>(new FluentWait<WebDriver>(webDriver)
                 .withTimeout(Duration.ofSeconds(timeoutInSeconds))
                 .pollingEvery(Duration.ofMillis(polingInMilli))
                 .withMessage(message)
-                .ignoreAll(c);
+                .ignoreAll(c));
     }
 
     public String getCurrentDomain() {
+        long startNanos = System.nanoTime();
         String stringUrl = webDriver.getCurrentUrl();
+        CommandLatency.record(startNanos);
         try {
             URL url = new URL(stringUrl);
             return url.getHost();
@@ -184,21 +566,203 @@ public class WebCrawlerDriver implements WrapsDriver {
         return "Failed To extract domain";
     }
 
+    public PageSettleDetector getPageSettleDetector() {
+        return pageSettleDetector;
+    }
+
+    public void setPageSettleDetector(PageSettleDetector pageSettleDetector) {
+        this.pageSettleDetector = pageSettleDetector;
+    }
+
+    /**
+     * Blocks until the current page settled (or the detector max wait was reached)
+     * @return true when the page was confirmed as settled, later link reads then trust their first result
+     */
+    public boolean waitForPageToSettle() {
+        long startNanos = System.nanoTime();
+        pageSettled = pageSettleDetector.settle(webDriver);
+        Metrics.histogram(Metrics.PAGE_SETTLE_LATENCY, "site", getSiteName()).recordSince(startNanos);
+        Site captured = settledPageCapture;
+        if (captured != null) {
+            settledPageCapture = null;
+            PageCapture.capture(captured, webDriver);
+        }
+        return pageSettled;
+    }
+
+    /**
+     * Captures the current page for the site at the next {@link #waitForPageToSettle()}, dropped when the session
+     * navigates away first
+     */
+    public void captureOnceSettled(Site site) {
+        settledPageCapture = site;
+    }
+
+    private String getSiteName() {
+        return site == null ? "" : site.getSiteName();
+    }
+
+    /**
+     * @return the site this session is crawling, null when not known
+     */
+    public Site getSite() {
+        return site;
+    }
+
+    public void setSite(Site site) {
+        this.site = site;
+        if (resourceProxy != null) {
+            resourceProxy.setSite(site);
+            blockHttpsResources();
+        }
+    }
+
+    /**
+     * The proxy only sees the host of https requests: in Chrome sessions the type and pattern rules of the site are
+     * given to the browser (DevTools Network.setBlockedURLs), which blocks the https requests they match itself.
+     * These are not counted in the metrics of the site. Without the DevTools only the host of https requests is
+     * blocked.
+     */
+    private void blockHttpsResources() {
+        if (!devToolsBlocking || webDriver == null) {
+            return;
+        }
+        List<String> urls = resourceProxy.getFilter().httpsUrlPatterns();
+        if (urls.isEmpty() && !urlsBlockedInBrowser) {
+            return;
+        }
+        try {
+            if (!urlsBlockedInBrowser) {
+                ChromeDevTools.execute(webDriver, "Network.enable", null);
+            }
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("urls", urls);
+            ChromeDevTools.execute(webDriver, "Network.setBlockedURLs", parameters);
+            urlsBlockedInBrowser = !urls.isEmpty();
+            if (site != null) {
+                log.fine(site.getSiteName() + ": " + urls.size() + " url patterns of https requests blocked in the browser");
+            }
+        } catch (UnsupportedCommandException unsupportedCommandException) {
+            devToolsBlocking = false;
+            log.info("The DevTools are not available for this session, only the host of https requests is blocked: " + unsupportedCommandException.getMessage().split("\n")[0]);
+        } catch (IOException | WebDriverException exception) {
+            log.log(Level.INFO, "Failed to block the https resources of " + getSiteName() + " in the browser", exception);
+        }
+    }
+
+    /**
+     * Waits for the per host limiter before a navigation and accounts the wait to the site
+     * @return the limiter to release once the navigation is done, null when there is nothing to release
+     */
+    private HostLimiter acquireNavigation(String host) {
+        HostLimiter limiter = HostLimiter.forHost(host);
+        if (limiter != null) {
+            Metrics.histogram(Metrics.LIMITER_WAIT, "site", getSiteName()).record(limiter.acquire());
+        }
+        return limiter;
+    }
+
+    private void addNavigation(long startNanos) {
+        Metrics.histogram(Metrics.NAVIGATION_LATENCY, "site", getSiteName()).recordSince(startNanos);
+    }
+
+    private static void releaseNavigation(HostLimiter limiter) {
+        if (limiter != null) {
+            limiter.release();
+        }
+    }
+
     public void get(String url) {
-        webDriver.get(url);
+        pageSettled = false;
+        settledPageCapture = null;
+        String origin = originOf(url);
+        if (origin != null) {
+            visitedOrigins.add(origin);
+        }
+        HostLimiter limiter = acquireNavigation(ApplicationCrawlerHelper.getHost(url));
+        long startNanos = System.nanoTime();
+        try {
+            webDriver.get(url);
+        } finally {
+            addNavigation(startNanos);
+            releaseNavigation(limiter);
+        }
     }
 
     public void navigateBack() {
-        if (webDriver instanceof JavascriptExecutor &&
-                desiredCapabilities.getBrowserName().toLowerCase().contains("safari")) {
-//            Workaround for: Safari issue #3771 (https://code.google.com/p/selenium/issues/detail?id=3771)
-            ((JavascriptExecutor) webDriver).executeScript("history.go(-1)");
-        } else {
-            webDriver.navigate().back();
+        pageSettled = false;
+        settledPageCapture = null;
+        HostLimiter limiter = acquireNavigation(ApplicationCrawlerHelper.getHost(webDriver.getCurrentUrl()));
+        long startNanos = System.nanoTime();
+        try {
+            if (webDriver instanceof JavascriptExecutor &&
+                    desiredCapabilities.getBrowserName().toLowerCase().contains("safari")) {
+//                Workaround for: Safari issue #3771 (https://code.google.com/p/selenium/issues/detail?id=3771)
+                ((JavascriptExecutor) webDriver).executeScript("history.go(-1)");
+            } else {
+                webDriver.navigate().back();
+            }
+        } finally {
+            addNavigation(startNanos);
+            releaseNavigation(limiter);
         }
     }
 
+    /**
+     * Waits for the element and clicks it, a click expected to load a page takes a permit of the per host limiter
+     * of that page around the click only, not around the wait for the element
+     */
     public void clickOnElement(By by) {
-        getFluentWaitWithDefault(120, 500, "Fail to click on element " + by).until(new ClickOnElement(by));
+        pageSettled = false;
+        settledPageCapture = null;
+        try {
+            getWait("click", by, 120, 500, "Fail to click on element " + by).until(new ClickOnElement(by) {
+                @Override
+                protected void click(WebElement element) {
+                    String host = getNavigationHost(element);
+                    HostLimiter limiter = host == null ? null : acquireNavigation(host);
+                    long startNanos = System.nanoTime();
+                    try {
+                        super.click(element);
+                    } finally {
+                        if (host != null) {
+                            addNavigation(startNanos);
+                        }
+                        releaseNavigation(limiter);
+                    }
+                }
+            });
+        } catch (RuntimeException exception) {
+            Metrics.counter(Metrics.FAILED_CLICKS, "site", getSiteName()).increment();
+            throw exception;
+        }
+    }
+
+    /**
+     * @return the host of the page a click on the element loads: the target of a link (not a link to the current
+     * page or a script) or the current host for a submit button of a form, null for anything else (script driven
+     * elements)
+     */
+    private String getNavigationHost(WebElement element) {
+        String tagName = element.getTagName().toLowerCase();
+        if ("a".equals(tagName) || "area".equals(tagName)) {
+            String href = element.getAttribute("href");
+            if (href == null || href.isEmpty() || href.toLowerCase().startsWith("javascript:")) {
+                return null;
+            }
+            String currentUrl = webDriver.getCurrentUrl();
+            int fragment = href.indexOf('#');
+            if (fragment != -1 && currentUrl != null && currentUrl.split("#", 2)[0].equals(href.substring(0, fragment))) {
+                return null;
+            }
+            return ApplicationCrawlerHelper.getHost(href);
+        }
+        if ("button".equals(tagName) || "input".equals(tagName)) {
+            String type = String.valueOf(element.getAttribute("type")).toLowerCase();
+            if (("submit".equals(type) || "image".equals(type)) && !element.findElements(By.xpath("ancestor::form")).isEmpty()) {
+                return ApplicationCrawlerHelper.getHost(webDriver.getCurrentUrl());
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,14 @@
+package org.webdriver.crawler;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Creates the WebDriver of a {@link WebCrawlerDriver} instead of the local or remote browser, selected by class
+ * name with the "webdriver.factory" system property (e.g. a fake driver for benchmarks). Implementations need a
+ * public no argument constructor.
+ */
+public interface WebDriverFactory {
+
+    WebDriver create(Capabilities capabilities);
+}
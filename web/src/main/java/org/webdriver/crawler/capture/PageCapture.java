@@ -0,0 +1,304 @@
+package org.webdriver.crawler.capture;
+
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.helpers.SiteProperties;
+import org.webdriver.crawler.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures the page source and a screenshot of the visited pages without holding up the crawl: the crawl thread
+ * only grabs the raw bytes from the driver, a bounded pool of writer threads compresses them, hashes them and
+ * writes them to a content addressed store ("&lt;capture.directory&gt;/store/ab/abcdef....html.gz"), so a page
+ * captured twice unchanged is stored once. Each capture is appended to "&lt;capture.directory&gt;/captures.tsv":
+ * <pre>
+ * timestamp  site  url  kind  sha256  bytes  outcome
+ * </pre>
+ * When the writers fall behind (capture.queue.size captures or capture.queue.max.mb bytes waiting) new captures
+ * are dropped before anything is grabbed; with capture.overflow=sample, once the queue is half full only one capture
+ * in capture.sample.every is kept, so the writers catch up before the queue is full.
+ * <p>
+ * Per site property (see {@link SiteProperties}): capture - "off" (default), "html", "screenshot" or "both".
+ * System properties: capture.directory (target/captures), capture.threads (2), capture.queue.size (64),
+ * capture.queue.max.mb (64), capture.overflow ("drop" or "sample"), capture.sample.every (4).
+ */
+public class PageCapture {
+
+    private static final Logger log = Logger.getLogger(PageCapture.class.getName());
+
+    public enum Mode {
+        OFF, HTML, SCREENSHOT, BOTH;
+
+        public static Mode forSite(Site site) {
+            try {
+                return valueOf(SiteProperties.getString(site, "capture", "off").toUpperCase());
+            } catch (IllegalArgumentException illegalArgumentException) {
+                return OFF;
+            }
+        }
+    }
+
+    private static PageCapture shared;
+    private static boolean shutdownHookAdded;
+
+    private final File directory;
+    private final ThreadPoolExecutor writers;
+    private final int queueSize;
+    private final long maxQueuedBytes;
+    private final boolean sample;
+    private final int sampleEvery;
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong offered = new AtomicLong();
+    private final Object indexLock = new Object();
+    private Writer index;
+
+    public PageCapture(File directory, int threads, int queueSize, long maxQueuedBytes, boolean sample, int sampleEvery) {
+        this.directory = directory;
+        this.queueSize = Math.max(1, queueSize);
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.sample = sample;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        final AtomicInteger count = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(this.queueSize),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "capture-writer-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.writers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the capture pipeline of the process, created on first use and again after a {@link #shutdown()}; the
+     * shutdown hook flushing it is registered once
+     */
+    public static synchronized PageCapture shared() {
+        if (shared == null) {
+            shared = new PageCapture(new File(System.getProperty("capture.directory", "target/captures")),
+                    Math.max(1, Integer.getInteger("capture.threads", 2)),
+                    Integer.getInteger("capture.queue.size", 64),
+                    Long.getLong("capture.queue.max.mb", 64L) * 1024 * 1024,
+                    "sample".equalsIgnoreCase(System.getProperty("capture.overflow", "drop")),
+                    Integer.getInteger("capture.sample.every", 4));
+            if (!shutdownHookAdded) {
+                shutdownHookAdded = true;
+                Runtime.getRuntime().addShutdownHook(new Thread("capture-shutdown") {
+                    @Override
+                    public void run() {
+                        shutdown();
+                    }
+                });
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Captures the page the driver is on when the site captures pages, called on the crawl thread once an action
+     * is done
+     */
+    public static void capture(Site site, WebDriver driver) {
+        Mode mode = Mode.forSite(site);
+        if (mode != Mode.OFF) {
+            shared().offer(site, driver, mode);
+        }
+    }
+
+    /**
+     * Waits (up to 60 seconds) for the queued captures to be written and closes the index
+     */
+    public static synchronized void shutdown() {
+        if (shared == null) {
+            return;
+        }
+        PageCapture capture = shared;
+        shared = null;
+        capture.close();
+    }
+
+    void offer(Site site, WebDriver driver, Mode mode) {
+        String rejected = reject();
+        if (rejected != null) {
+            account(site, rejected, 0);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        byte[] html = null;
+        byte[] screenshot = null;
+        String url = "";
+        try {
+            url = driver.getCurrentUrl();
+            if (mode != Mode.SCREENSHOT) {
+                String source = driver.getPageSource();
+                html = source == null ? null : source.getBytes(StandardCharsets.UTF_8);
+            }
+            if (mode != Mode.HTML && driver instanceof TakesScreenshot) {
+                screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+            }
+        } catch (WebDriverException webDriverException) {
+            log.info("Failed to capture " + url + ": " + String.valueOf(webDriverException.getMessage()).split("\\n")[0]);
+        }
+        Metrics.histogram(Metrics.CAPTURE_GRAB_LATENCY, "site", site.getSiteName()).recordSince(startNanos);
+        long instant = System.currentTimeMillis();
+        if (html != null) {
+            submit(new Capture(site, url, "html", html, instant));
+        }
+        if (screenshot != null) {
+            submit(new Capture(site, url, "png", screenshot, instant));
+        }
+    }
+
+    /**
+     * @return "dropped" or "sampled" when the capture is left out because the writers are behind, null when it is taken
+     */
+    private String reject() {
+        int queued = writers.getQueue().size();
+        if (queued >= queueSize || queuedBytes.get() >= maxQueuedBytes) {
+            return "dropped";
+        }
+        return !sample || queued < queueSize / 2 || offered.incrementAndGet() % sampleEvery == 0 ? null : "sampled";
+    }
+
+    private void submit(final Capture capture) {
+        queuedBytes.addAndGet(capture.bytes.length);
+        try {
+            writers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        write(capture);
+                    } finally {
+                        queuedBytes.addAndGet(-capture.bytes.length);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            queuedBytes.addAndGet(-capture.bytes.length);
+            account(capture.site, "dropped", 0);
+        }
+    }
+
+    private void write(Capture capture) {
+        String outcome;
+        long written = 0;
+        try {
+            String hash = sha256(capture.bytes);
+            boolean compressed = "html".equals(capture.kind);
+            File file = new File(directory, "store/" + hash.substring(0, 2) + "/" + hash + "." + capture.kind + (compressed ? ".gz" : ""));
+            if (file.isFile()) {
+                outcome = "duplicate";
+            } else {
+                file.getParentFile().mkdirs();
+                File temporary = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+                try (OutputStream output = compressed ? new GZIPOutputStream(Files.newOutputStream(temporary.toPath()), 16384) :
+                        Files.newOutputStream(temporary.toPath())) {
+                    output.write(capture.bytes);
+                }
+                written = temporary.length();
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                outcome = "stored";
+            }
+            appendIndex(capture, hash, outcome);
+        } catch (IOException ioException) {
+            log.log(Level.INFO, "Failed to write the capture of " + capture.url, ioException);
+            outcome = "failed";
+        }
+        account(capture.site, outcome, written);
+    }
+
+    private void appendIndex(Capture capture, String hash, String outcome) throws IOException {
+        String line = String.format("%s\t%s\t%s\t%s\t%s\t%d\t%s%n", Instant.ofEpochMilli(capture.instant), capture.site.getSiteName(),
+                capture.url.replace('\t', ' '), capture.kind, hash, capture.bytes.length, outcome);
+        synchronized (indexLock) {
+            if (index == null) {
+                directory.mkdirs();
+                index = Files.newBufferedWriter(new File(directory, "captures.tsv").toPath(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            index.write(line);
+            index.flush();
+        }
+    }
+
+    private static void account(Site site, String outcome, long writtenBytes) {
+        Metrics.counter(Metrics.CAPTURES, "site", site.getSiteName(), "outcome", outcome).increment();
+        Metrics.counter(Metrics.CAPTURE_BYTES, "site", site.getSiteName()).add(writtenBytes);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte value : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(String.format("%02x", value));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+            throw new IllegalStateException(noSuchAlgorithmException);
+        }
+    }
+
+    private void close() {
+        writers.shutdown();
+        try {
+            if (!writers.awaitTermination(60, TimeUnit.SECONDS)) {
+                log.info("Page capture: " + writers.getQueue().size() + " captures not written in time");
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (indexLock) {
+            if (index != null) {
+                try {
+                    index.close();
+                } catch (IOException ioException) {
+                    log.log(Level.INFO, "Failed to close the capture index in " + directory, ioException);
+                }
+                index = null;
+            }
+        }
+    }
+
+    private static class Capture {
+
+        private final Site site;
+        private final String url;
+        private final String kind;
+        private final byte[] bytes;
+        private final long instant;
+
+        private Capture(Site site, String url, String kind, byte[] bytes, long instant) {
+            this.site = site;
+            this.url = url;
+            this.kind = kind;
+            this.bytes = bytes;
+            this.instant = instant;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package org.webdriver.crawler.dedupe;
+
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.frontier.FrontierStrategy;
+import org.webdriver.crawler.helpers.SiteProperties;
+import org.webdriver.crawler.metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * In memory index of the {@link PageFingerprint}s of the pages visited on one site. A page whose fingerprint is
+ * within dedupe.max.distance bits of an indexed one joins its cluster as a near-duplicate. Lookups split the 64 bits
+ * in four 16 bit bands: two fingerprints at most 3 bits apart share at least one band exactly, so only the pages
+ * sharing a band are compared.
+ * <p>
+ * Near-duplicates are also counted per url shape (path with the numbers masked, query keys only, see
+ * {@link FrontierStrategy#shapeOf(String)}): once dedupe.min.pages pages of a shape were visited and at least
+ * dedupe.duplicate.ratio of them were near-duplicates, the shape is a template clone and the links leading to it
+ * are skipped or deferred.
+ * <p>
+ * Per site properties (see {@link SiteProperties}): dedupe - "off" (default), "mark" only reports, "lower" defers
+ * the links into cloned shapes until nothing else is left, "skip" drops them; dedupe.max.distance (3, at most
+ * 3 as the band lookup misses pages further apart), dedupe.min.pages (3), dedupe.duplicate.ratio (0.8).
+ */
+public class NearDuplicateIndex {
+
+    private static final Logger log = Logger.getLogger(NearDuplicateIndex.class.getName());
+
+    public enum Mode { OFF, MARK, LOWER, SKIP }
+
+    public enum Decision { CRAWL, DEFER, SKIP }
+
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final int BAND_MASK = (1 << BAND_BITS) - 1;
+    /**
+     * Largest distance the band lookup is exact for: fingerprints more bits apart may share no band
+     */
+    static final int MAX_DISTANCE = BANDS - 1;
+
+    private final String siteName;
+    private final Mode mode;
+    private final int maxDistance;
+    private final int minPages;
+    private final double duplicateRatio;
+
+    private long[] fingerprints = new long[256];
+    private int[] clusters = new int[256];
+    private int size;
+    private final Map<Integer, int[]> bands = new HashMap<>();
+    private final Map<Integer, Integer> clusterSizes = new HashMap<>();
+    private final Map<String, Boolean> indexedUrls = new HashMap<>();
+    private final Map<String, ShapeStats> shapes = new HashMap<>();
+    private final Set<String> skipped = new HashSet<>();
+    private final Set<String> deferred = new HashSet<>();
+    private final Deque<String> deferredQueue = new ArrayDeque<>();
+    private final Set<String> released = new HashSet<>();
+    private int duplicatePages;
+
+    public NearDuplicateIndex(String siteName, Mode mode, int maxDistance, int minPages, double duplicateRatio) {
+        this.siteName = siteName;
+        this.mode = mode;
+        this.maxDistance = Math.min(MAX_DISTANCE, maxDistance);
+        if (maxDistance > MAX_DISTANCE) {
+            log.info(siteName + ": dedupe.max.distance " + maxDistance + " lowered to " + MAX_DISTANCE + ", the largest distance the index finds every near-duplicate at");
+        }
+        this.minPages = Math.max(1, minPages);
+        this.duplicateRatio = duplicateRatio;
+    }
+
+    /**
+     * @return the index of the site, null when near-duplicate detection is off for it
+     */
+    public static NearDuplicateIndex forSite(Site site) {
+        Mode mode;
+        try {
+            mode = Mode.valueOf(SiteProperties.getString(site, "dedupe", "off").toUpperCase());
+        } catch (IllegalArgumentException illegalArgumentException) {
+            mode = Mode.OFF;
+        }
+        if (mode == Mode.OFF) {
+            return null;
+        }
+        double ratio;
+        try {
+            ratio = Double.parseDouble(SiteProperties.getString(site, "dedupe.duplicate.ratio", "0.8"));
+        } catch (NumberFormatException numberFormatException) {
+            ratio = 0.8;
+        }
+        return new NearDuplicateIndex(site.getSiteName(), mode, SiteProperties.getInt(site, "dedupe.max.distance", 3),
+                SiteProperties.getInt(site, "dedupe.min.pages", 3), ratio);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Indexes the fingerprint of a visited page, a page already indexed keeps its first result
+     * @return true when the page is a near-duplicate of a page indexed before
+     */
+    public synchronized boolean add(String url, long fingerprint) {
+        Boolean known = indexedUrls.get(url);
+        if (known != null) {
+            return known;
+        }
+        int cluster = findCluster(fingerprint);
+        boolean duplicate = cluster >= 0;
+        if (!duplicate) {
+            cluster = size;
+        }
+        if (size == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, size * 2);
+            clusters = Arrays.copyOf(clusters, size * 2);
+        }
+        fingerprints[size] = fingerprint;
+        clusters[size] = cluster;
+        for (int band = 0; band < BANDS; band++) {
+            int key = bandKey(fingerprint, band);
+            int[] bucket = bands.get(key);
+            if (bucket == null) {
+                bucket = new int[3];
+            } else if (bucket[0] + 1 == bucket.length) {
+                bucket = Arrays.copyOf(bucket, bucket.length * 2);
+            }
+            bucket[++bucket[0]] = size;
+            bands.put(key, bucket);
+        }
+        size++;
+        Integer clusterSize = clusterSizes.get(cluster);
+        clusterSizes.put(cluster, clusterSize == null ? 1 : clusterSize + 1);
+        indexedUrls.put(url, duplicate);
+
+        ShapeStats stats = statsOf(url);
+        stats.visited++;
+        if (duplicate) {
+            stats.duplicates++;
+            duplicatePages++;
+            Metrics.counter(Metrics.NEAR_DUPLICATE_PAGES, "site", siteName).increment();
+        }
+        return duplicate;
+    }
+
+    private int findCluster(long fingerprint) {
+        for (int band = 0; band < BANDS; band++) {
+            int[] bucket = bands.get(bandKey(fingerprint, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (int index = 1; index <= bucket[0]; index++) {
+                int entry = bucket[index];
+                if (PageFingerprint.distance(fingerprint, fingerprints[entry]) <= maxDistance) {
+                    return clusters[entry];
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int bandKey(long fingerprint, int band) {
+        return (band << BAND_BITS) | (int) ((fingerprint >>> (band * BAND_BITS)) & BAND_MASK);
+    }
+
+    private ShapeStats statsOf(String url) {
+        String shape = FrontierStrategy.shapeOf(url);
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            stats = new ShapeStats(shape);
+            shapes.put(shape, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Decides whether a link is worth following: links into a cloned url shape are skipped, or deferred until
+     * {@link #pollDeferred()} hands them back
+     */
+    public synchronized Decision check(String url) {
+        if (mode == Mode.MARK || url == null || released.contains(url)) {
+            return Decision.CRAWL;
+        }
+        if (deferred.contains(url)) {
+            return Decision.DEFER;
+        }
+        ShapeStats stats = shapes.get(FrontierStrategy.shapeOf(url));
+        if (stats == null || !stats.isCloned(minPages, duplicateRatio)) {
+            return Decision.CRAWL;
+        }
+        if (mode == Mode.SKIP) {
+            if (skipped.add(url)) {
+                stats.skipped++;
+                Metrics.counter(Metrics.NEAR_DUPLICATE_SKIPS, "site", siteName).increment();
+            }
+            return Decision.SKIP;
+        }
+        deferred.add(url);
+        deferredQueue.addLast(url);
+        stats.deferred++;
+        return Decision.DEFER;
+    }
+
+    /**
+     * @return the next deferred url, null when there is none
+     */
+    public synchronized String pollDeferred() {
+        String url = deferredQueue.pollFirst();
+        if (url != null) {
+            released.add(url);
+        }
+        return url;
+    }
+
+    public synchronized String getSummary() {
+        int clustersWithDuplicates = 0;
+        for (Integer clusterSize : clusterSizes.values()) {
+            if (clusterSize > 1) {
+                clustersWithDuplicates++;
+            }
+        }
+        List<ShapeStats> cloned = new ArrayList<>();
+        for (ShapeStats stats : shapes.values()) {
+            if (stats.isCloned(minPages, duplicateRatio)) {
+                cloned.add(stats);
+            }
+        }
+        Collections.sort(cloned, new Comparator<ShapeStats>() {
+            @Override
+            public int compare(ShapeStats first, ShapeStats second) {
+                return Integer.compare(second.skipped + second.deferred, first.skipped + first.deferred);
+            }
+        });
+        return String.format("%s: %,d pages fingerprinted, %,d near-duplicates in %,d clusters, %,d url shapes cloned, %,d links skipped (pages saved), %,d deferred (%s)%s",
+                siteName, size, duplicatePages, clustersWithDuplicates, cloned.size(), skipped.size(), deferred.size(), mode.name().toLowerCase(),
+                cloned.isEmpty() ? "" : ", top " + cloned.subList(0, Math.min(3, cloned.size())));
+    }
+
+    private static class ShapeStats {
+
+        private final String shape;
+        private int visited;
+        private int duplicates;
+        private int skipped;
+        private int deferred;
+
+        private ShapeStats(String shape) {
+            this.shape = shape;
+        }
+
+        private boolean isCloned(int minPages, double duplicateRatio) {
+            return visited >= minPages && duplicates >= duplicateRatio * visited;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d/%d duplicates, %d skipped, %d deferred", shape, duplicates, visited, skipped, deferred);
+        }
+    }
+}
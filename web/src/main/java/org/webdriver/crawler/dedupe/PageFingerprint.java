@@ -0,0 +1,103 @@
+package org.webdriver.crawler.dedupe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 64 bit SimHash of a rendered page, built from the word 3-shingles of its visible text (numbers masked, so
+ * "page 3 of 40" and "page 4 of 40" agree) and from the parent&gt;child tag pairs of its DOM. Pages rendered from
+ * the same template with small differences get fingerprints a few bits apart, see {@link #distance(long, long)}.
+ */
+public class PageFingerprint {
+
+    /**
+     * Returns [visible text (at most arguments[0] characters), tag pairs of at most arguments[1] elements]
+     */
+    public static final String SCRIPT =
+            "var body = document.body; if (!body) { return ['', '']; }" +
+            "var text = (body.innerText || body.textContent || '').slice(0, arguments[0]);" +
+            "var pairs = [], nodes = body.getElementsByTagName('*'), limit = Math.min(nodes.length, arguments[1]);" +
+            "for (var i = 0; i < limit; i++) { var node = nodes[i];" +
+            " pairs.push((node.parentNode && node.parentNode.tagName ? node.parentNode.tagName : '') + '>' + node.tagName); }" +
+            "return [text, pairs.join(' ')];";
+    public static final int MAX_TEXT = 20000;
+    public static final int MAX_ELEMENTS = 3000;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PageFingerprint() {
+    }
+
+    /**
+     * @param result the result of {@link #SCRIPT}
+     * @return the fingerprint, null when the result is not the one of the script
+     */
+    public static Long fromScriptResult(Object result) {
+        if (!(result instanceof List) || ((List<?>) result).size() < 2) {
+            return null;
+        }
+        List<?> values = (List<?>) result;
+        return of(String.valueOf(values.get(0)), String.valueOf(values.get(1)));
+    }
+
+    public static long of(String text, String tagPairs) {
+        Map<String, Integer> features = new HashMap<>();
+        String[] words = text.toLowerCase(Locale.ROOT).replaceAll("[0-9]+", "#").split("[^\\p{L}\\p{N}#]+");
+        int start = words.length > 0 && words[0].isEmpty() ? 1 : 0;
+        for (int index = start; index < words.length; index++) {
+            String shingle = index + 2 < words.length ? words[index] + " " + words[index + 1] + " " + words[index + 2] : words[index];
+            increment(features, "t:" + shingle);
+        }
+        for (String pair : tagPairs.split(" ")) {
+            if (!pair.isEmpty()) {
+                increment(features, "d:" + pair);
+            }
+        }
+        int[] weights = new int[64];
+        for (Map.Entry<String, Integer> feature : features.entrySet()) {
+            long hash = hash(feature.getKey());
+            int weight = feature.getValue();
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? weight : -weight;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    private static void increment(Map<String, Integer> features, String feature) {
+        Integer count = features.get(feature);
+        features.put(feature, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * FNV-1a with a final avalanche, so close features spread over all the bits
+     */
+    static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (byte current : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= current & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @return number of differing bits
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+}
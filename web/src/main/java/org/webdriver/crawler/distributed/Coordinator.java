@@ -0,0 +1,426 @@
+package org.webdriver.crawler.distributed;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.helpers.ApplicationCrawlerHelper;
+import org.webdriver.crawler.results.ResultsSink;
+import org.webdriver.crawler.results.SiteResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Owns the site list of a crawl spread over several {@link CrawlWorker} JVMs (on one or several machines): the
+ * workers lease sites over http, send heartbeats while they crawl them and report the result of each site.
+ * <p>
+ * The sites are sharded over the registered workers by consistent hashing of their names (see {@link HashRing}),
+ * so a site goes to the same worker as long as the set of workers does not change, and keeps its persistent
+ * frontier and proxy cache. A worker is leased the pending sites it owns first; once it has none left it takes the
+ * pending sites of the others (coordinator.steal, default true), so the slowest worker does not hold up the crawl.
+ * A worker without heartbeat for coordinator.lease.timeout.seconds is dropped from the ring and its leased sites
+ * become pending again; a site is given up after coordinator.max.attempts leases (default 2).
+ * <p>
+ * The protocol is plain text over http, every request is a POST apart from the status:
+ * <pre>
+ * POST /lease?worker=id&amp;max=3       "name=url" lines, nothing when no site is free yet, "#done" once all are done
+ * POST /heartbeat?worker=id           204, 410 when the worker was dropped (its leases were returned)
+ * POST /result?worker=id&amp;site=name&amp;ok=true   body: the site results in the results file format
+ * POST /release?worker=id             returns the leases of a worker leaving
+ * GET  /status                        the state of the sites and workers
+ * </pre>
+ * The reported results are appended to coordinator.results (default target/coordinator/flowDurations.properties).
+ * <p>
+ * System properties: urls.list (the sites, see {@link ApplicationCrawlerHelper#getListOfSites()}), coordinator.port
+ * (default 7070), coordinator.virtual.nodes - ring points per worker (default 64), coordinator.lease.timeout.seconds
+ * (default 60), coordinator.max.attempts, coordinator.steal, coordinator.results, coordinator.linger.seconds - time
+ * the coordinator keeps answering "#done" once all the sites are done (default 10).
+ */
+public class Coordinator implements Closeable {
+
+    private static final Logger log = Logger.getLogger(Coordinator.class.getName());
+
+    static final String DONE = "#done";
+
+    enum State { PENDING, LEASED, DONE, FAILED }
+
+    private final Map<String, SiteLease> sites = new LinkedHashMap<>();
+    private final Map<String, Long> workers = new HashMap<>();
+    private final Map<String, Integer> sitesDoneByWorker = new HashMap<>();
+    private final HashRing ring;
+    private final long leaseTimeoutMillis;
+    private final int maxAttempts;
+    private final boolean steal;
+    private final String resultsFile;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final long startMillis = System.currentTimeMillis();
+    private HttpServer server;
+    private ScheduledExecutorService reaper;
+    private long leasesGranted;
+    private long leasesStolen;
+    private long leasesReturned;
+    private long workersExpired;
+
+    public Coordinator(List<Site> siteList, int virtualNodes, long leaseTimeoutMillis, int maxAttempts, boolean steal, String resultsFile) {
+        for (Site site : siteList) {
+            sites.put(site.getSiteName(), new SiteLease(site.getSiteName(), site.getUrl()));
+        }
+        this.ring = new HashRing(virtualNodes);
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.steal = steal;
+        this.resultsFile = resultsFile;
+        if (sites.isEmpty()) {
+            finished.countDown();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<Site> siteList = new ArrayList<>();
+        for (Object[] parameters : ApplicationCrawlerHelper.getListOfSites()) {
+            siteList.add((Site) parameters[0]);
+        }
+        try (Coordinator coordinator = new Coordinator(siteList,
+                Integer.getInteger("coordinator.virtual.nodes", 64),
+                TimeUnit.SECONDS.toMillis(Long.getLong("coordinator.lease.timeout.seconds", 60L)),
+                Integer.getInteger("coordinator.max.attempts", 2),
+                Boolean.parseBoolean(System.getProperty("coordinator.steal", "true")),
+                System.getProperty("coordinator.results", "target/coordinator/flowDurations.properties"))) {
+            coordinator.start(Integer.getInteger("coordinator.port", 7070));
+            coordinator.awaitFinished();
+            log.info(coordinator.getSummary());
+            TimeUnit.SECONDS.sleep(Long.getLong("coordinator.linger.seconds", 10L));
+        }
+    }
+
+    /**
+     * Starts answering the workers on the port (0 for any free port) and the reaper of the expired leases
+     */
+    public Coordinator start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 64);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } catch (RuntimeException runtimeException) {
+                    log.log(Level.INFO, "Failed to answer " + exchange.getRequestURI(), runtimeException);
+                    respond(exchange, 500, String.valueOf(runtimeException.getMessage()));
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4, daemonThreads("coordinator-http")));
+        server.start();
+        reaper = Executors.newSingleThreadScheduledExecutor(daemonThreads("coordinator-reaper"));
+        long period = Math.max(100, leaseTimeoutMillis / 4);
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reap(System.currentTimeMillis());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        log.info("Coordinator of " + sites.size() + " sites listening on port " + getPort());
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void awaitFinished() throws InterruptedException {
+        finished.await();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String path = exchange.getRequestURI().getPath();
+        String worker = query.get("worker");
+        if ("/status".equals(path)) {
+            respond(exchange, 200, getStatus());
+        } else if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            respond(exchange, 405, "POST expected");
+        } else if (worker == null || worker.isEmpty()) {
+            respond(exchange, 400, "worker expected");
+        } else if ("/lease".equals(path)) {
+            respond(exchange, 200, lease(worker, query.containsKey("max") ? Integer.parseInt(query.get("max")) : 1));
+        } else if ("/heartbeat".equals(path)) {
+            respond(exchange, heartbeat(worker) ? 204 : 410, null);
+        } else if ("/result".equals(path)) {
+            Properties properties = new Properties();
+            properties.load(new StringReader(new String(readBody(exchange), StandardCharsets.ISO_8859_1)));
+            report(worker, query.get("site"), !"false".equalsIgnoreCase(query.get("ok")), properties);
+            respond(exchange, 204, null);
+        } else if ("/release".equals(path)) {
+            release(worker);
+            respond(exchange, 204, null);
+        } else {
+            respond(exchange, 404, "unknown path " + path);
+        }
+    }
+
+    /**
+     * Leases up to max pending sites to the worker, registering it when it is new
+     * @return "name=url" lines, empty when no site is free (some are still leased), {@link #DONE} when all are done
+     */
+    synchronized String lease(String worker, int max) {
+        register(worker);
+        List<SiteLease> leased = new ArrayList<>();
+        boolean unfinished = false;
+        for (SiteLease site : sites.values()) {
+            unfinished |= site.state == State.PENDING || site.state == State.LEASED;
+            if (leased.size() < max && site.state == State.PENDING && worker.equals(ring.ownerOf(site.name))) {
+                leased.add(site);
+            }
+        }
+        if (!unfinished) {
+            return DONE;
+        }
+        if (steal) {
+            for (SiteLease site : sites.values()) {
+                if (leased.size() >= max) {
+                    break;
+                }
+                if (site.state == State.PENDING && !leased.contains(site)) {
+                    leased.add(site);
+                    leasesStolen++;
+                }
+            }
+        }
+        StringBuilder lines = new StringBuilder();
+        for (SiteLease site : leased) {
+            site.state = State.LEASED;
+            site.worker = worker;
+            site.attempts++;
+            leasesGranted++;
+            lines.append(site.name).append('=').append(site.url).append('\n');
+        }
+        if (!leased.isEmpty()) {
+            log.info("Leased " + leased.size() + " sites to " + worker + ": " + lines.toString().trim().replace('\n', ' '));
+        }
+        return lines.toString();
+    }
+
+    /**
+     * @return false when the worker is not known (any more), its leases were returned
+     */
+    synchronized boolean heartbeat(String worker) {
+        if (!workers.containsKey(worker)) {
+            return false;
+        }
+        workers.put(worker, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Records the result of a site: a success is kept whoever reports it (even a worker whose lease expired, the site
+     * is then not crawled again), a failure puts the site back to pending until it ran out of attempts
+     */
+    synchronized void report(String worker, String siteName, boolean ok, Properties properties) {
+        SiteLease site = siteName == null ? null : sites.get(siteName);
+        if (site == null || site.state == State.DONE || site.state == State.FAILED) {
+            log.info("Result of " + siteName + " from " + worker + " ignored, the site is " + (site == null ? "unknown" : site.state));
+            return;
+        }
+        if (workers.containsKey(worker)) {
+            workers.put(worker, System.currentTimeMillis());
+        }
+        SiteResult result = SiteResult.fromProperties(siteName, properties);
+        if (ok && result != null) {
+            site.state = State.DONE;
+            site.worker = worker;
+            Integer done = sitesDoneByWorker.get(worker);
+            sitesDoneByWorker.put(worker, done == null ? 1 : done + 1);
+            ResultsSink.forFile(resultsFile).submit(result);
+        } else if (worker.equals(site.worker) && site.state == State.LEASED) {
+            returnLease(site, "failed on " + worker);
+        }
+        checkFinished();
+    }
+
+    /**
+     * Returns the leases of a worker leaving the crawl
+     */
+    synchronized void release(String worker) {
+        if (workers.remove(worker) != null) {
+            ring.remove(worker);
+        }
+        for (SiteLease site : sites.values()) {
+            if (site.state == State.LEASED && worker.equals(site.worker)) {
+                site.attempts--;
+                returnLease(site, "released by " + worker);
+            }
+        }
+        checkFinished();
+    }
+
+    /**
+     * Drops the workers whose last heartbeat is older than the lease timeout and returns their leased sites
+     */
+    synchronized void reap(long nowMillis) {
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, Long> worker : workers.entrySet()) {
+            if (nowMillis - worker.getValue() > leaseTimeoutMillis) {
+                expired.add(worker.getKey());
+            }
+        }
+        for (String worker : expired) {
+            workers.remove(worker);
+            ring.remove(worker);
+            workersExpired++;
+            log.info("Worker " + worker + " sent no heartbeat for " + (leaseTimeoutMillis / 1000) + " Second, its leases are returned");
+            for (SiteLease site : sites.values()) {
+                if (site.state == State.LEASED && worker.equals(site.worker)) {
+                    returnLease(site, "expired on " + worker);
+                }
+            }
+        }
+        checkFinished();
+    }
+
+    private void register(String worker) {
+        if (workers.put(worker, System.currentTimeMillis()) == null) {
+            ring.add(worker);
+            log.info("Worker " + worker + " joined, " + workers.size() + " workers");
+        }
+    }
+
+    private void returnLease(SiteLease site, String reason) {
+        leasesReturned++;
+        site.worker = null;
+        site.state = site.attempts >= maxAttempts ? State.FAILED : State.PENDING;
+        log.info("Lease of " + site.name + " " + reason + (site.state == State.FAILED ? ", giving up after " + site.attempts + " attempts" : ", pending again"));
+    }
+
+    private void checkFinished() {
+        for (SiteLease site : sites.values()) {
+            if (site.state == State.PENDING || site.state == State.LEASED) {
+                return;
+            }
+        }
+        finished.countDown();
+    }
+
+    synchronized String getStatus() {
+        Map<State, Integer> states = new LinkedHashMap<>();
+        for (State state : State.values()) {
+            states.put(state, 0);
+        }
+        StringBuilder leased = new StringBuilder();
+        for (SiteLease site : sites.values()) {
+            states.put(site.state, states.get(site.state) + 1);
+            if (site.state == State.LEASED) {
+                leased.append(site.name).append(' ').append(site.worker).append('\n');
+            }
+        }
+        return "sites " + states + "\nworkers " + workers.keySet() + "\n" + leased;
+    }
+
+    public synchronized String getSummary() {
+        List<String> failed = new ArrayList<>();
+        int done = 0;
+        for (SiteLease site : sites.values()) {
+            if (site.state == State.DONE) {
+                done++;
+            } else if (site.state == State.FAILED) {
+                failed.add(site.name);
+            }
+        }
+        return String.format("Coordinator: %d of %d sites done in %d Milli-Second, by worker %s, failed %s, %d leases (%d taken from other workers), %d returned, %d workers expired",
+                done, sites.size(), System.currentTimeMillis() - startMillis, sitesDoneByWorker, failed, leasesGranted, leasesStolen, leasesReturned, workersExpired);
+    }
+
+    @Override
+    public void close() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+        ResultsSink.forFile(resultsFile).close();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(URLDecoder.decode(pair[0], "UTF-8"), pair.length > 1 ? URLDecoder.decode(pair[1], "UTF-8") : "");
+            }
+        }
+        return parameters;
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = input.read(buffer)) != -1; ) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + ++count);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static class SiteLease {
+
+        private final String name;
+        private final String url;
+        private State state = State.PENDING;
+        private String worker;
+        private int attempts;
+
+        private SiteLease(String name, String url) {
+            this.name = name;
+            this.url = url;
+        }
+    }
+}
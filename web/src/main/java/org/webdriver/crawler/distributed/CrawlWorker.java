@@ -0,0 +1,251 @@
+package org.webdriver.crawler.distributed;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.webdriver.crawler.ApplicationCrawler;
+import org.webdriver.crawler.results.ResultsSink;
+import org.webdriver.crawler.results.SiteResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Crawls the sites leased by a {@link Coordinator}: leases up to maximum.sites sites, runs {@link ApplicationCrawler}
+ * on them with its usual runner (the leased sites become the urls.list), reports the result of each site read back
+ * from the results file and leases again, until the coordinator answers that all the sites are done.
+ * A heartbeat is sent every worker.heartbeat.seconds (default 10) all along; on a normal exit (or Ctrl-C) the leases
+ * still held are released, a worker killed outright gets its leases returned by the coordinator once they expire.
+ * A site leased without results in the results file after the run (its crawl did not get to the end) is reported
+ * failed, the coordinator leases it again.
+ * <p>
+ * System properties: coordinator.url (default http://localhost:7070), worker.id (default "pid@host"),
+ * worker.poll.seconds - wait when no site is free (default 5), worker.coordinator.retries - consecutive
+ * failures to reach the coordinator before giving up (default 5). Any crawler property applies as usual.
+ */
+public class CrawlWorker {
+
+    private static final Logger log = Logger.getLogger(CrawlWorker.class.getName());
+
+    private static final String RESULTS_FILE = ApplicationCrawler.TARGET_TEST_CLASSES_GENERATED_FLOWS + "/flowDurations.properties";
+
+    private final String coordinatorUrl;
+    private final String workerId;
+    private final int sitesPerLease;
+    private volatile List<String> leasedSites = new ArrayList<>();
+
+    public CrawlWorker(String coordinatorUrl, String workerId, int sitesPerLease) {
+        this.coordinatorUrl = coordinatorUrl.endsWith("/") ? coordinatorUrl.substring(0, coordinatorUrl.length() - 1) : coordinatorUrl;
+        this.workerId = workerId;
+        this.sitesPerLease = Math.max(1, sitesPerLease);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final CrawlWorker worker = new CrawlWorker(System.getProperty("coordinator.url", "http://localhost:7070"),
+                System.getProperty("worker.id", ManagementFactory.getRuntimeMXBean().getName()),
+                Integer.getInteger("maximum.sites", 3));
+        Thread release = new Thread("worker-release") {
+            @Override
+            public void run() {
+                worker.releaseLeases();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(release);
+        worker.run(TimeUnit.SECONDS.toMillis(Long.getLong("worker.heartbeat.seconds", 10L)),
+                TimeUnit.SECONDS.toMillis(Long.getLong("worker.poll.seconds", 5L)),
+                Integer.getInteger("worker.coordinator.retries", 5));
+        System.exit(0);
+    }
+
+    /**
+     * Leases and crawls sites until the coordinator has none left or can not be reached retries times in a row
+     */
+    public void run(long heartbeatMillis, long pollMillis, int retries) throws InterruptedException {
+        ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "worker-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        heartbeats.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                heartbeat();
+            }
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        int sitesCrawled = 0;
+        int failures = 0;
+        try {
+            while (true) {
+                String leases;
+                try {
+                    leases = post("/lease?max=" + sitesPerLease, null);
+                    failures = 0;
+                } catch (IOException ioException) {
+                    if (++failures >= retries) {
+                        log.info("Worker " + workerId + " gives up, coordinator " + coordinatorUrl + " not reachable: " + ioException.getMessage());
+                        break;
+                    }
+                    TimeUnit.MILLISECONDS.sleep(pollMillis);
+                    continue;
+                }
+                if (leases.trim().startsWith(Coordinator.DONE)) {
+                    break;
+                }
+                List<String> sites = new ArrayList<>();
+                for (String line : leases.split("\n")) {
+                    if (!line.trim().isEmpty()) {
+                        sites.add(line.trim());
+                    }
+                }
+                if (sites.isEmpty()) {
+                    TimeUnit.MILLISECONDS.sleep(pollMillis);
+                    continue;
+                }
+                crawl(sites);
+                sitesCrawled += sites.size();
+            }
+        } finally {
+            heartbeats.shutdownNow();
+        }
+        log.info("Worker " + workerId + " done, " + sitesCrawled + " sites crawled");
+    }
+
+    private void crawl(List<String> sites) {
+        List<String> siteNames = new ArrayList<>();
+        StringBuilder urls = new StringBuilder();
+        for (String site : sites) {
+            siteNames.add(site.split("=", 2)[0]);
+            urls.append(urls.length() == 0 ? "" : ";").append(site);
+        }
+        leasedSites = new ArrayList<>(siteNames);
+        log.info("Worker " + workerId + " crawling " + siteNames);
+        File resultsFile = new File(RESULTS_FILE);
+        long offset = resultsFile.length();
+        System.setProperty("urls.list", urls.toString());
+        Result result = JUnitCore.runClasses(ApplicationCrawler.class);
+        ResultsSink.forFile(RESULTS_FILE).close();
+        if (!result.wasSuccessful()) {
+            log.info("Worker " + workerId + ": " + result.getFailureCount() + " of " + result.getRunCount() + " sites failed");
+        }
+        Properties results = readAppended(resultsFile, offset);
+        for (String siteName : siteNames) {
+            SiteResult siteResult = SiteResult.fromProperties(siteName, results);
+            report(siteName, siteResult);
+            leasedSites.remove(siteName);
+        }
+    }
+
+    private void report(String siteName, SiteResult siteResult) {
+        try {
+            String body = "";
+            if (siteResult != null) {
+                StringWriter properties = new StringWriter();
+                siteResult.toProperties().store(properties, null);
+                body = properties.toString();
+            }
+            post("/result?site=" + URLEncoder.encode(siteName, "UTF-8") + "&ok=" + (siteResult != null), body);
+        } catch (IOException ioException) {
+            log.info("Failed to report the result of " + siteName + ": " + ioException.getMessage());
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            post("/heartbeat", null);
+        } catch (IOException ioException) {
+            log.info("Heartbeat of " + workerId + " failed: " + ioException.getMessage());
+        }
+    }
+
+    /**
+     * Returns the leases still held to the coordinator, called when the JVM exits
+     */
+    void releaseLeases() {
+        if (!leasedSites.isEmpty()) {
+            try {
+                post("/release", null);
+                log.info("Worker " + workerId + " released " + leasedSites);
+            } catch (IOException ioException) {
+                log.info("Failed to release the leases of " + workerId + ": " + ioException.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the properties appended to the file since offset, by this JVM and any other sharing the file
+     */
+    private static Properties readAppended(File file, long offset) {
+        Properties properties = new Properties();
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[(int) Math.max(0, input.length() - offset)];
+            input.seek(Math.min(offset, input.length()));
+            input.readFully(bytes);
+            properties.load(new StringReader(new String(bytes, StandardCharsets.ISO_8859_1)));
+        } catch (IOException ioException) {
+            log.info("Failed to read the results in " + file + ": " + ioException.getMessage());
+        }
+        return properties;
+    }
+
+    /**
+     * @return the response body, empty when there is none
+     * @throws IOException when the coordinator can not be reached or answers an error other than 410 (Gone)
+     */
+    private String post(String path, String body) throws IOException {
+        URL url = new URL(coordinatorUrl + path + (path.contains("?") ? "&" : "?") + "worker=" + URLEncoder.encode(workerId, "UTF-8"));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(30000);
+            connection.setDoOutput(true);
+            byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.ISO_8859_1);
+            connection.setFixedLengthStreamingMode(bytes.length);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(bytes);
+            }
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_GONE) {
+                log.info("Coordinator dropped worker " + workerId + ", its leases were returned");
+                return "";
+            }
+            if (status >= 400) {
+                throw new IOException("coordinator answered " + status + " to " + path);
+            }
+            if (status == HttpURLConnection.HTTP_NO_CONTENT) {
+                return "";
+            }
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try (InputStream input = connection.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                for (int read; (read = input.read(buffer)) != -1; ) {
+                    response.write(buffer, 0, read);
+                }
+            }
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.webdriver.crawler.distributed;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing of the site names over the workers: every worker is placed on the ring at virtualNodes
+ * points, a site belongs to the first worker point following its hash, so a worker joining or leaving only moves
+ * the sites of its own ring segments. Not thread safe, the {@link Coordinator} guards it.
+ */
+class HashRing {
+
+    private final int virtualNodes;
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    HashRing(int virtualNodes) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+    }
+
+    void add(String worker) {
+        for (int node = 0; node < virtualNodes; node++) {
+            ring.put(hash(worker + "#" + node), worker);
+        }
+    }
+
+    void remove(String worker) {
+        for (int node = 0; node < virtualNodes; node++) {
+            ring.remove(hash(worker + "#" + node), worker);
+        }
+    }
+
+    /**
+     * @return the worker owning the key, null when there are no workers
+     */
+    String ownerOf(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, String> tail = ring.tailMap(hash(key));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int index = 0; index < 8; index++) {
+                hash = hash << 8 | (digest[index] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+            throw new IllegalStateException(noSuchAlgorithmException);
+        }
+    }
+}
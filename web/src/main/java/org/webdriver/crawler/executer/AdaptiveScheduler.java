@@ -0,0 +1,260 @@
+package org.webdriver.crawler.executer;
+
+import org.junit.runners.model.RunnerScheduler;
+import org.webdriver.crawler.metrics.Metrics;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Site scheduler which grows and shrinks the number of sites crawled concurrently, within configured bounds,
+ * from the observed system load, free physical memory and WebDriver command latency.
+ * <p>
+ * System properties:
+ * <ul>
+ * <li>adaptive.min.sites / adaptive.max.sites - concurrency bounds (default 1 / number of processors)</li>
+ * <li>adaptive.initial.sites - starting concurrency (default maximum.sites, within the bounds)</li>
+ * <li>adaptive.interval.seconds - time between two decisions (default 10)</li>
+ * <li>adaptive.load.high / adaptive.load.low - system load average per processor above which the concurrency
+ * shrinks and below which it may grow (default 0.9 / 0.6), the CPU load of the machine is used where there is no
+ * load average (Windows)</li>
+ * <li>adaptive.min.free.mb - free physical memory below which the concurrency shrinks (default 1024)</li>
+ * <li>adaptive.latency.factor - shrink when the command latency is this many times its lowest average over the
+ * last adaptive.latency.window decisions (default 3 and 30)</li>
+ * </ul>
+ * The concurrency is exported as the crawler_site_concurrency gauge.
+ */
+class AdaptiveScheduler implements RunnerScheduler {
+
+    private static final Logger log = Logger.getLogger(AdaptiveScheduler.class.getName());
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    private final int minimumSites = Integer.getInteger("adaptive.min.sites", 1);
+    private final int maximumSites = Math.max(minimumSites, Integer.getInteger("adaptive.max.sites", PROCESSORS));
+    private final double highLoad = Double.parseDouble(System.getProperty("adaptive.load.high", "0.9"));
+    private final double lowLoad = Double.parseDouble(System.getProperty("adaptive.load.low", "0.6"));
+    private final long minimumFreeMemory = Long.getLong("adaptive.min.free.mb", 1024L) * 1024 * 1024;
+    private final double latencyFactor = Double.parseDouble(System.getProperty("adaptive.latency.factor", "3"));
+    private final int latencyWindow = Math.max(1, Integer.getInteger("adaptive.latency.window", 30));
+    private final long awaitTerminationMinutes;
+
+    private final ExecutorService siteExecutor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "adaptive-site-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition siteFinished = lock.newCondition();
+    private final Deque<Runnable> queued = new ArrayDeque<>();
+    private int concurrency;
+    private int running;
+    private final Deque<Double> latencies = new ArrayDeque<>();
+    private boolean loadUnknownLogged;
+
+    AdaptiveScheduler(int initialSites, long awaitTerminationMinutes) {
+        this.concurrency = Math.min(maximumSites, Math.max(minimumSites, Integer.getInteger("adaptive.initial.sites", initialSites)));
+        this.awaitTerminationMinutes = awaitTerminationMinutes;
+        Metrics.gauge(Metrics.SITE_CONCURRENCY).set(concurrency);
+        long interval = Long.getLong("adaptive.interval.seconds", 10L);
+        monitor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                adapt();
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+        log.info(String.format("Adaptive site scheduler started with concurrency %d (bounds %d-%d)", concurrency, minimumSites, maximumSites));
+    }
+
+    @Override
+    public void schedule(Runnable childStatement) {
+        lock.lock();
+        try {
+            queued.add(childStatement);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts queued sites while the concurrency allows it, must be called holding the lock
+     */
+    private void dispatch() {
+        while (running < concurrency && !queued.isEmpty()) {
+            final Runnable childStatement = queued.poll();
+            running++;
+            siteExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        childStatement.run();
+                    } finally {
+                        lock.lock();
+                        try {
+                            running--;
+                            dispatch();
+                            siteFinished.signalAll();
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void finished() {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MINUTES.toNanos(awaitTerminationMinutes);
+            while ((running > 0 || !queued.isEmpty()) && remaining > 0) {
+                remaining = siteFinished.awaitNanos(remaining);
+            }
+        } catch (InterruptedException interruptedException) {
+            throw new RuntimeException(interruptedException);
+        } finally {
+            lock.unlock();
+            monitor.shutdownNow();
+            siteExecutor.shutdown();
+        }
+    }
+
+    /**
+     * One scaling decision from the current readings
+     */
+    void adapt() {
+        double load = getLoadPerProcessor();
+        if (load < 0 && !loadUnknownLogged) {
+            loadUnknownLogged = true;
+            log.info("Adaptive site scheduler: no system load reading on " + System.getProperty("os.name") + ", the concurrency follows memory and command latency only");
+        }
+        long freeMemory = getFreePhysicalMemory();
+        double latency = CommandLatency.getAverageMillis();
+        double lowestLatency = getLowestLatency(latency);
+        boolean slowCommands = latency > 0 && latency > lowestLatency * latencyFactor;
+
+        lock.lock();
+        try {
+            int previous = concurrency;
+            String reason = null;
+            if (load > highLoad || (freeMemory >= 0 && freeMemory < minimumFreeMemory) || slowCommands) {
+                concurrency = Math.max(minimumSites, concurrency - 1);
+                reason = load > highLoad ? "high load" : slowCommands ? "slow WebDriver commands" : "low free memory";
+            } else if (load < lowLoad && (freeMemory < 0 || freeMemory > 2 * minimumFreeMemory) && !queued.isEmpty()) {
+                concurrency = Math.min(maximumSites, concurrency + 1);
+                reason = "spare resources";
+            }
+            if (concurrency != previous) {
+                log.info(String.format("Site concurrency %d -> %d (%s): load per processor %.2f, free memory %,d MB, command latency %.1f ms (lowest %.1f ms), %d sites running, %d queued",
+                        previous, concurrency, reason, load, freeMemory / (1024 * 1024), latency,
+                        lowestLatency == Double.MAX_VALUE ? 0 : lowestLatency, running, queued.size()));
+                dispatch();
+            }
+            Metrics.gauge(Metrics.SITE_CONCURRENCY).set(concurrency);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the reading to the window of the last latencies
+     * @return the lowest latency of the window, Double.MAX_VALUE before the first reading, so that a baseline taken
+     * while the browsers were idle stops counting once it leaves the window
+     */
+    private double getLowestLatency(double latency) {
+        if (latency > 0) {
+            latencies.addLast(latency);
+            if (latencies.size() > latencyWindow) {
+                latencies.removeFirst();
+            }
+        }
+        double lowest = Double.MAX_VALUE;
+        for (double reading : latencies) {
+            lowest = Math.min(lowest, reading);
+        }
+        return lowest;
+    }
+
+    /**
+     * @return the load average per processor, the CPU load of the machine (0 to 1) where there is no load average,
+     * -1 when neither is known
+     */
+    private double getLoadPerProcessor() {
+        double loadAverage = operatingSystem.getSystemLoadAverage();
+        if (loadAverage >= 0) {
+            return loadAverage / PROCESSORS;
+        }
+        double cpuLoad = readOperatingSystem("getCpuLoad", "getSystemCpuLoad");
+        return cpuLoad >= 0 ? cpuLoad : -1;
+    }
+
+    /**
+     * @return the current number of sites allowed to run concurrently
+     */
+    int getConcurrency() {
+        lock.lock();
+        try {
+            return concurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the memory available for new processes (MemAvailable on Linux, so the page cache is not counted as
+     * used), -1 when unknown
+     */
+    private long getFreePhysicalMemory() {
+        File memoryInformation = new File("/proc/meminfo");
+        if (memoryInformation.isFile()) {
+            try {
+                for (String line : Files.readAllLines(memoryInformation.toPath(), StandardCharsets.US_ASCII)) {
+                    if (line.startsWith("MemAvailable:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                    }
+                }
+            } catch (Exception e) {
+            }
+        }
+        return (long) readOperatingSystem("getFreeMemorySize", "getFreePhysicalMemorySize");
+    }
+
+    /**
+     * Reads a value of the com.sun.management extension of the operating system bean by reflection: the first
+     * method found wins, so the current name is used on recent JDKs (14 and later) and its deprecated name before
+     * @return the value, -1 when none of the methods exists or the value is not known
+     */
+    private double readOperatingSystem(String... methods) {
+        for (String method : methods) {
+            try {
+                Method getter = Class.forName("com.sun.management.OperatingSystemMXBean").getMethod(method);
+                double value = ((Number) getter.invoke(operatingSystem)).doubleValue();
+                return value >= 0 ? value : -1;
+            } catch (ReflectiveOperationException | RuntimeException exception) {
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,98 @@
+package org.webdriver.crawler.executer;
+
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends Chrome DevTools Protocol commands through the chromedriver "goog/cdp/execute" endpoint (chromedriver 75
+ * and later), which Selenium 3 has no API for. Works for local and remote (Grid) Chrome sessions whose driver
+ * talks http to chromedriver.
+ */
+public class ChromeDevTools {
+
+    private static final Json JSON = new Json();
+
+    private ChromeDevTools() {
+    }
+
+    /**
+     * @return the "value" of the response, an empty map when there is none
+     * @throws UnsupportedCommandException when the session is not a Chrome session reachable over http or its
+     * driver has no DevTools endpoint
+     * @throws IOException when the driver could not be reached
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> execute(WebDriver webDriver, String command, Map<String, Object> parameters) throws IOException {
+        if (!(webDriver instanceof RemoteWebDriver) || ((RemoteWebDriver) webDriver).getSessionId() == null) {
+            throw new UnsupportedCommandException("Not a remote WebDriver session: " + command);
+        }
+        RemoteWebDriver remoteWebDriver = (RemoteWebDriver) webDriver;
+        CommandExecutor executor = remoteWebDriver.getCommandExecutor();
+        if (!(executor instanceof HttpCommandExecutor) ||
+                !String.valueOf(remoteWebDriver.getCapabilities().getBrowserName()).toLowerCase().contains("chrome")) {
+            throw new UnsupportedCommandException("No DevTools endpoint for this session: " + command);
+        }
+        String base = ((HttpCommandExecutor) executor).getAddressOfRemoteServer().toString();
+        URL url = new URL(base.replaceAll("/$", "") + "/session/" + remoteWebDriver.getSessionId() + "/goog/cdp/execute");
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("cmd", command);
+        body.put("params", parameters == null ? Collections.<String, Object>emptyMap() : parameters);
+        byte[] bytes = JSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(30000);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setFixedLengthStreamingMode(bytes.length);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(bytes);
+            }
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_BAD_METHOD) {
+                throw new UnsupportedCommandException("No DevTools endpoint (" + status + "): " + command);
+            }
+            String response = read(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+            if (status >= 400) {
+                throw new IOException(command + " failed (" + status + "): " + response);
+            }
+            Map<String, Object> decoded = response.isEmpty() ? Collections.<String, Object>emptyMap()
+                    : JSON.<Map<String, Object>>toType(response, Json.MAP_TYPE);
+            Object value = decoded.get("value");
+            return value instanceof Map ? (Map<String, Object>) value : Collections.<String, Object>emptyMap();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String read(InputStream input) throws IOException {
+        if (input == null) {
+            return "";
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream stream = input) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = stream.read(buffer)) != -1; ) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
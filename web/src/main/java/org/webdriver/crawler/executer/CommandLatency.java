@@ -0,0 +1,36 @@
+package org.webdriver.crawler.executer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide moving average of the latency of cheap WebDriver commands (e.g. reading the current url), used as
+ * a signal of how loaded the browsers and the driver services are.
+ */
+public class CommandLatency {
+
+    private static final double WEIGHT = 0.2;
+
+    private static final AtomicLong averageMicros = new AtomicLong();
+    private static final AtomicLong samples = new AtomicLong();
+
+    public static void record(long startNanos) {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        long current, updated;
+        do {
+            current = averageMicros.get();
+            updated = current == 0 ? micros : (long) (current + WEIGHT * (micros - current));
+        } while (!averageMicros.compareAndSet(current, updated));
+        samples.incrementAndGet();
+    }
+
+    /**
+     * @return the moving average in milli-seconds, 0 before the first sample
+     */
+    public static double getAverageMillis() {
+        return averageMicros.get() / 1000.0;
+    }
+
+    public static long getSamples() {
+        return samples.get();
+    }
+}
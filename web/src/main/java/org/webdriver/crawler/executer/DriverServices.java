@@ -0,0 +1,96 @@
+package org.webdriver.crawler.executer;
+
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One long lived chromedriver / geckodriver process per browser type, shared by all the local sessions of the JVM
+ * instead of a new driver executable per session. Sessions talk to it as remote sessions, so quitting a session
+ * leaves the service running; the services are stopped when the run finishes (and at JVM exit).
+ * <p>
+ * System property driver.service.shared (default true), false starts one driver executable per session.
+ */
+public class DriverServices {
+
+    private static final Logger log = Logger.getLogger(DriverServices.class.getName());
+
+    private static final Map<String, DriverService> services = new HashMap<>();
+    private static boolean shutdownHook;
+    private static final ReentrantLock lock = new ReentrantLock();
+
+    public static boolean isShared() {
+        return Boolean.parseBoolean(System.getProperty("driver.service.shared", "true"));
+    }
+
+    /**
+     * Starts the shared service of the browser on first use
+     * @return url of the shared service, null when the browser has none
+     */
+    public static URL getUrl(String browserName) throws IOException {
+        lock.lock();
+        try {
+            String browser = browserName.toLowerCase();
+            DriverService service = services.get(browser);
+            if (service == null || !service.isRunning()) {
+                long startTime = System.currentTimeMillis();
+                switch (browser) {
+                    case BrowserType.CHROME:
+                        service = ChromeDriverService.createDefaultService();
+                        break;
+                    case BrowserType.FIREFOX:
+                        service = GeckoDriverService.createDefaultService();
+                        break;
+                    default:
+                        return null;
+                }
+                service.start();
+                services.put(browser, service);
+                registerShutdownHook();
+                log.info(String.format("Shared %s driver service started in %,d Milli-Second at %s", browser,
+                        System.currentTimeMillis() - startTime, service.getUrl()));
+            }
+            return service.getUrl();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void registerShutdownHook() {
+        if (!shutdownHook) {
+            shutdownHook = true;
+            Runtime.getRuntime().addShutdownHook(new Thread("driver-services-shutdown") {
+                @Override
+                public void run() {
+                    stopAll();
+                }
+            });
+        }
+    }
+
+    public static void stopAll() {
+        lock.lock();
+        try {
+            for (Map.Entry<String, DriverService> service : services.entrySet()) {
+                try {
+                    service.getValue().stop();
+                    log.info("Shared " + service.getKey() + " driver service stopped");
+                } catch (RuntimeException exception) {
+                    log.log(Level.INFO, "Failed to stop the shared " + service.getKey() + " driver service", exception);
+                }
+            }
+            services.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
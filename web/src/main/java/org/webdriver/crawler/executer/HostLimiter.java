@@ -0,0 +1,116 @@
+package org.webdriver.crawler.executer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Process wide rate limit and concurrency cap per host, shared by all the crawl threads so that sites hosted on
+ * the same backend do not pile onto it.
+ * <p>
+ * The rate is a token bucket implemented as a generic cell rate algorithm on a single {@link AtomicLong}
+ * (the theoretical arrival time of the next request): each caller reserves its slot with a CAS and then sleeps
+ * until the slot, no lock is taken. System properties, each can be set per host by appending the host name
+ * (e.g. -Dhost.rate.per.second.www.crawl.here.com=2):
+ * <ul>
+ * <li>host.rate.per.second - navigations per second, 0 for no limit (default 10)</li>
+ * <li>host.burst - navigations allowed at once after an idle period (default 10)</li>
+ * <li>host.max.concurrent - navigations in flight at the same time, 0 for no limit (default 6)</li>
+ * </ul>
+ */
+public class HostLimiter {
+
+    private static final Logger log = Logger.getLogger(HostLimiter.class.getName());
+
+    private static final ConcurrentMap<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+    private final Semaphore concurrent;
+
+    HostLimiter(String host, double ratePerSecond, int burst, int maximumConcurrent) {
+        this.host = host;
+        this.intervalNanos = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond) : 0;
+        this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+        this.concurrent = maximumConcurrent > 0 ? new Semaphore(maximumConcurrent, true) : null;
+    }
+
+    /**
+     * @return the limiter of the host, null when there is no host (e.g. about:blank)
+     */
+    public static HostLimiter forHost(String host) {
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        String key = host.toLowerCase();
+        HostLimiter limiter = limiters.get(key);
+        if (limiter == null) {
+            HostLimiter created = new HostLimiter(key,
+                    getDouble("host.rate.per.second", key, 10),
+                    (int) getDouble("host.burst", key, 10),
+                    (int) getDouble("host.max.concurrent", key, 6));
+            limiter = limiters.putIfAbsent(key, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * @return the per host value of the property, else its global value, else the default (also when the value is
+     * not a number)
+     */
+    private static double getDouble(String key, String host, double defaultValue) {
+        String value = System.getProperty(key + "." + host, System.getProperty(key));
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException nfe) {
+            log.info("Ignoring " + key + "=" + value + " for " + host + ", not a number, using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Blocks until the host allows one more navigation, every call must be followed by {@link #release()}
+     * @return the time waited in nano-seconds
+     */
+    public long acquire() {
+        long startNanos = System.nanoTime();
+        if (concurrent != null) {
+            concurrent.acquireUninterruptibly();
+        }
+        if (intervalNanos > 0) {
+            long now, arrival, next;
+            do {
+                now = System.nanoTime();
+                arrival = theoreticalArrival.get();
+                next = Math.max(arrival, now - toleranceNanos) + intervalNanos;
+            } while (!theoreticalArrival.compareAndSet(arrival, next));
+            long allowedAt = next - intervalNanos;
+            while (allowedAt - System.nanoTime() > 0 && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(allowedAt - System.nanoTime());
+            }
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    public void release() {
+        if (concurrent != null) {
+            concurrent.release();
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+}
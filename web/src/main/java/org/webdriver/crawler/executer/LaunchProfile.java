@@ -0,0 +1,116 @@
+package org.webdriver.crawler.executer;
+
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.util.Collections;
+
+/**
+ * How the browsers of the crawl are launched, chosen with the "launch.profile" system property:
+ * <ul>
+ * <li>"default" - Chrome on the WINDOWS platform, incognito, maximized window; headless with browser.headless</li>
+ * <li>"lean" - headless incognito Chrome with a fixed viewport (launch.window.size, default 1366,768) and the GPU, background
+ * networking, component updates, sync, translation, crash reporting and other background services turned off</li>
+ * </ul>
+ * Extra Chrome arguments can be added to either profile with launch.args (comma separated).
+ */
+public abstract class LaunchProfile {
+
+    private final String name;
+
+    protected LaunchProfile(String name) {
+        this.name = name;
+    }
+
+    public static LaunchProfile current() {
+        return forName(System.getProperty("launch.profile", "default"));
+    }
+
+    public static LaunchProfile forName(String name) {
+        return "lean".equalsIgnoreCase(name) ? lean() : standard();
+    }
+
+    public static LaunchProfile standard() {
+        return new Standard();
+    }
+
+    public static LaunchProfile lean() {
+        return new Lean();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DesiredCapabilities capabilities() {
+        DesiredCapabilities desiredCapabilities = DesiredCapabilities.chrome();
+        ChromeOptions chromeOptions = new ChromeOptions();
+        configure(desiredCapabilities, chromeOptions);
+        for (String argument : System.getProperty("launch.args", "").split(",")) {
+            if (!argument.trim().isEmpty()) {
+                chromeOptions.addArguments(argument.trim());
+            }
+        }
+        if (Boolean.getBoolean("resource.block.images.browser")) {
+            chromeOptions.setExperimentalOption("prefs", Collections.singletonMap("profile.managed_default_content_settings.images", 2));
+        }
+        desiredCapabilities.setCapability(ChromeOptions.CAPABILITY, chromeOptions);
+        return desiredCapabilities;
+    }
+
+    protected abstract void configure(DesiredCapabilities desiredCapabilities, ChromeOptions chromeOptions);
+
+    /**
+     * @return true when the window is maximized once the browser started
+     */
+    public abstract boolean maximizeWindow();
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public static class Standard extends LaunchProfile {
+
+        Standard() {
+            super("default");
+        }
+
+        @Override
+        protected void configure(DesiredCapabilities desiredCapabilities, ChromeOptions chromeOptions) {
+            desiredCapabilities.setPlatform(Platform.WINDOWS);
+            chromeOptions.addArguments("incognito", "test-type", "disable-extensions");
+            if (Boolean.getBoolean("browser.headless")) {
+                chromeOptions.addArguments("headless", "disable-gpu", "no-sandbox");
+            }
+        }
+
+        @Override
+        public boolean maximizeWindow() {
+            return true;
+        }
+    }
+
+    public static class Lean extends LaunchProfile {
+
+        Lean() {
+            super("lean");
+        }
+
+        @Override
+        protected void configure(DesiredCapabilities desiredCapabilities, ChromeOptions chromeOptions) {
+            chromeOptions.addArguments("incognito", "headless", "window-size=" + System.getProperty("launch.window.size", "1366,768"),
+                    "disable-gpu", "no-sandbox", "disable-dev-shm-usage", "disable-extensions", "disable-background-networking",
+                    "disable-component-update", "disable-default-apps", "disable-sync", "disable-translate", "disable-breakpad",
+                    "disable-client-side-phishing-detection", "disable-hang-monitor", "disable-domain-reliability",
+                    "disable-features=TranslateUI,MediaRouter,OptimizationHints", "metrics-recording-only", "mute-audio",
+                    "no-first-run", "no-default-browser-check", "password-store=basic", "use-mock-keychain");
+        }
+
+        @Override
+        public boolean maximizeWindow() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.webdriver.crawler.executer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Memory of the browser processes of one session, read from /proc (Linux only): the processes whose command line
+ * holds the session marker (its user data directory) are summed. The proportional set size (Pss of
+ * /proc/&lt;pid&gt;/smaps_rollup) is used when the kernel provides it, so the pages shared between the browser
+ * processes are not counted several times, the resident set size (VmRSS) otherwise.
+ */
+public class ProcessMemory {
+
+    private static final File PROC = new File("/proc");
+
+    private final long kilobytes;
+    private final int processes;
+    private final boolean proportional;
+
+    private ProcessMemory(long kilobytes, int processes, boolean proportional) {
+        this.kilobytes = kilobytes;
+        this.processes = processes;
+        this.proportional = proportional;
+    }
+
+    public static boolean isSupported() {
+        return new File(PROC, "self/status").canRead();
+    }
+
+    /**
+     * @return the memory of the processes started with the marker in their command line, null without /proc
+     */
+    public static ProcessMemory ofProcesses(String marker) {
+        File[] entries = PROC.listFiles();
+        if (entries == null || !isSupported()) {
+            return null;
+        }
+        long kilobytes = 0;
+        int processes = 0;
+        boolean proportional = true;
+        for (File entry : entries) {
+            if (!entry.getName().matches("\\d+")) {
+                continue;
+            }
+            try {
+                String commandLine = new String(Files.readAllBytes(new File(entry, "cmdline").toPath()), StandardCharsets.UTF_8);
+                if (!commandLine.contains(marker)) {
+                    continue;
+                }
+                long pss = readKilobytes(new File(entry, "smaps_rollup"), "Pss:");
+                if (pss < 0) {
+                    proportional = false;
+                    pss = readKilobytes(new File(entry, "status"), "VmRSS:");
+                }
+                if (pss >= 0) {
+                    kilobytes += pss;
+                    processes++;
+                }
+            } catch (IOException | SecurityException exception) {
+                // the process ended or belongs to another user
+            }
+        }
+        return new ProcessMemory(kilobytes, processes, proportional);
+    }
+
+    private static long readKilobytes(File file, String field) {
+        try {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | SecurityException | NumberFormatException exception) {
+            // not provided by this kernel
+        }
+        return -1;
+    }
+
+    public long getKilobytes() {
+        return kilobytes;
+    }
+
+    public int getProcesses() {
+        return processes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d KB %s in %d processes", kilobytes, proportional ? "PSS" : "RSS", processes);
+    }
+}
@@ -9,7 +9,16 @@ import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Suite;
 import org.junit.runners.model.*;
+import org.openqa.selenium.Capabilities;
+import org.webdriver.crawler.capture.PageCapture;
+import org.webdriver.crawler.metrics.Metrics;
+import org.webdriver.crawler.proxy.ProxyCache;
 
+import java.io.File;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,6 +27,7 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 /**
  * Took from https://github.com/saucelabs/parallel-test-examples/blob/master/java/junit/src/main/java/com/saucelabs/junit/Parallelized.java
@@ -26,6 +36,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class SiteExecution extends Suite {
 
+	private static final Logger log = Logger.getLogger(SiteExecution.class.getName());
+
 	private static final int AWAIT_TERMINATION_TIMEOUT = 
 			Integer.getInteger("paralleledExecutionAwaitTerminationTimeout", 720);
     private static final int maximumThreads =
@@ -34,6 +46,37 @@ public class SiteExecution extends Suite {
 			getDelayDurationUnit(TimeUnit.SECONDS);
 	private static final int delayDurationValue =
 			Integer.getInteger("paralleledExecutionDelayDuration", 15);
+	private static final int maximumSites = Integer.getInteger("maximum.sites", 3);
+	private static final int gridCapacity = Integer.getInteger("grid.capacity", maximumSites);
+	private static final int sessionPoolSize = Integer.getInteger("session.pool.size",
+			VirtualThreads.isRequested() ? gridCapacity : maximumSites);
+
+	private static volatile WebDriverSessionPool sessionPool;
+	private static volatile AdaptiveScheduler adaptiveScheduler;
+
+	/**
+	 * Annotation for a public static method on the test class returning the {@link Capabilities} of the pooled
+	 * WebDriver sessions. When present (and session.pool.size is not 0) the sessions are shared by the sites.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface SessionCapabilities {
+	}
+
+	/**
+	 * @return the number of sites currently allowed to run concurrently
+	 */
+	public static int getSiteConcurrency() {
+		AdaptiveScheduler scheduler = adaptiveScheduler;
+		return scheduler != null ? scheduler.getConcurrency() : VirtualThreads.isRequested() ? gridCapacity : maximumSites;
+	}
+
+	/**
+	 * @return the session pool of the running execution, null when sessions are not pooled
+	 */
+	public static WebDriverSessionPool getSessionPool() {
+		return sessionPool;
+	}
 
 	private static TimeUnit getDelayDurationUnit(TimeUnit defaultTimeUnit) {
 		String parallelizedExecutionDelayDurationUnit = System.getProperty("parallelizedExecutionDelayDurationUnit", defaultTimeUnit.name()).toUpperCase();
@@ -109,7 +152,7 @@ public class SiteExecution extends Suite {
 		private ExecutorService siteExecutor;
 
 		public ThreadPoolScheduler() {
-			siteExecutor = Executors.newFixedThreadPool(Integer.getInteger("maximum.sites", 3));
+			siteExecutor = Executors.newFixedThreadPool(maximumSites);
 		}
 
 		@Override
@@ -119,6 +162,8 @@ public class SiteExecution extends Suite {
 				siteExecutor.awaitTermination(AWAIT_TERMINATION_TIMEOUT, TimeUnit.MINUTES);
 			} catch (InterruptedException interruptedException) {
 				throw new RuntimeException(interruptedException);
+			} finally {
+				runFinished();
 			}
 		}
 
@@ -135,10 +180,79 @@ public class SiteExecution extends Suite {
 	 */
 	public SiteExecution(Class<?> klass) throws Throwable {
 		super(klass, Collections.<Runner>emptyList());
-		setScheduler(new ThreadPoolScheduler());
+		setScheduler(createScheduler());
 		List<Object[]> parametersList = getParametersList(getTestClass());
 		for (int index = 0; index < parametersList.size(); index++)
 			runners.add(new TestClassRunnerForParameters(getTestClass().getJavaClass(), parametersList, index));
+		startSessionPool(getTestClass(), Math.min(sessionPoolSize, parametersList.size()));
+	}
+
+	/**
+	 * "site.scheduler" system property: "fixed" (default) runs maximum.sites sites at a time, "adaptive" changes
+	 * the number of concurrent sites from the observed resources (see {@link AdaptiveScheduler}), "virtual" runs
+	 * every site on its own virtual thread, grid.capacity sites at a time (see {@link VirtualThreadScheduler})
+	 */
+	private static RunnerScheduler createScheduler() {
+		if (VirtualThreads.isRequested()) {
+			return new VirtualThreadScheduler(gridCapacity, AWAIT_TERMINATION_TIMEOUT) {
+				@Override
+				public void finished() {
+					try {
+						super.finished();
+					} finally {
+						runFinished();
+					}
+				}
+			};
+		}
+		if ("adaptive".equalsIgnoreCase(System.getProperty("site.scheduler", "fixed"))) {
+			return adaptiveScheduler = new AdaptiveScheduler(maximumSites, AWAIT_TERMINATION_TIMEOUT) {
+				@Override
+				public void finished() {
+					try {
+						super.finished();
+					} finally {
+						log.info("Adaptive site scheduler finished with concurrency " + getConcurrency());
+						adaptiveScheduler = null;
+						runFinished();
+					}
+				}
+			};
+		}
+		return new ThreadPoolScheduler();
+	}
+
+	private static void startSessionPool(TestClass testClass, int size) throws Throwable {
+		List<FrameworkMethod> methods = testClass.getAnnotatedMethods(SessionCapabilities.class);
+		if (methods.isEmpty() || size <= 0) {
+			return;
+		}
+		Capabilities capabilities = (Capabilities) methods.get(0).invokeExplosively(null);
+		sessionPool = new WebDriverSessionPool(capabilities, size);
+		sessionPool.prewarm();
+	}
+
+	/**
+	 * Called once all the sites are done: closes the session pool and the shared driver services and exports the metrics snapshot of the run
+	 * to the "metrics.directory" system property (default target/metrics)
+	 */
+	private static void runFinished() {
+		try {
+			shutdownSessionPool();
+			DriverServices.stopAll();
+			ProxyCache.logSummary();
+			PageCapture.shutdown();
+		} finally {
+			Metrics.export(new File(System.getProperty("metrics.directory", "target/metrics")));
+		}
+	}
+
+	private static void shutdownSessionPool() {
+		WebDriverSessionPool pool = sessionPool;
+		sessionPool = null;
+		if (pool != null) {
+			pool.shutdown();
+		}
 	}
 
 	@Override
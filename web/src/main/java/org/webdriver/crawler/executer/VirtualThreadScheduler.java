@@ -0,0 +1,95 @@
+package org.webdriver.crawler.executer;
+
+import org.junit.runners.model.RunnerScheduler;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Site scheduler for a large Selenium Grid: every site gets its own (virtual, see {@link VirtualThreads}) thread
+ * and the number of sites crawled at once is bounded by a semaphore of grid.capacity permits (default
+ * maximum.sites) instead of by the number of threads. The site threads mostly wait on remote WebDriver calls,
+ * sleeps and waits, which release their carrier thread, so hundreds of remote sessions only need a few platform
+ * threads. Without virtual threads (before Java 21) the sites run on a fixed pool of grid.capacity platform threads.
+ */
+class VirtualThreadScheduler implements RunnerScheduler {
+
+    private static final Logger log = Logger.getLogger(VirtualThreadScheduler.class.getName());
+
+    private final int capacity;
+    private final Semaphore permits;
+    private final ExecutorService siteExecutor;
+    private final boolean virtual;
+    private final long awaitTerminationMinutes;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger peakRunning = new AtomicInteger();
+    private final AtomicInteger sites = new AtomicInteger();
+    private final AtomicLong permitWaitNanos = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    VirtualThreadScheduler(int capacity, long awaitTerminationMinutes) {
+        this.capacity = Math.max(1, capacity);
+        this.permits = new Semaphore(this.capacity, true);
+        this.awaitTerminationMinutes = awaitTerminationMinutes;
+        ExecutorService executor = VirtualThreads.isAvailable() ? VirtualThreads.newThreadPerTaskExecutor(VirtualThreads.factory("site-")) : null;
+        this.virtual = executor != null;
+        this.siteExecutor = virtual ? executor : Executors.newFixedThreadPool(this.capacity);
+        log.info(String.format("Site scheduler started with %s threads, grid capacity %d", virtual ? "virtual" : "platform (no virtual threads on Java "
+                + System.getProperty("java.version") + ")", this.capacity));
+    }
+
+    @Override
+    public void schedule(final Runnable childStatement) {
+        sites.incrementAndGet();
+        siteExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                long waitStart = System.nanoTime();
+                try {
+                    permits.acquire();
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                permitWaitNanos.addAndGet(System.nanoTime() - waitStart);
+                int now = running.incrementAndGet();
+                for (int peak = peakRunning.get(); now > peak && !peakRunning.compareAndSet(peak, now); peak = peakRunning.get()) {
+                }
+                try {
+                    childStatement.run();
+                } finally {
+                    running.decrementAndGet();
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void finished() {
+        siteExecutor.shutdown();
+        try {
+            siteExecutor.awaitTermination(awaitTerminationMinutes, TimeUnit.MINUTES);
+        } catch (InterruptedException interruptedException) {
+            throw new RuntimeException(interruptedException);
+        } finally {
+            log.info(getSummary());
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    String getSummary() {
+        return String.format("Site scheduler (%s threads): %d sites in %,d Milli-Second, at most %d at once of grid capacity %d, %,d Milli-Second waiting for capacity, peak %d platform threads",
+                virtual ? "virtual" : "platform", sites.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), peakRunning.get(), capacity,
+                TimeUnit.NANOSECONDS.toMillis(permitWaitNanos.get()), ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    }
+}
@@ -0,0 +1,80 @@
+package org.webdriver.crawler.executer;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Virtual threads (JDK 21 and later) looked up by reflection, the crawler still builds and runs on Java 8: with
+ * site.scheduler=virtual the sites, the crawl workers of a site and the session pre-warming run on virtual threads
+ * when the JDK has them, on platform threads otherwise.
+ */
+public class VirtualThreads {
+
+    private static final Logger log = Logger.getLogger(VirtualThreads.class.getName());
+
+    private static volatile Boolean available;
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true when site.scheduler is "virtual"
+     */
+    public static boolean isRequested() {
+        return "virtual".equalsIgnoreCase(System.getProperty("site.scheduler", "fixed"));
+    }
+
+    /**
+     * @return true when the JDK runs virtual threads
+     */
+    public static boolean isAvailable() {
+        if (available == null) {
+            available = factory("virtual-probe-") != null;
+        }
+        return available;
+    }
+
+    /**
+     * @return a factory of virtual threads named prefix + number, null when the JDK has no virtual threads
+     */
+    static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * @return an executor starting one virtual thread per task when virtual threads are requested and available,
+     * a fixed pool of platformThreads threads otherwise
+     */
+    public static ExecutorService newExecutor(String prefix, int platformThreads) {
+        if (isRequested() && isAvailable()) {
+            ExecutorService executor = newThreadPerTaskExecutor(factory(prefix));
+            if (executor != null) {
+                return executor;
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(1, platformThreads));
+    }
+
+    /**
+     * @return an executor starting one thread of the factory per task, null on a JDK without it (before 21)
+     */
+    static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            log.info("No thread per task executor on Java " + System.getProperty("java.version") + ": " + exception);
+            return null;
+        }
+    }
+}
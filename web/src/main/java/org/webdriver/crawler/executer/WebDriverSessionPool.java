@@ -0,0 +1,177 @@
+package org.webdriver.crawler.executer;
+
+import org.openqa.selenium.Capabilities;
+import org.webdriver.crawler.WebCrawlerDriver;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps initialized {@link WebCrawlerDriver} sessions so that a browser is started once and lent to many sites.
+ * Sessions are pre-warmed in the background, health checked when borrowed, reset when returned (extra windows,
+ * storage, cookies and about:blank) and replaced when found dead.
+ */
+public class WebDriverSessionPool {
+
+    private static final Logger log = Logger.getLogger(WebDriverSessionPool.class.getName());
+
+    private static final long BORROW_WAIT_SECONDS = Long.getLong("session.pool.borrow.wait.seconds", 60L);
+    private static final long WARMING_POLL_MILLIS = 100;
+
+    private final Capabilities capabilities;
+    private final int size;
+    private final BlockingDeque<WebCrawlerDriver> idle = new LinkedBlockingDeque<>();
+    private final ExecutorService warmer;
+    private final AtomicInteger warming = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong creationMillis = new AtomicLong();
+    private final AtomicLong replaced = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private final AtomicLong resetMillis = new AtomicLong();
+
+    public WebDriverSessionPool(Capabilities capabilities, int size) {
+        this.capabilities = capabilities;
+        this.size = size;
+        this.warmer = VirtualThreads.newExecutor("session-warmer-", size);
+    }
+
+    /**
+     * Starts the pool sessions in the background, borrowers wait for them instead of starting other browsers
+     */
+    public void prewarm() {
+        for (int index = idle.size() + warming.get(); index < size; index++) {
+            warmInBackground();
+        }
+    }
+
+    private void warmInBackground() {
+        warming.incrementAndGet();
+        warmer.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!closed) {
+                        idle.offer(create());
+                    }
+                } catch (Throwable throwable) {
+                    log.log(Level.INFO, "Failed to pre-warm a WebDriver session", throwable);
+                } finally {
+                    warming.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Lends an idle session, waiting (up to session.pool.borrow.wait.seconds) for the sessions being pre-warmed only
+     * while some still are: once every warmer is done, failed ones included, a new session is created at once
+     */
+    public WebCrawlerDriver borrow() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(BORROW_WAIT_SECONDS);
+        try {
+            while (true) {
+                boolean awaitWarmer = warming.get() > 0 && System.nanoTime() < deadline;
+                WebCrawlerDriver webCrawlerDriver = awaitWarmer ? idle.poll(WARMING_POLL_MILLIS, TimeUnit.MILLISECONDS) : idle.poll();
+                if (webCrawlerDriver == null) {
+                    if (awaitWarmer) {
+                        continue;
+                    }
+                    break;
+                }
+                if (webCrawlerDriver.isAlive()) {
+                    hits.incrementAndGet();
+                    return webCrawlerDriver;
+                }
+                log.info("Discarding a dead WebDriver session from the pool");
+                replaced.incrementAndGet();
+                quietly(webCrawlerDriver);
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        misses.incrementAndGet();
+        return create();
+    }
+
+    public void release(WebCrawlerDriver webCrawlerDriver) {
+        long startTime = System.currentTimeMillis();
+        boolean reset = !closed && webCrawlerDriver.reset();
+        if (reset) {
+            resets.incrementAndGet();
+            resetMillis.addAndGet(System.currentTimeMillis() - startTime);
+        }
+        if (reset && idle.size() < size) {
+            idle.offer(webCrawlerDriver);
+            return;
+        }
+        quietly(webCrawlerDriver);
+        if (!reset && !closed) {
+            replaced.incrementAndGet();
+            warmInBackground();
+        }
+    }
+
+    public void shutdown() {
+        closed = true;
+        warmer.shutdown();
+        try {
+            warmer.awaitTermination(BORROW_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        WebCrawlerDriver webCrawlerDriver;
+        while ((webCrawlerDriver = idle.poll()) != null) {
+            quietly(webCrawlerDriver);
+        }
+        log.info(getMetrics());
+    }
+
+    private WebCrawlerDriver create() {
+        long startTime = System.currentTimeMillis();
+        WebCrawlerDriver webCrawlerDriver = new WebCrawlerDriver(capabilities);
+        webCrawlerDriver.initialize();
+        created.incrementAndGet();
+        creationMillis.addAndGet(System.currentTimeMillis() - startTime);
+        return webCrawlerDriver;
+    }
+
+    private static void quietly(WebCrawlerDriver webCrawlerDriver) {
+        try {
+            webCrawlerDriver.quit();
+        } catch (Throwable throwable) {
+            log.log(Level.FINE, "Ignoring failure while quitting a pooled session", throwable);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getReplaced() {
+        return replaced.get();
+    }
+
+    public long getAverageResetMillis() {
+        return resets.get() == 0 ? 0 : resetMillis.get() / resets.get();
+    }
+
+    public String getMetrics() {
+        long sessions = created.get();
+        return String.format("Session pool (size %d): %d hits, %d misses, %d sessions created (average %,d Milli-Second), %d replaced, %d resets (average %,d Milli-Second)",
+                size, hits.get(), misses.get(), sessions, sessions == 0 ? 0 : creationMillis.get() / sessions, replaced.get(), resets.get(), getAverageResetMillis());
+    }
+}
@@ -0,0 +1,169 @@
+package org.webdriver.crawler.fetch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the streaming tokenizer learned about a page fetched over plain HTTP: its links and the signals used to
+ * decide whether the page needs a browser to be crawled.
+ */
+public class FetchedPage {
+
+    /**
+     * Attribute markers of the usual single page application shells
+     */
+    static final String[] SPA_MARKERS = {"ng-app", "ng-version", "data-reactroot", "data-server-rendered", "id=__next", "id=root", "id=app"};
+
+    private final String url;
+    private final List<Link> links = new ArrayList<>();
+    private int statusCode;
+    private String finalUrl;
+    private boolean html = true;
+    private boolean noscript;
+    private String spaMarker;
+    private int scripts;
+    private int scriptDrivenLinks;
+    private long textLength;
+    private long bytes;
+
+    FetchedPage(String url) {
+        this.url = url;
+        this.finalUrl = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the url after redirects
+     */
+    public String getFinalUrl() {
+        return finalUrl;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public List<Link> getLinks() {
+        return links;
+    }
+
+    public boolean isHtml() {
+        return html;
+    }
+
+    public boolean hasNoscript() {
+        return noscript;
+    }
+
+    public String getSpaMarker() {
+        return spaMarker;
+    }
+
+    /**
+     * @return number of external scripts (script tags with a src attribute)
+     */
+    public int getScripts() {
+        return scripts;
+    }
+
+    public long getTextLength() {
+        return textLength;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    void setFinalUrl(String finalUrl) {
+        this.finalUrl = finalUrl;
+    }
+
+    void setHtml(boolean html) {
+        this.html = html;
+    }
+
+    void setNoscript(boolean noscript) {
+        this.noscript = noscript;
+    }
+
+    void setSpaMarker(String spaMarker) {
+        this.spaMarker = spaMarker;
+    }
+
+    void addScript() {
+        scripts++;
+    }
+
+    void addScriptDrivenLink() {
+        scriptDrivenLinks++;
+    }
+
+    void addText(int length) {
+        textLength += length;
+    }
+
+    void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Heuristic deciding if the links read over HTTP can be trusted or the page has to be rendered by the browser
+     * @param minimumTextLength pages with external scripts and less visible text than this are considered script rendered
+     * @return the reason to use the browser, null when the HTTP result is enough
+     */
+    public String getBrowserReason(int minimumTextLength) {
+        if (!html) {
+            return null;
+        }
+        if (links.isEmpty()) {
+            return "no anchors found";
+        }
+        if (spaMarker != null && textLength < minimumTextLength) {
+            return "single page application shell (" + spaMarker + ")";
+        }
+        if (noscript && links.size() < 3) {
+            return "noscript marker";
+        }
+        if (scripts > 0 && textLength < minimumTextLength) {
+            return "script rendered content";
+        }
+        if (scriptDrivenLinks > links.size()) {
+            return "mostly script driven anchors";
+        }
+        return null;
+    }
+
+    /**
+     * Anchor found by the tokenizer, the href is already resolved against the page (or its base) url
+     */
+    public static class Link {
+
+        private final String text;
+        private final String href;
+
+        Link(String text, String href) {
+            this.text = text;
+            this.href = href;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getHref() {
+            return href;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s", text, href);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package org.webdriver.crawler.fetch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming HTML tokenizer which reads the page once, char by char, without building a DOM. It keeps only what
+ * the crawler needs: the anchors (resolved against the page or its &lt;base&gt;) and the signals used to decide
+ * whether the page needs a browser (scripts, noscript, single page application markers, amount of text).
+ */
+public class HtmlLinkTokenizer {
+
+    private static final int MAXIMUM_LINK_TEXT = 200;
+    private static final Map<String, String> ENTITIES = new HashMap<>();
+
+    static {
+        String[] entities = {"amp", "&", "lt", "<", "gt", ">", "quot", "\"", "apos", "'", "nbsp", " ",
+                "copy", "\u00A9", "reg", "\u00AE", "trade", "\u2122", "hellip", "\u2026", "mdash", "\u2014", "ndash", "\u2013",
+                "lsquo", "\u2018", "rsquo", "\u2019", "sbquo", "\u201A", "ldquo", "\u201C", "rdquo", "\u201D", "bdquo", "\u201E",
+                "laquo", "\u00AB", "raquo", "\u00BB", "lsaquo", "\u2039", "rsaquo", "\u203A", "bull", "\u2022", "middot", "\u00B7",
+                "euro", "\u20AC", "pound", "\u00A3", "yen", "\u00A5", "cent", "\u00A2", "sect", "\u00A7", "para", "\u00B6",
+                "deg", "\u00B0", "plusmn", "\u00B1", "times", "\u00D7", "divide", "\u00F7", "frac12", "\u00BD", "shy", "",
+                "iexcl", "\u00A1", "iquest", "\u00BF", "larr", "\u2190", "rarr", "\u2192", "uarr", "\u2191", "darr", "\u2193",
+                "aacute", "\u00E1", "agrave", "\u00E0", "acirc", "\u00E2", "auml", "\u00E4", "atilde", "\u00E3", "aring", "\u00E5",
+                "eacute", "\u00E9", "egrave", "\u00E8", "ecirc", "\u00EA", "euml", "\u00EB", "iacute", "\u00ED", "igrave", "\u00EC",
+                "icirc", "\u00EE", "iuml", "\u00EF", "oacute", "\u00F3", "ograve", "\u00F2", "ocirc", "\u00F4", "ouml", "\u00F6",
+                "otilde", "\u00F5", "oslash", "\u00F8", "uacute", "\u00FA", "ugrave", "\u00F9", "ucirc", "\u00FB", "uuml", "\u00FC",
+                "ccedil", "\u00E7", "ntilde", "\u00F1", "szlig", "\u00DF", "Aacute", "\u00C1", "Agrave", "\u00C0", "Auml", "\u00C4",
+                "Eacute", "\u00C9", "Egrave", "\u00C8", "Ouml", "\u00D6", "Uuml", "\u00DC", "Ccedil", "\u00C7", "Ntilde", "\u00D1"};
+        for (int index = 0; index < entities.length; index += 2) {
+            ENTITIES.put(entities[index], entities[index + 1]);
+        }
+    }
+
+    private final Reader reader;
+    private final FetchedPage page;
+    private URL base;
+
+    private String anchorHref;
+    private final StringBuilder anchorText = new StringBuilder();
+
+    HtmlLinkTokenizer(Reader reader, URL base, FetchedPage page) {
+        this.reader = reader.markSupported() ? reader : new BufferedReader(reader);
+        this.base = base;
+        this.page = page;
+    }
+
+    public static FetchedPage parse(Reader reader, String url) throws IOException {
+        FetchedPage page = new FetchedPage(url);
+        new HtmlLinkTokenizer(reader, new URL(url), page).parse();
+        return page;
+    }
+
+    void parse() throws IOException {
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '<') {
+                markup();
+            } else {
+                text((char) c);
+            }
+        }
+        endAnchor();
+    }
+
+    private void text(char c) {
+        if (!Character.isWhitespace(c)) {
+            page.addText(1);
+        }
+        if (anchorHref != null && anchorText.length() < MAXIMUM_LINK_TEXT) {
+            if (!Character.isWhitespace(c)) {
+                anchorText.append(c);
+            } else if (anchorText.length() > 0 && anchorText.charAt(anchorText.length() - 1) != ' ') {
+                anchorText.append(' ');
+            }
+        }
+    }
+
+    private void markup() throws IOException {
+        int c = reader.read();
+        if (c == '!') {
+            int first = reader.read();
+            int second = first == '-' ? reader.read() : -1;
+            skipUntil(first == '-' && second == '-' ? "-->" : ">");
+        } else if (c == '/') {
+            String name = readName(reader.read());
+            skipUntil(">");
+            if ("a".equals(name)) {
+                endAnchor();
+            }
+        } else if (c != -1 && Character.isLetter(c)) {
+            String name = readName(c);
+            Map<String, String> attributes = readAttributes(new StringBuilder());
+            startTag(name, attributes);
+        } else if (c != -1) {
+            text('<');
+            text((char) c);
+        }
+    }
+
+    private void startTag(String name, Map<String, String> attributes) throws IOException {
+        for (String marker : FetchedPage.SPA_MARKERS) {
+            String[] pair = marker.split("=", 2);
+            String value = attributes.get(pair[0]);
+            if (value != null && (pair.length == 1 || pair[1].equalsIgnoreCase(value))) {
+                page.setSpaMarker(marker);
+            }
+        }
+        switch (name) {
+            case "a":
+                endAnchor();
+                String href = attributes.get("href");
+                if (href == null) {
+                    return;
+                }
+                String trimmed = decode(href).trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.toLowerCase().startsWith("javascript:")) {
+                    page.addScriptDrivenLink();
+                    return;
+                }
+                if (attributes.containsKey("onclick")) {
+                    page.addScriptDrivenLink();
+                }
+                anchorHref = resolve(trimmed);
+                break;
+            case "base":
+                if (attributes.get("href") != null) {
+                    String resolved = resolve(decode(attributes.get("href")).trim());
+                    if (resolved != null) {
+                        base = new URL(resolved);
+                    }
+                }
+                break;
+            case "script":
+                if (attributes.containsKey("src")) {
+                    page.addScript();
+                }
+                skipUntil("</script");
+                skipUntil(">");
+                break;
+            case "style":
+                skipUntil("</style");
+                skipUntil(">");
+                break;
+            case "noscript":
+                page.setNoscript(true);
+                break;
+            default:
+        }
+    }
+
+    private void endAnchor() {
+        if (anchorHref != null) {
+            String text = decode(anchorText.toString().trim());
+            if (!text.isEmpty()) {
+                page.getLinks().add(new FetchedPage.Link(text, anchorHref));
+            }
+        }
+        anchorHref = null;
+        anchorText.setLength(0);
+    }
+
+    private String resolve(String href) {
+        try {
+            return new URL(base, href).toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String readName(int c) throws IOException {
+        StringBuilder name = new StringBuilder();
+        while (c != -1 && (Character.isLetterOrDigit(c) || c == '-' || c == ':')) {
+            name.append(Character.toLowerCase((char) c));
+            reader.mark(1);
+            c = reader.read();
+        }
+        if (c != -1) {
+            reader.reset();
+        }
+        return name.toString();
+    }
+
+    /**
+     * Reads the attributes up to the end of the tag, names are lower cased
+     */
+    private Map<String, String> readAttributes(StringBuilder buffer) throws IOException {
+        Map<String, String> attributes = new HashMap<>();
+        int c = reader.read();
+        while (c != -1 && c != '>') {
+            if (Character.isWhitespace(c) || c == '/') {
+                c = reader.read();
+                continue;
+            }
+            buffer.setLength(0);
+            while (c != -1 && c != '=' && c != '>' && !Character.isWhitespace(c)) {
+                buffer.append(Character.toLowerCase((char) c));
+                c = reader.read();
+            }
+            String name = buffer.toString();
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = reader.read();
+            }
+            if (c != '=') {
+                attributes.put(name, "");
+                continue;
+            }
+            c = reader.read();
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = reader.read();
+            }
+            buffer.setLength(0);
+            if (c == '"' || c == '\'') {
+                int quote = c;
+                while ((c = reader.read()) != -1 && c != quote) {
+                    buffer.append((char) c);
+                }
+                c = reader.read();
+            } else {
+                while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+                    buffer.append((char) c);
+                    c = reader.read();
+                }
+            }
+            attributes.put(name, buffer.toString());
+        }
+        return attributes;
+    }
+
+    /**
+     * Skips the stream up to and including the given (case insensitive) sequence
+     */
+    private void skipUntil(String sequence) throws IOException {
+        int matched = 0;
+        int c;
+        while (matched < sequence.length() && (c = reader.read()) != -1) {
+            char lower = Character.toLowerCase((char) c);
+            if (lower == sequence.charAt(matched)) {
+                matched++;
+            } else {
+                matched = lower == sequence.charAt(0) ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Decodes the character references of a text or attribute value in one pass (so "&amp;amp;lt;" gives
+     * "&amp;lt;"): decimal and hexadecimal references and the usual named ones. References without their ';'
+     * and unknown names are kept as they are, they are usually literal text (query strings such as "?a=1&amp;copy=2").
+     */
+    static String decode(String value) {
+        int ampersand = value.indexOf('&');
+        if (ampersand < 0) {
+            return value;
+        }
+        StringBuilder decoded = new StringBuilder(value.length());
+        decoded.append(value, 0, ampersand);
+        int index = ampersand;
+        while (index < value.length()) {
+            char c = value.charAt(index);
+            int end = c == '&' ? value.indexOf(';', index + 1) : -1;
+            String replacement = end > index + 1 && end - index <= 10 ? reference(value.substring(index + 1, end)) : null;
+            if (replacement != null) {
+                decoded.append(replacement);
+                index = end + 1;
+            } else {
+                decoded.append(c);
+                index++;
+            }
+        }
+        return decoded.toString();
+    }
+
+    private static String reference(String name) {
+        if (name.charAt(0) != '#') {
+            return ENTITIES.get(name);
+        }
+        try {
+            boolean hexadecimal = name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X');
+            int codePoint = Integer.parseInt(name.substring(hexadecimal ? 2 : 1), hexadecimal ? 16 : 10);
+            if (codePoint == 0 || !Character.isValidCodePoint(codePoint) || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+                return "\uFFFD";
+            }
+            return new String(Character.toChars(codePoint));
+        } catch (NumberFormatException numberFormatException) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.webdriver.crawler.fetch;
+
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.executer.HostLimiter;
+import org.webdriver.crawler.helpers.SiteProperties;
+import org.webdriver.crawler.metrics.Metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches pages with a plain HTTP client and streams the response straight into the {@link HtmlLinkTokenizer},
+ * the body is never held in memory. Non HTML responses are not parsed.
+ * <p>
+ * Per site properties (see {@link SiteProperties}):
+ * <ul>
+ * <li>hybrid.connect.timeout.millis / hybrid.read.timeout.millis - HTTP timeouts (default 10000 / 20000)</li>
+ * <li>hybrid.browser.pattern - regular expression of urls which always need the browser</li>
+ * <li>hybrid.minimum.text - pages with scripts and less visible text are rendered by the browser (default 200)</li>
+ * </ul>
+ */
+public class HttpPageFetcher {
+
+    private static final String USER_AGENT = System.getProperty("hybrid.user.agent", "Mozilla/5.0 (compatible; SeleniumWebCrawler)");
+
+    private final Site site;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int minimumText;
+    private final Pattern browserPattern;
+
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong escalated = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public HttpPageFetcher(Site site) {
+        this.site = site;
+        this.connectTimeout = SiteProperties.getInt(site, "hybrid.connect.timeout.millis", 10000);
+        this.readTimeout = SiteProperties.getInt(site, "hybrid.read.timeout.millis", 20000);
+        this.minimumText = SiteProperties.getInt(site, "hybrid.minimum.text", 200);
+        String pattern = SiteProperties.getString(site, "hybrid.browser.pattern", null);
+        this.browserPattern = pattern == null ? null : Pattern.compile(pattern);
+    }
+
+    /**
+     * Fetches the page within the per host limits shared with the browser sessions, see {@link HostLimiter}
+     */
+    public FetchedPage fetch(String url) throws IOException {
+        URL target = new URL(url);
+        HostLimiter limiter = HostLimiter.forHost(target.getHost());
+        if (limiter == null) {
+            return fetch(target);
+        }
+        Metrics.histogram(Metrics.LIMITER_WAIT, "site", site == null ? "" : site.getSiteName()).record(limiter.acquire());
+        try {
+            return fetch(target);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private FetchedPage fetch(URL target) throws IOException {
+        String url = target.toString();
+        HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setInstanceFollowRedirects(true);
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        connection.setRequestProperty("Accept", "text/html,application/xhtml+xml");
+        try {
+            int statusCode = connection.getResponseCode();
+            String contentType = connection.getContentType();
+            String finalUrl = connection.getURL().toString();
+            FetchedPage page;
+            if (statusCode >= 400 || contentType == null || !contentType.toLowerCase().contains("html")) {
+                page = new FetchedPage(url);
+                page.setHtml(false);
+            } else {
+                final AtomicLong read = new AtomicLong();
+                try (InputStream input = new FilterInputStream(connection.getInputStream()) {
+                    @Override
+                    public int read() throws IOException {
+                        int value = super.read();
+                        if (value != -1) {
+                            read.incrementAndGet();
+                        }
+                        return value;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int count = super.read(buffer, offset, length);
+                        if (count > 0) {
+                            read.addAndGet(count);
+                        }
+                        return count;
+                    }
+                }) {
+                    page = HtmlLinkTokenizer.parse(new InputStreamReader(input, charsetOf(contentType)), finalUrl);
+                }
+                page.setBytes(read.get());
+                bytes.addAndGet(read.get());
+            }
+            page.setStatusCode(statusCode);
+            page.setFinalUrl(finalUrl);
+            fetched.incrementAndGet();
+            return page;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return the reason the page has to be crawled with the browser, null when the HTTP result is enough
+     */
+    public String getBrowserReason(FetchedPage page) {
+        String reason = browserPattern != null && browserPattern.matcher(page.getUrl()).find() ?
+                "matches hybrid.browser.pattern" : page.getBrowserReason(minimumText);
+        if (reason != null) {
+            escalated.incrementAndGet();
+        }
+        return reason;
+    }
+
+    private static Charset charsetOf(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase().startsWith("charset=")) {
+                try {
+                    return Charset.forName(trimmed.substring("charset=".length()).replace("\"", ""));
+                } catch (Exception e) {
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    public String getSummary() {
+        return String.format("%,d pages fetched over HTTP (%,d bytes), %,d escalated to the browser", fetched.get(), bytes.get(), escalated.get());
+    }
+}
@@ -0,0 +1,72 @@
+package org.webdriver.crawler.flow;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the steps of a flow file written by {@link StoryWriter}. Files without the version line, or with a newer
+ * version than this reader knows, are rejected.
+ */
+public class FlowReader {
+
+    private static final String VERSION_PREFIX = "# flow ";
+
+    private FlowReader() {
+    }
+
+    public static List<FlowStep> read(File file) throws IOException {
+        List<FlowStep> steps = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            int version = parseVersion(line);
+            if (version < 1 || version > StoryWriter.VERSION) {
+                throw new IOException(String.format("%s is not a flow file of version 1-%d (first line: %s)", file, StoryWriter.VERSION, line));
+            }
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", 7);
+                if (columns.length < 7) {
+                    throw new IOException(String.format("%s:%d: expected 7 columns, found %d", file, lineNumber, columns.length));
+                }
+                try {
+                    steps.add(new FlowStep(Integer.parseInt(columns[0]), columns[1], columns[2], Long.parseLong(columns[3]), columns[4], columns[5], columns[6]));
+                } catch (NumberFormatException numberFormatException) {
+                    throw new IOException(String.format("%s:%d: %s", file, lineNumber, numberFormatException.getMessage()));
+                }
+            }
+        }
+        return steps;
+    }
+
+    private static int parseVersion(String line) {
+        if (line == null || !line.startsWith(VERSION_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(line.substring(VERSION_PREFIX.length()).trim());
+        } catch (NumberFormatException numberFormatException) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return url of the first page the flow opens, null when it has none
+     */
+    public static String getStartUrl(List<FlowStep> steps) {
+        for (FlowStep step : steps) {
+            if (step.isSuccessful() && "GetURL".equals(step.getType()) && !step.getTarget().isEmpty()) {
+                return step.getTarget();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,129 @@
+package org.webdriver.crawler.flow;
+
+import org.openqa.selenium.By;
+import org.webdriver.crawler.CrawlerAction;
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.WebCrawlerDriver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays the successful browser steps of a recorded flow (GetURL, FollowLink, RenderInBrowser, ClickOn, GoBack,
+ * CloseTab) as fast as the page allows and times each of them. HTTP fetches and failed steps are skipped.
+ * <p>
+ * Instead of the two minute click wait of the crawl, a click first polls for its element for at most the element
+ * wait and fails the step when the element does not show up. Pages are settled after every click and back
+ * navigation, outside the timed step, so the timings compare with the recorded ones.
+ */
+public class FlowReplayer {
+
+    private static final Logger log = Logger.getLogger(FlowReplayer.class.getName());
+    private static final long POLL_MILLIS = 50;
+
+    private final WebCrawlerDriver webCrawlerDriver;
+    private final long elementWaitMillis;
+
+    public FlowReplayer(WebCrawlerDriver webCrawlerDriver, long elementWaitMillis) {
+        this.webCrawlerDriver = webCrawlerDriver;
+        this.elementWaitMillis = elementWaitMillis;
+    }
+
+    public List<ReplayedStep> replay(List<FlowStep> steps) {
+        List<ReplayedStep> replayed = new ArrayList<>();
+        for (FlowStep step : steps) {
+            CrawlerAction action = step.isSuccessful() ? step.toAction() : null;
+            if (action == null) {
+                continue;
+            }
+            if (action instanceof CrawlerAction.ClickOn && !awaitElement(FlowStep.toLocator(step.getTarget()))) {
+                replayed.add(new ReplayedStep(step, 0, Site.FAILED, "element not found within " + elementWaitMillis + " Milli-Second"));
+                continue;
+            }
+            long startNanos = System.nanoTime();
+            String outcome = Site.SUCCESSFUL;
+            String error = "";
+            try {
+                action.doIt(webCrawlerDriver);
+            } catch (RuntimeException exception) {
+                outcome = Site.FAILED;
+                error = String.valueOf(exception.getMessage()).split("\n")[0];
+                log.log(Level.INFO, "Failed to replay step " + step, exception);
+            }
+            long replayedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            replayed.add(new ReplayedStep(step, replayedMillis, outcome, error));
+            if (action instanceof CrawlerAction.ClickOn || action instanceof CrawlerAction.GoBack) {
+                webCrawlerDriver.waitForPageToSettle();
+            }
+        }
+        return replayed;
+    }
+
+    private boolean awaitElement(By by) {
+        long deadline = System.currentTimeMillis() + elementWaitMillis;
+        while (!webCrawlerDriver.isAvailable(by)) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Timing of one replayed step next to its recording
+     */
+    public static class ReplayedStep {
+
+        private final FlowStep recorded;
+        private final long replayedMillis;
+        private final String outcome;
+        private final String error;
+
+        ReplayedStep(FlowStep recorded, long replayedMillis, String outcome, String error) {
+            this.recorded = recorded;
+            this.replayedMillis = replayedMillis;
+            this.outcome = outcome;
+            this.error = error;
+        }
+
+        public FlowStep getRecorded() {
+            return recorded;
+        }
+
+        public long getReplayedMillis() {
+            return replayedMillis;
+        }
+
+        public long getDifferenceMillis() {
+            return replayedMillis - recorded.getDurationMillis();
+        }
+
+        public String getOutcome() {
+            return outcome;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSuccessful() {
+            return Site.SUCCESSFUL.equals(outcome);
+        }
+
+        /**
+         * @return true when the step replayed slower than factor times its recording and by more than minMillis
+         */
+        public boolean isRegression(double factor, long minMillis) {
+            return isSuccessful() && replayedMillis > recorded.getDurationMillis() * factor && getDifferenceMillis() > minMillis;
+        }
+    }
+}
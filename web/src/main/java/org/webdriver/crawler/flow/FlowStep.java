@@ -0,0 +1,119 @@
+package org.webdriver.crawler.flow;
+
+import org.openqa.selenium.By;
+import org.webdriver.crawler.CrawlerAction;
+import org.webdriver.crawler.Site;
+
+/**
+ * One recorded step of a flow file, see {@link StoryWriter} for the format
+ */
+public class FlowStep {
+
+    private final int step;
+    private final String type;
+    private final String timestamp;
+    private final long durationMillis;
+    private final String outcome;
+    private final String target;
+    private final String description;
+
+    public FlowStep(int step, String type, String timestamp, long durationMillis, String outcome, String target, String description) {
+        this.step = step;
+        this.type = type;
+        this.timestamp = timestamp;
+        this.durationMillis = durationMillis;
+        this.outcome = outcome;
+        this.target = target;
+        this.description = description;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isSuccessful() {
+        return Site.SUCCESSFUL.equals(outcome);
+    }
+
+    /**
+     * @return the browser action which replays this step, null for the steps which are not replayed (HTTP fetches,
+     * steps without a target)
+     */
+    public CrawlerAction toAction() {
+        switch (type) {
+            case "GetURL":
+            case "FollowLink":
+            case "RenderInBrowser":
+                return target.isEmpty() ? null : CrawlerAction.getUrl(target);
+            case "ClickOn":
+                By by = toLocator(target);
+                return by == null ? null : CrawlerAction.clickOn(by);
+            case "GoBack":
+                return CrawlerAction.goBack();
+            case "CloseTab":
+                return CrawlerAction.closeTabs();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Parses back the {@link By#toString()} of a recorded locator ("By.xpath: //a[1]")
+     */
+    public static By toLocator(String target) {
+        int separator = target.indexOf(": ");
+        if (!target.startsWith("By.") || separator < 0) {
+            return null;
+        }
+        String value = target.substring(separator + 2);
+        switch (target.substring(3, separator)) {
+            case "xpath":
+                return By.xpath(value);
+            case "cssSelector":
+                return By.cssSelector(value);
+            case "id":
+                return By.id(value);
+            case "name":
+                return By.name(value);
+            case "linkText":
+                return By.linkText(value);
+            case "partialLinkText":
+                return By.partialLinkText(value);
+            case "tagName":
+                return By.tagName(value);
+            case "className":
+                return By.className(value);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return step + " " + type + " " + target;
+    }
+}
@@ -0,0 +1,221 @@
+package org.webdriver.crawler.flow;
+
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.helpers.SiteProperties;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends the steps of a site story to its flow file as they happen, so a crash loses at most the last flush
+ * interval instead of the whole flow. The file starts with the format version line ("# flow 1") and holds one tab
+ * separated line per step, which {@link FlowReader} reads back:
+ * <pre>
+ * step  type  timestamp  duration.millis  outcome  target  description
+ * </pre>
+ * Lines are buffered and written through a {@link FileChannel} when the buffer is full and every flush interval.
+ * A story left by an earlier run is rotated to "&lt;file&gt;.1", "&lt;file&gt;.2"... when the site starts; a run is never split
+ * across files, so each flow file replays from the first step of its run.
+ * <p>
+ * Per site properties (see {@link SiteProperties}):
+ * <ul>
+ * <li>story.buffer.bytes - size of the write buffer (default 65536)</li>
+ * <li>story.flush.millis - maximum time a step stays in the buffer (default 1000)</li>
+ * <li>story.fsync - "flush" forces every flush to disk (default), "always" every step, "close" only when closed</li>
+ * <li>story.rotate.keep - rotated files kept (default 5)</li>
+ * </ul>
+ */
+public class StoryWriter implements Closeable {
+
+    private static final Logger log = Logger.getLogger(StoryWriter.class.getName());
+
+    public static final int VERSION = 1;
+    public static final String VERSION_LINE = "# flow " + VERSION;
+    public static final String HEADER = "# step\ttype\ttimestamp\tduration.millis\toutcome\ttarget\tdescription";
+
+    public enum Fsync { ALWAYS, FLUSH, CLOSE }
+
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "story-flusher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final Fsync fsync;
+    private final int rotateKeep;
+    private final ScheduledFuture<?> periodicFlush;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private FileChannel channel;
+    private int steps;
+    private boolean closed;
+
+    public StoryWriter(File file, int bufferBytes, long flushMillis, Fsync fsync, int rotateKeep) throws IOException {
+        this.file = file;
+        this.buffer = ByteBuffer.allocate(Math.max(1024, bufferBytes));
+        this.fsync = fsync;
+        this.rotateKeep = Math.max(1, rotateKeep);
+        file.getParentFile().mkdirs();
+        if (file.length() > 0) {
+            rotate();
+        }
+        open();
+        this.periodicFlush = flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (IOException ioException) {
+                    log.log(Level.INFO, "Failed to flush the story " + StoryWriter.this.file, ioException);
+                }
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static StoryWriter forSite(Site site, String outputFolder) throws IOException {
+        Fsync fsync;
+        try {
+            fsync = Fsync.valueOf(SiteProperties.getString(site, "story.fsync", "flush").toUpperCase());
+        } catch (IllegalArgumentException illegalArgumentException) {
+            fsync = Fsync.FLUSH;
+        }
+        return new StoryWriter(new File(outputFolder, site.getSiteName() + ".txt"),
+                SiteProperties.getInt(site, "story.buffer.bytes", 65536),
+                Math.max(10L, SiteProperties.getLong(site, "story.flush.millis", 1000L)),
+                fsync,
+                SiteProperties.getInt(site, "story.rotate.keep", 5));
+    }
+
+    /**
+     * Appends one step, numbered in the order the steps are appended
+     */
+    public void append(String type, long startTime, long durationMillis, String outcome, String target, String description) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            String line = String.format("%d\t%s\t%s\t%d\t%s\t%s\t%s%n", ++steps, type, Instant.ofEpochMilli(startTime), durationMillis, outcome,
+                    clean(target), clean(description));
+            write(line.getBytes(StandardCharsets.UTF_8));
+            if (fsync == Fsync.ALWAYS) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            drain();
+        }
+        if (bytes.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Writes the buffered steps to the flow file (and to disk unless the fsync policy is "close")
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            if (closed || (buffer.position() == 0 && fsync != Fsync.ALWAYS)) {
+                return;
+            }
+            drain();
+            if (fsync != Fsync.CLOSE) {
+                channel.force(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeFully(ByteBuffer.wrap((VERSION_LINE + System.lineSeparator() + HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void rotate() throws IOException {
+        for (int index = rotateKeep; index > 0; index--) {
+            File source = index == 1 ? file : new File(file.getPath() + "." + (index - 1));
+            if (source.exists()) {
+                Files.move(source.toPath(), new File(file.getPath() + "." + index).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    public int getSteps() {
+        lock.lock();
+        try {
+            return steps;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            periodicFlush.cancel(false);
+            try {
+                drain();
+                channel.force(false);
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
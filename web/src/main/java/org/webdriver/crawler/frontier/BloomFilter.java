@@ -0,0 +1,61 @@
+package org.webdriver.crawler.frontier;
+
+/**
+ * Fixed size Bloom filter over 64-bit hashes, used in front of the on disk indexes to answer most "seen?"
+ * questions without touching the disk. The k bit positions are derived from the two halves of the hash.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final long numberOfBits;
+    private final int numberOfHashes;
+
+    /**
+     * @param expectedInsertions number of entries the filter is sized for
+     * @param falsePositiveRate wanted false positive rate once the expected insertions were added
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.numberOfBits = Math.max(64, (size + 63) / 64 * 64);
+        this.numberOfHashes = Math.max(1, (int) Math.round((double) numberOfBits / expectedInsertions * Math.log(2)));
+        this.bits = new long[(int) (numberOfBits / 64)];
+    }
+
+    public void put(long hash) {
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        for (int i = 1; i <= numberOfHashes; i++) {
+            long bit = ((low + (long) i * high) & Long.MAX_VALUE) % numberOfBits;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(long hash) {
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        for (int i = 1; i <= numberOfHashes; i++) {
+            long bit = ((low + (long) i * high) & Long.MAX_VALUE) % numberOfBits;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a of the chars followed by the MurmurHash3 finalizer
+     */
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
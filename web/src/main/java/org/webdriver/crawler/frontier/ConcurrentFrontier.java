@@ -0,0 +1,118 @@
+package org.webdriver.crawler.frontier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe view of a {@link FrontierStrategy} shared by the workers crawling the same site. A worker asking
+ * for the next url while the frontier is empty waits as long as another worker is still crawling a page (and
+ * may add new urls), the crawl is over once the frontier is empty, no page is in flight and the refill (the
+ * persistent frontier, the deferred near-duplicates) has no url left either.
+ */
+public class ConcurrentFrontier {
+
+    /**
+     * Source of more urls once the frontier is drained, asked under the lock of the frontier so that no worker
+     * gives up while another one is still refilling
+     */
+    public interface Refill {
+
+        /**
+         * @return the next url to crawl, null when there is none
+         */
+        FrontierEntry poll();
+    }
+
+    private final FrontierStrategy strategy;
+    private final Refill refill;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private int inFlight;
+    private boolean closed;
+
+    public ConcurrentFrontier(FrontierStrategy strategy) {
+        this(strategy, null);
+    }
+
+    public ConcurrentFrontier(FrontierStrategy strategy, Refill refill) {
+        this.strategy = strategy;
+        this.refill = refill;
+    }
+
+    public void add(FrontierEntry entry) {
+        lock.lock();
+        try {
+            strategy.add(entry);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next url, every entry returned must be completed with {@link #done()}
+     * @return the next url, null when the crawl is over
+     */
+    public FrontierEntry next() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed) {
+                FrontierEntry entry = strategy.next();
+                if (entry != null) {
+                    inFlight++;
+                    return entry;
+                }
+                if (inFlight == 0) {
+                    FrontierEntry more = refill == null ? null : refill.poll();
+                    if (more == null) {
+                        return null;
+                    }
+                    strategy.add(more);
+                    changed.signalAll();
+                    continue;
+                }
+                changed.await(1, TimeUnit.SECONDS);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void done() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the crawl, workers waiting for a url get null
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return strategy.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return strategy.getName();
+    }
+}
@@ -0,0 +1,44 @@
+package org.webdriver.crawler.frontier;
+
+/**
+ * A url waiting in the frontier with what the strategies know about it
+ */
+public class FrontierEntry {
+
+    private final String url;
+    private final String text;
+    private final int depth;
+    private final int parentYield;
+
+    /**
+     * @param depth number of links followed from the site root to reach the url
+     * @param parentYield number of new links the page the url was found on yielded
+     */
+    public FrontierEntry(String url, String text, int depth, int parentYield) {
+        this.url = url;
+        this.text = text;
+        this.depth = depth;
+        this.parentYield = parentYield;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getParentYield() {
+        return parentYield;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (depth %d)", url, depth);
+    }
+}
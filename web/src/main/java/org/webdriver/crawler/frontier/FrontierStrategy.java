@@ -0,0 +1,278 @@
+package org.webdriver.crawler.frontier;
+
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.helpers.SiteProperties;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Decides which url of the frontier is crawled next. The caller only adds urls which were not discovered before.
+ * <p>
+ * Selected per site (see {@link SiteProperties}) with:
+ * <ul>
+ * <li>frontier.strategy - "walk" (default, random walk over the links of the current page), "random", "bfs",
+ * "depth" or "priority"</li>
+ * <li>frontier.seed - seed of the random choices, so a run can be repeated</li>
+ * <li>frontier.max.depth - deepest level crawled by the "depth" strategy (default 5)</li>
+ * <li>frontier.capacity - maximum number of queued urls, newer ones are dropped (default 100000)</li>
+ * <li>frontier.weight.novelty / frontier.weight.depth / frontier.weight.yield - weights of the "priority" score
+ * (default 3 / 2 / 1)</li>
+ * </ul>
+ */
+public abstract class FrontierStrategy {
+
+    private static final Logger log = Logger.getLogger(FrontierStrategy.class.getName());
+
+    private final String name;
+    private final int capacity;
+    private long dropped;
+
+    protected FrontierStrategy(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+    }
+
+    protected abstract void enqueue(FrontierEntry entry);
+
+    public abstract FrontierEntry next();
+
+    public abstract int size();
+
+    public void add(FrontierEntry entry) {
+        if (size() >= capacity) {
+            if (dropped++ == 0) {
+                log.info(name + ": frontier capacity of " + capacity + " reached, new urls are dropped");
+            }
+            return;
+        }
+        enqueue(entry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the strategy of the site, null for the random walk over the links of the current page
+     */
+    public static FrontierStrategy forSite(Site site) {
+        String strategy = SiteProperties.getString(site, "frontier.strategy", "walk").toLowerCase();
+        int capacity = SiteProperties.getInt(site, "frontier.capacity", 100000);
+        switch (strategy) {
+            case "random":
+                return new RandomOrder(capacity, newRandom(site));
+            case "bfs":
+                return new BreadthFirst(capacity);
+            case "depth":
+                return new DepthBounded(capacity, SiteProperties.getInt(site, "frontier.max.depth", 5));
+            case "priority":
+                return new Priority(capacity,
+                        SiteProperties.getInt(site, "frontier.weight.novelty", 3),
+                        SiteProperties.getInt(site, "frontier.weight.depth", 2),
+                        SiteProperties.getInt(site, "frontier.weight.yield", 1));
+            case "walk":
+                return null;
+            default:
+                log.info("Unknown frontier.strategy '" + strategy + "', using the random walk");
+                return null;
+        }
+    }
+
+    /**
+     * @return the url with the numbers of its path masked and only the keys of its query, the urls built from the
+     * same template share their shape
+     */
+    public static String shapeOf(String url) {
+        int query = url.indexOf('?');
+        StringBuilder shape = new StringBuilder(query < 0 ? url.replaceAll("[0-9]+", "#") : url.substring(0, query).replaceAll("[0-9]+", "#"));
+        if (query >= 0) {
+            for (String parameter : url.substring(query + 1).split("&")) {
+                shape.append(shape.indexOf("?") < 0 ? '?' : '&').append(parameter.split("=", 2)[0]);
+            }
+        }
+        return shape.toString();
+    }
+
+    /**
+     * @return a random generator seeded by frontier.seed when given, a seed which is not a number is hashed so it
+     * still gives the same order on every run
+     */
+    public static Random newRandom(Site site) {
+        String seed = SiteProperties.getString(site, "frontier.seed", null);
+        if (seed == null) {
+            return new Random();
+        }
+        try {
+            return new Random(Long.parseLong(seed.trim()));
+        } catch (NumberFormatException numberFormatException) {
+            return new Random(seed.hashCode());
+        }
+    }
+
+    /**
+     * Picks any queued url with the same probability
+     */
+    public static class RandomOrder extends FrontierStrategy {
+
+        private final List<FrontierEntry> entries = new ArrayList<>();
+        private final Random random;
+
+        public RandomOrder(int capacity, Random random) {
+            super("random", capacity);
+            this.random = random;
+        }
+
+        @Override
+        protected void enqueue(FrontierEntry entry) {
+            entries.add(entry);
+        }
+
+        @Override
+        public FrontierEntry next() {
+            if (entries.isEmpty()) {
+                return null;
+            }
+            int index = random.nextInt(entries.size());
+            FrontierEntry last = entries.remove(entries.size() - 1);
+            return index == entries.size() ? last : entries.set(index, last);
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Level by level, in discovery order
+     */
+    public static class BreadthFirst extends FrontierStrategy {
+
+        private final Deque<FrontierEntry> entries = new ArrayDeque<>();
+
+        public BreadthFirst(int capacity) {
+            super("bfs", capacity);
+        }
+
+        @Override
+        protected void enqueue(FrontierEntry entry) {
+            entries.addLast(entry);
+        }
+
+        @Override
+        public FrontierEntry next() {
+            return entries.pollFirst();
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Depth first, never deeper than the maximum depth
+     */
+    public static class DepthBounded extends FrontierStrategy {
+
+        private final Deque<FrontierEntry> entries = new ArrayDeque<>();
+        private final int maximumDepth;
+
+        public DepthBounded(int capacity, int maximumDepth) {
+            super("depth(" + maximumDepth + ")", capacity);
+            this.maximumDepth = maximumDepth;
+        }
+
+        @Override
+        protected void enqueue(FrontierEntry entry) {
+            if (entry.getDepth() <= maximumDepth) {
+                entries.addFirst(entry);
+            }
+        }
+
+        @Override
+        public FrontierEntry next() {
+            return entries.pollFirst();
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Highest score first. The score favours urls whose shape (path with the numbers masked, no query values) was
+     * rarely seen, shallow urls and urls found on pages which yielded many new links.
+     */
+    public static class Priority extends FrontierStrategy {
+
+        private final PriorityQueue<Scored> entries = new PriorityQueue<>();
+        private final Map<String, Integer> shapes = new HashMap<>();
+        private final int noveltyWeight;
+        private final int depthWeight;
+        private final int yieldWeight;
+        private long sequence;
+
+        public Priority(int capacity, int noveltyWeight, int depthWeight, int yieldWeight) {
+            super("priority", capacity);
+            this.noveltyWeight = noveltyWeight;
+            this.depthWeight = depthWeight;
+            this.yieldWeight = yieldWeight;
+        }
+
+        @Override
+        protected void enqueue(FrontierEntry entry) {
+            String shape = shapeOf(entry.getUrl());
+            Integer seen = shapes.get(shape);
+            seen = seen == null ? 0 : seen;
+            shapes.put(shape, seen + 1);
+            double novelty = 1.0 / (1 + seen);
+            double shallow = 1.0 / (1 + entry.getDepth());
+            double yield = 1 - 1.0 / (1 + Math.log1p(entry.getParentYield()));
+            entries.add(new Scored(entry, noveltyWeight * novelty + depthWeight * shallow + yieldWeight * yield, sequence++));
+        }
+
+        @Override
+        public FrontierEntry next() {
+            Scored scored = entries.poll();
+            return scored == null ? null : scored.entry;
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        private static class Scored implements Comparable<Scored> {
+
+            private final FrontierEntry entry;
+            private final double score;
+            private final long sequence;
+
+            private Scored(FrontierEntry entry, double score, long sequence) {
+                this.entry = entry;
+                this.score = score;
+                this.sequence = sequence;
+            }
+
+            @Override
+            public int compareTo(Scored other) {
+                int compare = Double.compare(other.score, score);
+                return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package org.webdriver.crawler.frontier;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Disk backed crawl frontier and visited-set of a single site, keyed by normalized url, which survives crashes
+ * and JVM restarts.
+ * <p>
+ * Layout of the site directory:
+ * <ul>
+ * <li>journal.log - append-only log, "D &lt;url&gt;" when a url is discovered (and queued) and "V &lt;url&gt;" when visited.
+ * The "D" lines in journal order are the queue of the frontier</li>
+ * <li>discovered.idx / visited.idx - sorted 64-bit url hashes of all the journal entries up to the compacted offset</li>
+ * <li>checkpoint.properties - queue read offset and compacted offset in the journal</li>
+ * </ul>
+ * Only the Bloom filters and the hashes added since the last compaction are kept in memory.
+ */
+public class PersistentFrontier implements Closeable {
+
+    private static final Logger log = Logger.getLogger(PersistentFrontier.class.getName());
+
+    private static final long EXPECTED_URLS = Long.getLong("frontier.expected.urls", 1000000L);
+    private static final int COMPACT_THRESHOLD = Integer.getInteger("frontier.compact.threshold", 50000);
+    private static final int CHECKPOINT_EVERY = Integer.getInteger("frontier.checkpoint.every", 100);
+
+    /**
+     * Longer urls are not queued, so that a journal line always fits in the read buffer
+     */
+    private static final int MAX_URL_LENGTH = 4096;
+
+    private static final String QUEUE_OFFSET = "queue.offset";
+    private static final String COMPACTED_OFFSET = "compacted.offset";
+
+    private final File directory;
+    private final File checkpointFile;
+    private final SeenIndex discovered;
+    private final SeenIndex visited;
+    private final FileChannel journal;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteBuffer lineBuffer = ByteBuffer.allocate(MAX_URL_LENGTH * 4 + 3);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long journalLength;
+    private long queueOffset;
+    private long compactedOffset;
+    private int operationsSinceCheckpoint;
+
+    public PersistentFrontier(File directory) throws IOException {
+        this.directory = directory;
+        this.checkpointFile = new File(directory, "checkpoint.properties");
+        directory.mkdirs();
+        Properties checkpoint = new Properties();
+        if (checkpointFile.isFile()) {
+            try (FileInputStream input = new FileInputStream(checkpointFile)) {
+                checkpoint.load(input);
+            }
+        }
+        this.queueOffset = Long.parseLong(checkpoint.getProperty(QUEUE_OFFSET, "0"));
+        this.compactedOffset = Long.parseLong(checkpoint.getProperty(COMPACTED_OFFSET, "0"));
+        this.discovered = new SeenIndex(new File(directory, "discovered.idx"), EXPECTED_URLS, 0.01);
+        this.visited = new SeenIndex(new File(directory, "visited.idx"), EXPECTED_URLS, 0.01);
+        this.journal = FileChannel.open(new File(directory, "journal.log").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.journalLength = truncatePartialLine();
+        replay();
+        if (queueOffset > 0 || journalLength > 0) {
+            log.info("Resuming frontier from checkpoint: " + getSummary());
+        }
+    }
+
+    /**
+     * A crash can leave a half written last line, it is dropped
+     */
+    private long truncatePartialLine() throws IOException {
+        long length = journal.size();
+        ByteBuffer single = ByteBuffer.allocate(1);
+        while (length > 0) {
+            single.clear();
+            journal.read(single, length - 1);
+            if (single.get(0) == '\n') {
+                break;
+            }
+            length--;
+        }
+        journal.truncate(length);
+        return length;
+    }
+
+    /**
+     * Adds the journal entries which are not in the compacted indexes yet
+     */
+    private void replay() throws IOException {
+        try (FileInputStream input = new FileInputStream(new File(directory, "journal.log"))) {
+            input.getChannel().position(compactedOffset);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 2) {
+                    long hash = BloomFilter.hash(line.substring(2));
+                    discovered.add(hash);
+                    if (line.charAt(0) == 'V') {
+                        visited.add(hash);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the url if it was never discovered before
+     * @return true when the url is new
+     */
+    public boolean offer(String url) throws IOException {
+        url = toLine(url);
+        lock.lock();
+        try {
+            if (url.length() > MAX_URL_LENGTH || !discovered.add(BloomFilter.hash(url))) {
+                return false;
+            }
+            append('D', url);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isVisited(String url) throws IOException {
+        url = toLine(url);
+        lock.lock();
+        try {
+            return visited.contains(BloomFilter.hash(url));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true when the url was not visited before
+     */
+    public boolean markVisited(String url) throws IOException {
+        url = toLine(url);
+        lock.lock();
+        try {
+            long hash = BloomFilter.hash(url);
+            discovered.add(hash);
+            if (url.length() > MAX_URL_LENGTH || !visited.add(hash)) {
+                return false;
+            }
+            append('V', url);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the next queued url that was not visited yet, null when the queue is exhausted
+     */
+    public String poll() throws IOException {
+        lock.lock();
+        try {
+            flush();
+            while (queueOffset < journalLength) {
+                String line = readLine(queueOffset);
+                if (line == null) {
+                    return null;
+                }
+                queueOffset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (line.length() > 2 && line.charAt(0) == 'D' && !visited.contains(BloomFilter.hash(line.substring(2)))) {
+                    return line.substring(2);
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean hasPending() {
+        lock.lock();
+        try {
+            return queueOffset < journalLength + pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDiscoveredCount() {
+        lock.lock();
+        try {
+            return discovered.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getVisitedCount() {
+        lock.lock();
+        try {
+            return visited.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String readLine(long offset) throws IOException {
+        lineBuffer.clear();
+        journal.read(lineBuffer, offset);
+        for (int index = 0; index < lineBuffer.position(); index++) {
+            if (lineBuffer.get(index) == '\n') {
+                return new String(lineBuffer.array(), 0, index, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Line breaks are replaced by spaces before the url is hashed or journaled: the journal is read back by lines
+     * ('\r' ends a line for the replay as well), so the url must hash the same before and after a restart
+     */
+    private static String toLine(String url) {
+        return url.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private void append(char type, String url) throws IOException {
+        byte[] bytes = (type + " " + url + "\n").getBytes(StandardCharsets.UTF_8);
+        pending.write(bytes, 0, bytes.length);
+        if (++operationsSinceCheckpoint >= CHECKPOINT_EVERY) {
+            checkpoint();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        while (buffer.hasRemaining()) {
+            journalLength += journal.write(buffer, journalLength);
+        }
+        pending.reset();
+    }
+
+    /**
+     * Flushes the journal to disk, compacts the indexes when enough hashes are held in memory and records the
+     * queue position so that a later run resumes from here
+     */
+    public void checkpoint() throws IOException {
+        lock.lock();
+        try {
+            flush();
+            journal.force(false);
+            if (discovered.getRecentCount() + visited.getRecentCount() >= COMPACT_THRESHOLD) {
+                discovered.compact();
+                visited.compact();
+                compactedOffset = journalLength;
+            }
+            Properties checkpoint = new Properties();
+            checkpoint.setProperty(QUEUE_OFFSET, String.valueOf(queueOffset));
+            checkpoint.setProperty(COMPACTED_OFFSET, String.valueOf(compactedOffset));
+            File temporary = new File(directory, checkpointFile.getName() + ".tmp");
+            try (FileOutputStream output = new FileOutputStream(temporary)) {
+                checkpoint.store(output, PersistentFrontier.class.getName());
+                output.getFD().sync();
+            }
+            Files.move(temporary.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            operationsSinceCheckpoint = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            try {
+                checkpoint();
+            } finally {
+                journal.close();
+                discovered.close();
+                visited.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getSummary() {
+        lock.lock();
+        try {
+            return String.format("%s: %,d urls discovered, %,d visited, queue at %,d of %,d journal bytes",
+                    directory.getName(), getDiscoveredCount(), getVisitedCount(), queueOffset, journalLength);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
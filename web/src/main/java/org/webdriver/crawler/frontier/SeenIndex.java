@@ -0,0 +1,160 @@
+package org.webdriver.crawler.frontier;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of 64-bit url hashes with bounded memory: a {@link BloomFilter} answers most lookups, the hashes added
+ * since the last compaction are kept in memory and all the older ones live in a sorted file of longs that is
+ * binary searched. {@link #compact()} merges the recent hashes into the file.
+ */
+class SeenIndex implements Closeable {
+
+    private final File indexFile;
+    private final BloomFilter bloomFilter;
+    private final Set<Long> recent = new HashSet<>();
+    private FileChannel channel;
+    private long indexedCount;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(8);
+
+    SeenIndex(File indexFile, long expectedInsertions, double falsePositiveRate) throws IOException {
+        this.indexFile = indexFile;
+        this.bloomFilter = new BloomFilter(expectedInsertions, falsePositiveRate);
+        if (indexFile.isFile()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                while (true) {
+                    bloomFilter.put(input.readLong());
+                }
+            } catch (EOFException endOfIndex) {
+            }
+        }
+        openIndex();
+    }
+
+    private void openIndex() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        if (!indexFile.isFile()) {
+            channel = null;
+            indexedCount = 0;
+            return;
+        }
+        channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ);
+        indexedCount = channel.size() / 8;
+    }
+
+    boolean contains(long hash) throws IOException {
+        return bloomFilter.mightContain(hash) && (recent.contains(hash) || isIndexed(hash));
+    }
+
+    /**
+     * @return true when the hash was not in the set before
+     */
+    boolean add(long hash) throws IOException {
+        if (contains(hash)) {
+            return false;
+        }
+        bloomFilter.put(hash);
+        recent.add(hash);
+        return true;
+    }
+
+    int getRecentCount() {
+        return recent.size();
+    }
+
+    long size() {
+        return indexedCount + recent.size();
+    }
+
+    private boolean isIndexed(long hash) throws IOException {
+        long low = 0, high = indexedCount - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long value = readAt(middle);
+            if (value < hash) {
+                low = middle + 1;
+            } else if (value > hash) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long readAt(long position) throws IOException {
+        readBuffer.clear();
+        while (readBuffer.hasRemaining()) {
+            if (channel.read(readBuffer, position * 8 + readBuffer.position()) < 0) {
+                throw new EOFException(indexFile.getAbsolutePath());
+            }
+        }
+        readBuffer.flip();
+        return readBuffer.getLong();
+    }
+
+    /**
+     * Merges the in memory hashes with the sorted index file into a new file which then replaces it
+     */
+    void compact() throws IOException {
+        if (recent.isEmpty()) {
+            return;
+        }
+        long[] sorted = new long[recent.size()];
+        int count = 0;
+        for (Long hash : recent) {
+            sorted[count++] = hash;
+        }
+        Arrays.sort(sorted);
+        File temporary = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            int next = 0;
+            if (indexFile.isFile()) {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                    for (long index = 0; index < indexedCount; index++) {
+                        long value = input.readLong();
+                        while (next < sorted.length && sorted[next] < value) {
+                            output.writeLong(sorted[next++]);
+                        }
+                        output.writeLong(value);
+                    }
+                }
+            }
+            while (next < sorted.length) {
+                output.writeLong(sorted[next++]);
+            }
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Files.move(temporary.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        recent.clear();
+        openIndex();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package org.webdriver.crawler.frontier;
+
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.helpers.ApplicationCrawlerHelper;
+import org.webdriver.crawler.helpers.SiteProperties;
+import org.webdriver.crawler.metrics.Metrics;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Gives every url the crawler considers one canonical form, so the variants of a page (session ids, tracking
+ * parameters, parameter order, fragments, trailing slash) are not crawled as new pages, and blocks the urls of
+ * crawler traps (calendars, faceted search, paths repeating themselves) once they pass their caps.
+ * <p>
+ * Per site properties (see {@link SiteProperties}):
+ * <ul>
+ * <li>url.canonicalize - false only normalizes the urls (default true)</li>
+ * <li>url.params.deny - comma separated query and path (";jsessionid=") parameters removed, "name*" removes the
+ * names starting with name (default: session ids and the usual tracking parameters), "+name" adds to the default
+ * list</li>
+ * <li>url.params.allow - comma separated parameters kept, even denied ones, all the others are removed (default:
+ * all kept but the denied ones)</li>
+ * <li>url.sort.params - orders the query parameters by name (default true)</li>
+ * <li>url.lowercase.path - folds the case of the path (default false)</li>
+ * <li>url.trailing.slash - "keep" (default), "strip" or "add" (to the paths whose last segment has no extension)</li>
+ * <li>trap.max.url.length (default 1024), trap.max.path.depth (default 16), trap.max.repeated.segments - times one
+ * path segment may appear (default 2)</li>
+ * <li>trap.max.numeric.values - different urls of one url shape holding numbers, see
+ * {@link FrontierStrategy#shapeOf(String)} (default 500)</li>
+ * <li>trap.max.query.combinations - different queries of one path (default 100)</li>
+ * <li>trap.max.tracked - shapes and paths counted at once, the least recently used ones are forgotten
+ * (default 10000)</li>
+ * </ul>
+ * Fragments are always stripped and the scheme and host lower cased by {@link ApplicationCrawlerHelper#normalizeUrl(String)}.
+ */
+public class UrlCanonicalizer {
+
+    public enum TrailingSlash { KEEP, STRIP, ADD }
+
+    static final String DEFAULT_DENIED_PARAMS = "jsessionid,phpsessid,aspsessionid*,sid,sessionid,session_id,cfid,cftoken,"
+            + "utm_*,gclid,gclsrc,dclid,fbclid,msclkid,yclid,mc_cid,mc_eid,_ga,_gl,_hsenc,_hsmi,igshid,ref_src";
+
+    private final String siteName;
+    private final boolean enabled;
+    private final Set<String> deniedParams;
+    private final List<String> deniedPrefixes;
+    private final Set<String> allowedParams;
+    private final boolean sortParams;
+    private final boolean lowercasePath;
+    private final TrailingSlash trailingSlash;
+    private final int maxUrlLength;
+    private final int maxPathDepth;
+    private final int maxRepeatedSegments;
+    private final int maxNumericValues;
+    private final int maxQueryCombinations;
+
+    private final Map<String, Set<String>> numericValues;
+    private final Map<String, Set<String>> queryCombinations;
+    private final Map<String, Boolean> reported;
+    private final Map<String, Integer> blockedReasons = new TreeMap<>();
+    private long canonicalized;
+    private long collapsed;
+    private long blocked;
+
+    public UrlCanonicalizer(String siteName, boolean enabled, Set<String> deniedParams, Set<String> allowedParams, boolean sortParams,
+                            boolean lowercasePath, TrailingSlash trailingSlash, int maxUrlLength, int maxPathDepth, int maxRepeatedSegments,
+                            int maxNumericValues, int maxQueryCombinations, int maxTracked) {
+        this.siteName = siteName;
+        this.enabled = enabled;
+        this.deniedParams = new HashSet<>();
+        this.deniedPrefixes = new ArrayList<>();
+        for (String param : deniedParams) {
+            if (param.endsWith("*")) {
+                deniedPrefixes.add(param.substring(0, param.length() - 1));
+            } else {
+                this.deniedParams.add(param);
+            }
+        }
+        this.allowedParams = allowedParams;
+        this.sortParams = sortParams;
+        this.lowercasePath = lowercasePath;
+        this.trailingSlash = trailingSlash;
+        this.maxUrlLength = maxUrlLength;
+        this.maxPathDepth = maxPathDepth;
+        this.maxRepeatedSegments = maxRepeatedSegments;
+        this.maxNumericValues = maxNumericValues;
+        this.maxQueryCombinations = maxQueryCombinations;
+        this.numericValues = lruMap(maxTracked);
+        this.queryCombinations = lruMap(maxTracked);
+        this.reported = lruMap(Math.max(maxTracked, 100000));
+    }
+
+    public static UrlCanonicalizer forSite(Site site) {
+        Set<String> denied = new HashSet<>();
+        String configuredDenied = SiteProperties.getString(site, "url.params.deny", DEFAULT_DENIED_PARAMS);
+        if (configuredDenied.startsWith("+")) {
+            denied.addAll(split(DEFAULT_DENIED_PARAMS));
+            configuredDenied = configuredDenied.substring(1);
+        }
+        denied.addAll(split(configuredDenied));
+        TrailingSlash trailingSlash;
+        try {
+            trailingSlash = TrailingSlash.valueOf(SiteProperties.getString(site, "url.trailing.slash", "keep").toUpperCase());
+        } catch (IllegalArgumentException illegalArgumentException) {
+            trailingSlash = TrailingSlash.KEEP;
+        }
+        return new UrlCanonicalizer(site.getSiteName(),
+                SiteProperties.getBoolean(site, "url.canonicalize", true),
+                denied,
+                split(SiteProperties.getString(site, "url.params.allow", "")),
+                SiteProperties.getBoolean(site, "url.sort.params", true),
+                SiteProperties.getBoolean(site, "url.lowercase.path", false),
+                trailingSlash,
+                SiteProperties.getInt(site, "trap.max.url.length", 1024),
+                SiteProperties.getInt(site, "trap.max.path.depth", 16),
+                SiteProperties.getInt(site, "trap.max.repeated.segments", 2),
+                SiteProperties.getInt(site, "trap.max.numeric.values", 500),
+                SiteProperties.getInt(site, "trap.max.query.combinations", 100),
+                SiteProperties.getInt(site, "trap.max.tracked", 10000));
+    }
+
+    private static Set<String> split(String value) {
+        Set<String> values = new HashSet<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                values.add(item.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return values;
+    }
+
+    private static <V> Map<String, V> lruMap(final int maxEntries) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the canonical form of the url, null when it is not an http(s) url or when it is blocked as a trap
+     */
+    public synchronized String canonicalize(String url) {
+        String normalized = ApplicationCrawlerHelper.normalizeUrl(url);
+        if (normalized == null || !enabled) {
+            return normalized;
+        }
+        String canonical = rewrite(normalized);
+        boolean first = reported.put(normalized, Boolean.TRUE) == null;
+        String reason = trapReason(canonical);
+        if (reason != null) {
+            if (first) {
+                blocked++;
+                Integer count = blockedReasons.get(reason);
+                blockedReasons.put(reason, count == null ? 1 : count + 1);
+                Metrics.counter(Metrics.URLS_BLOCKED, "site", siteName, "reason", reason).increment();
+            }
+            return null;
+        }
+        if (first) {
+            canonicalized++;
+            if (!canonical.equals(normalized)) {
+                collapsed++;
+                Metrics.counter(Metrics.URLS_COLLAPSED, "site", siteName).increment();
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * @return the canonical form of a url the crawl starts from or is already on, never blocked as a trap
+     */
+    public String canonicalizeVisited(String url) {
+        String normalized = ApplicationCrawlerHelper.normalizeUrl(url);
+        return normalized == null || !enabled ? normalized : rewrite(normalized);
+    }
+
+    String rewrite(String normalized) {
+        URL url;
+        try {
+            url = new URL(normalized);
+        } catch (Exception exception) {
+            return normalized;
+        }
+        String path = url.getPath();
+        if (path.indexOf(';') >= 0) {
+            path = stripPathParams(path);
+        }
+        path = path.replaceAll("/{2,}", "/");
+        if (lowercasePath) {
+            path = path.toLowerCase(Locale.ROOT);
+        }
+        if (trailingSlash == TrailingSlash.STRIP && path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        } else if (trailingSlash == TrailingSlash.ADD && !path.endsWith("/") && path.lastIndexOf('.') < path.lastIndexOf('/')) {
+            path = path + "/";
+        }
+        String query = url.getQuery() == null ? "" : rewriteQuery(url.getQuery());
+        return url.getProtocol() + "://" + url.getAuthority() + path + (query.isEmpty() ? "" : "?" + query);
+    }
+
+    private String stripPathParams(String path) {
+        StringBuilder stripped = new StringBuilder();
+        for (String segment : path.split("/", -1)) {
+            String[] parts = segment.split(";");
+            StringBuilder kept = new StringBuilder(parts[0]);
+            for (int index = 1; index < parts.length; index++) {
+                if (!isDenied(parts[index].split("=", 2)[0])) {
+                    kept.append(';').append(parts[index]);
+                }
+            }
+            stripped.append(stripped.length() == 0 && kept.length() == 0 ? "" : "/").append(kept);
+        }
+        return stripped.length() == 0 ? "/" : stripped.toString();
+    }
+
+    private String rewriteQuery(String query) {
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : query.split("&")) {
+            if (!parameter.isEmpty() && !isDenied(parameter.split("=", 2)[0])) {
+                parameters.add(parameter);
+            }
+        }
+        if (sortParams) {
+            Collections.sort(parameters);
+        }
+        StringBuilder rewritten = new StringBuilder();
+        for (String parameter : parameters) {
+            rewritten.append(rewritten.length() == 0 ? "" : "&").append(parameter);
+        }
+        return rewritten.toString();
+    }
+
+    private boolean isDenied(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        if (!allowedParams.isEmpty()) {
+            return !allowedParams.contains(key);
+        }
+        if (deniedParams.contains(key)) {
+            return true;
+        }
+        for (String prefix : deniedPrefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return why the canonical url is a trap, null when it is not
+     */
+    private String trapReason(String canonical) {
+        if (canonical.length() > maxUrlLength) {
+            return "length";
+        }
+        int query = canonical.indexOf('?');
+        String withoutQuery = query < 0 ? canonical : canonical.substring(0, query);
+        int pathStart = withoutQuery.indexOf('/', withoutQuery.indexOf("//") + 2);
+        String path = pathStart < 0 ? "" : withoutQuery.substring(pathStart);
+        Map<String, Integer> segments = new HashMap<>();
+        int depth = 0;
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            depth++;
+            Integer count = segments.get(segment);
+            segments.put(segment, count == null ? 1 : count + 1);
+            if (segments.get(segment) > maxRepeatedSegments) {
+                return "repeated segments";
+            }
+        }
+        if (depth > maxPathDepth) {
+            return "depth";
+        }
+        if (query >= 0 && !admit(queryCombinations, withoutQuery, canonical.substring(query + 1), maxQueryCombinations)) {
+            return "query combinations";
+        }
+        if (pathStart >= 0 && containsDigit(canonical, pathStart) &&
+                !admit(numericValues, FrontierStrategy.shapeOf(canonical), canonical, maxNumericValues)) {
+            return "numeric values";
+        }
+        return null;
+    }
+
+    private static boolean containsDigit(String url, int from) {
+        for (int index = from; index < url.length(); index++) {
+            if (Character.isDigit(url.charAt(index))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true when the value was already counted for the key or there is room for one more
+     */
+    private static boolean admit(Map<String, Set<String>> tracked, String key, String value, int maxValues) {
+        Set<String> values = tracked.get(key);
+        if (values == null) {
+            values = new HashSet<>();
+            tracked.put(key, values);
+        }
+        if (values.contains(value)) {
+            return true;
+        }
+        if (values.size() >= maxValues) {
+            return false;
+        }
+        values.add(value);
+        return true;
+    }
+
+    public synchronized long getCollapsed() {
+        return collapsed;
+    }
+
+    public synchronized long getBlocked() {
+        return blocked;
+    }
+
+    public synchronized String getSummary() {
+        return String.format("%s: %,d urls canonicalized, %,d collapsed into their canonical form, %,d blocked as traps %s",
+                siteName, canonicalized, collapsed, blocked, blockedReasons);
+    }
+}
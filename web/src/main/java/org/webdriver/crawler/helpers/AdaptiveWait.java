@@ -0,0 +1,109 @@
+package org.webdriver.crawler.helpers;
+
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.ui.Wait;
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.metrics.Metrics;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Wait which evaluates its condition at once and then polls with an exponential back-off, instead of the fixed
+ * interval of a {@link org.openqa.selenium.support.ui.FluentWait}: an element showing up after 50 Milli-Second no
+ * longer costs a whole polling interval.
+ * <p>
+ * When the {@link WaitHistory} of the locator expects a wait, the first interval is three quarters of it; the next
+ * intervals start at the minimum interval and double on every retry up to the maximum interval, so a wait ends
+ * shortly after its condition became true and the learned expectation does not drift upwards. The time slept and
+ * the time spent evaluating the condition are recorded in the metrics of the site.
+ */
+public class AdaptiveWait<F> implements Wait<F> {
+
+    private final F input;
+    private final Site site;
+    private final String historyKey;
+    private final long timeoutMillis;
+    private final long minPollMillis;
+    private final long maxPollMillis;
+    private final String message;
+    private final Collection<Class<? extends Throwable>> ignoredExceptions;
+
+    public AdaptiveWait(F input, Site site, String historyKey, long timeoutMillis, long minPollMillis, long maxPollMillis,
+                        String message, Collection<Class<? extends Throwable>> ignoredExceptions) {
+        this.input = input;
+        this.site = site;
+        this.historyKey = historyKey;
+        this.timeoutMillis = timeoutMillis;
+        this.minPollMillis = Math.max(1, minPollMillis);
+        this.maxPollMillis = Math.max(this.minPollMillis, maxPollMillis);
+        this.message = message;
+        this.ignoredExceptions = ignoredExceptions;
+    }
+
+    /**
+     * @return the first polling interval for the expected wait of the locator
+     */
+    public long getInitialPollMillis() {
+        long expectedMillis = WaitHistory.expectedMillis(historyKey, -1);
+        return expectedMillis < 0 ? minPollMillis : Math.min(maxPollMillis, Math.max(minPollMillis, expectedMillis * 3 / 4));
+    }
+
+    @Override
+    public <T> T until(Function<? super F, T> isTrue) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long pollMillis = getInitialPollMillis();
+        long nextPollMillis = minPollMillis;
+        long sleptNanos = 0;
+        Throwable lastException = null;
+        try {
+            while (true) {
+                try {
+                    T value = isTrue.apply(input);
+                    if (value != null && (!(value instanceof Boolean) || Boolean.TRUE.equals(value))) {
+                        WaitHistory.record(historyKey, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+                        return value;
+                    }
+                    lastException = null;
+                } catch (Throwable throwable) {
+                    if (!isIgnored(throwable)) {
+                        throw throwable;
+                    }
+                    lastException = throwable;
+                }
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    throw new TimeoutException(String.format("Expected condition failed: %s (tried for %,d Milli-Second with adaptive polling up to %,d Milli-Second interval)",
+                            message, timeoutMillis, maxPollMillis), lastException);
+                }
+                long sleepStart = System.nanoTime();
+                try {
+                    TimeUnit.NANOSECONDS.sleep(Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(pollMillis)));
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new WebDriverException(interruptedException);
+                } finally {
+                    sleptNanos += System.nanoTime() - sleepStart;
+                }
+                pollMillis = nextPollMillis;
+                nextPollMillis = Math.min(maxPollMillis, nextPollMillis * 2);
+            }
+        } finally {
+            String siteName = site == null ? "" : site.getSiteName();
+            Metrics.histogram(Metrics.ELEMENT_WAIT_SLEEP, "site", siteName).record(sleptNanos);
+            Metrics.histogram(Metrics.ELEMENT_WAIT_POLL, "site", siteName).record(System.nanoTime() - startNanos - sleptNanos);
+        }
+    }
+
+    private boolean isIgnored(Throwable throwable) {
+        for (Class<? extends Throwable> ignored : ignoredExceptions) {
+            if (ignored.isInstance(throwable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,19 +1,17 @@
 package org.webdriver.crawler.helpers;
 
-import org.webdriver.crawler.ApplicationCrawler;
+import org.openqa.selenium.By;
 import org.webdriver.crawler.Site;
+import org.webdriver.crawler.results.ResultsSink;
+import org.webdriver.crawler.results.SiteResult;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Properties;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Created by ganak on 6/22/2015.
@@ -35,6 +33,55 @@ public class ApplicationCrawlerHelper {
         return stringUrl.replace("http://", "").replace("https://", "").replace("/", "_");
     }
 
+    /**
+     * Normalizes an http(s) url so the same page is always keyed the same way: lower case scheme and host,
+     * no default port, no fragment and "/" for an empty path
+     * @return the normalized url or null when it is not an http(s) url
+     */
+    public static String normalizeUrl(String stringUrl) {
+        if (stringUrl == null) {
+            return null;
+        }
+        try {
+            URL url = new URL(stringUrl.trim());
+            String protocol = url.getProtocol().toLowerCase();
+            if (!"http".equals(protocol) && !"https".equals(protocol)) {
+                return null;
+            }
+            int port = url.getPort() == url.getDefaultPort() ? -1 : url.getPort();
+            String path = url.getPath().isEmpty() ? "/" : url.getPath();
+            return protocol + "://" + url.getHost().toLowerCase() + (port == -1 ? "" : ":" + port) + path +
+                    (url.getQuery() == null ? "" : "?" + url.getQuery());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return case insensitive locator of the links containing the given text
+     */
+    public static By byLinkText(String text) {
+        return By.xpath(String.format("//a[contains(translate(.,'ABCDEFGHIJKLMNOPQRSTUVWXYZ','abcdefghijklmnopqrstuvwxyz'),'%s') and @href]", text.toLowerCase()));
+    }
+
+    /**
+     * @return locator of the node at the given (0 based) position among the nodes matched by the xpath
+     */
+    public static By byIndex(String xpath, int index) {
+        return By.xpath(String.format("(%s)[%d]", xpath, index + 1));
+    }
+
+    /**
+     * @return the host of the given url, null when it cannot be parsed
+     */
+    public static String getHost(String stringUrl) {
+        try {
+            return new URL(stringUrl).getHost();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     /**
      * Read file and parse each line to item in list, reads from system property "urls.list", default file name urls4crawling.txt
      * @return
@@ -79,33 +126,13 @@ public class ApplicationCrawlerHelper {
     }
 
     /**
-     * Writes properties safely to the same file
+     * Queues the execution time of the site to the results sink of the given file, see {@link ResultsSink}
      * @param outputFile
      * @param siteName
      * @param executionTime
      */
     public static void write(String outputFile, String siteName, String executionTime) {
-        Properties toBeWrittenProperties = new Properties();
-        toBeWrittenProperties.setProperty(siteName, executionTime);
-        File lockFile = new File(outputFile + ".lck");
-        try {
-            while(lockFile.exists()) {
-                System.out.println(Thread.currentThread().getName() + ": Lock file " + lockFile.getAbsolutePath() + " exists, waiting..");
-                TimeUnit.SECONDS.sleep(2);
-            }
-            lockFile.createNewFile();
-            lockFile.deleteOnExit();
-            File file = new File(outputFile);
-            if (file.exists()) {
-                toBeWrittenProperties.load(new FileInputStream(file));
-            }
-            toBeWrittenProperties.store(new FileOutputStream(file), ApplicationCrawler.class.getName());
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            try {Files.deleteIfExists(lockFile.toPath());} catch (Exception e) {}
-        }
+        ResultsSink.forFile(outputFile).submit(SiteResult.durationOnly(siteName, executionTime));
     }
 
 }
-
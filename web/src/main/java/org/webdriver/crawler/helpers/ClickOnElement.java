@@ -23,11 +23,19 @@ public class ClickOnElement implements ExpectedCondition<Boolean> {
 						currentElement.isDisplayed() && 
 						currentElement.getSize().getHeight() > 0 && 
 						currentElement.getSize().getWidth() > 0){
-					currentElement.click();
+					click(currentElement);
 					return Boolean.TRUE;
                 }
 			}
 		}
 		return Boolean.FALSE;
 	}
+
+	/**
+	 * Clicks the first element found displayed and enabled, overridden to wrap the click itself (not the wait for
+	 * the element)
+	 */
+	protected void click(WebElement element) {
+		element.click();
+	}
 }
\ No newline at end of file
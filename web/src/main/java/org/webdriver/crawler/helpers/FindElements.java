@@ -6,27 +6,43 @@ import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Waits until the number of elements found is the same on two consecutive reads and has not changed for at least
+ * stableMillis, so the count is checked over the same time window whatever the polling interval of the wait.
+ */
 public class FindElements implements ExpectedCondition<List<WebElement>> {
 	
 	private int minimumElements;
 	private By by;
+	private long stableNanos;
 	private int lastCheck = -1;
+	private long countSinceNanos;
 
 	public FindElements(By by) {
 		this(by, 1);
 	}
 
 	public FindElements(By by, int minimumElements) {
+		this(by, minimumElements, 0);
+	}
+
+	public FindElements(By by, int minimumElements, long stableMillis) {
 		this.by = by;
 		this.minimumElements = minimumElements;
+		this.stableNanos = TimeUnit.MILLISECONDS.toNanos(stableMillis);
 	}
 
 	@Override
 	public List<WebElement> apply(WebDriver webDriver) {
 		int temp = lastCheck;
 		lastCheck = webDriver.findElements(by).size();
-		if (lastCheck >= minimumElements && temp >= minimumElements && lastCheck == temp) {
+		long now = System.nanoTime();
+		if (lastCheck != temp) {
+			countSinceNanos = now;
+		}
+		if (lastCheck >= minimumElements && temp >= minimumElements && lastCheck == temp && now - countSinceNanos >= stableNanos) {
 			return webDriver.findElements(by);
 		}
 		return null;
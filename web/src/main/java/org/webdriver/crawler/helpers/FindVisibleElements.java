@@ -21,6 +21,10 @@ public class FindVisibleElements extends FindElements {
         super(by, minimumElements);
     }
 
+    public FindVisibleElements(By by, int minimumElements, long stableMillis) {
+        super(by, minimumElements, stableMillis);
+    }
+
     @Override
     public List<WebElement> apply(WebDriver webDriver) {
         List<WebElement> apply = super.apply(webDriver);
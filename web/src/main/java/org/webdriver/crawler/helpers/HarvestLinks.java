@@ -0,0 +1,119 @@
+package org.webdriver.crawler.helpers;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Same contract as {@link FindVisibleElements} (waits until two consecutive reads return the same number of
+ * candidates, unchanged for at least stableMillis, and then keeps only the available ones) but all the candidates are read in a single
+ * {@link JavascriptExecutor} round trip instead of several WebDriver commands per element.
+ * When the page is already known to be settled the first read is trusted.
+ */
+public class HarvestLinks implements ExpectedCondition<List<HarvestedLink>> {
+
+    /**
+     * arguments: [0] locator kind ('xpath' or 'css'), [1] locator expression, [2] maximum rows (0 = all).
+     * returns one row per matched node: [index, text, href, displayed, enabled, x, y, width, height, script driven]
+     */
+    static final String SCRIPT =
+            "var kind = arguments[0], expression = arguments[1], limit = arguments[2], nodes = [];" +
+            "if (kind === 'xpath') {" +
+            "  var snapshot = document.evaluate(expression, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);" +
+            "  for (var i = 0; i < snapshot.snapshotLength; i++) { nodes.push(snapshot.snapshotItem(i)); }" +
+            "} else {" +
+            "  nodes = Array.prototype.slice.call(document.querySelectorAll(expression));" +
+            "}" +
+            "var rows = [];" +
+            "for (var i = 0; i < nodes.length && (limit <= 0 || i < limit); i++) {" +
+            "  var e = nodes[i], style = window.getComputedStyle(e), rect = e.getBoundingClientRect();" +
+            "  var raw = (e.getAttribute('href') || '').trim(), scripted = !e.href || raw.charAt(0) === '#' || /^javascript:/i.test(raw) ||" +
+            "    e.hasAttribute('onclick') || typeof e.onclick === 'function';" +
+            "  var displayed = style.display !== 'none' && style.visibility !== 'hidden' && style.opacity !== '0' && e.getClientRects().length > 0;" +
+            "  rows.push([i, displayed ? (e.innerText || e.textContent || '').trim() : '', e.href || e.getAttribute('href') || '', displayed, !e.disabled," +
+            "    Math.round(rect.left + window.pageXOffset), Math.round(rect.top + window.pageYOffset), Math.round(rect.width), Math.round(rect.height), scripted]);" +
+            "}" +
+            "return rows;";
+
+    private static final String XPATH_PREFIX = "By.xpath: ";
+    private static final String CSS_PREFIX = "By.cssSelector: ";
+
+    private final int minimumElements;
+    private final By by;
+    private final boolean stableCountRequired;
+    private final long stableNanos;
+    private int lastCheck = -1;
+    private long countSinceNanos;
+
+    public HarvestLinks(By by) {
+        this(by, 1);
+    }
+
+    public HarvestLinks(By by, int minimumElements) {
+        this(by, minimumElements, true);
+    }
+
+    public HarvestLinks(By by, int minimumElements, boolean stableCountRequired) {
+        this(by, minimumElements, stableCountRequired, 0);
+    }
+
+    public HarvestLinks(By by, int minimumElements, boolean stableCountRequired, long stableMillis) {
+        this.by = by;
+        this.minimumElements = minimumElements;
+        this.stableCountRequired = stableCountRequired;
+        this.stableNanos = TimeUnit.MILLISECONDS.toNanos(stableMillis);
+    }
+
+    @Override
+    public List<HarvestedLink> apply(WebDriver webDriver) {
+        List<HarvestedLink> harvested = harvest(webDriver, by, 0);
+        int temp = stableCountRequired ? lastCheck : harvested.size();
+        lastCheck = harvested.size();
+        long now = System.nanoTime();
+        if (lastCheck != temp) {
+            countSinceNanos = now;
+        }
+        boolean stable = !stableCountRequired || now - countSinceNanos >= stableNanos;
+        if (lastCheck >= minimumElements && temp >= minimumElements && lastCheck == temp && stable) {
+            List<HarvestedLink> available = new ArrayList<>();
+            for (HarvestedLink currentLink : harvested) {
+                if (currentLink.isAvailable()) {
+                    available.add(currentLink);
+                }
+            }
+            return available;
+        }
+        return null;
+    }
+
+    /**
+     * @return true when the locator can be evaluated by the harvest script and the driver can run it
+     */
+    public static boolean isSupported(WebDriver webDriver, By by) {
+        return webDriver instanceof JavascriptExecutor && (by instanceof By.ByXPath || by instanceof By.ByCssSelector);
+    }
+
+    /**
+     * Reads all the nodes matching the given locator in one script execution
+     * @param limit maximum number of nodes to read, 0 for all of them
+     */
+    public static List<HarvestedLink> harvest(WebDriver webDriver, By by, int limit) {
+        String locator = by.toString();
+        String kind = locator.startsWith(XPATH_PREFIX) ? "xpath" : "css";
+        String expression = locator.substring(("xpath".equals(kind) ? XPATH_PREFIX : CSS_PREFIX).length());
+        Object result = ((JavascriptExecutor) webDriver).executeScript(SCRIPT, kind, expression, limit);
+        List<HarvestedLink> harvested = new ArrayList<>();
+        if (result instanceof List) {
+            for (Object row : (List<?>) result) {
+                harvested.add(HarvestedLink.fromRow((List<?>) row));
+            }
+        }
+        return harvested;
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.webdriver.crawler.helpers;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.WebElement;
+
+import java.util.List;
+
+/**
+ * Snapshot of a single anchor as seen by the harvester: text, resolved href, visibility, enabled state and
+ * bounding rect. Built either from one row of the harvest script result or from a {@link WebElement}.
+ */
+public class HarvestedLink {
+
+    private final int index;
+    private final String text;
+    private final String href;
+    private final boolean displayed;
+    private final boolean enabled;
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final boolean scriptDriven;
+
+    public HarvestedLink(int index, String text, String href, boolean displayed, boolean enabled, int x, int y, int width, int height) {
+        this(index, text, href, displayed, enabled, x, y, width, height, isScriptHref(href));
+    }
+
+    public HarvestedLink(int index, String text, String href, boolean displayed, boolean enabled, int x, int y, int width, int height,
+                         boolean scriptDriven) {
+        this.index = index;
+        this.text = text;
+        this.href = href;
+        this.displayed = displayed;
+        this.enabled = enabled;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.scriptDriven = scriptDriven;
+    }
+
+    /**
+     * Row layout produced by {@link HarvestLinks#SCRIPT}: [index, text, href, displayed, enabled, x, y, width, height, script driven]
+     */
+    static HarvestedLink fromRow(List<?> row) {
+        return new HarvestedLink(toInt(row.get(0)), (String) row.get(1), (String) row.get(2),
+                Boolean.TRUE.equals(row.get(3)), Boolean.TRUE.equals(row.get(4)),
+                toInt(row.get(5)), toInt(row.get(6)), toInt(row.get(7)), toInt(row.get(8)), Boolean.TRUE.equals(row.get(9)));
+    }
+
+    public static HarvestedLink fromElement(int index, WebElement element) {
+        Point location = element.getLocation();
+        Dimension size = element.getSize();
+        String href = element.getAttribute("href");
+        return new HarvestedLink(index, element.getText(), href,
+                element.isDisplayed(), element.isEnabled(), location.getX(), location.getY(), size.getWidth(), size.getHeight(),
+                isScriptHref(href) || element.getAttribute("onclick") != null);
+    }
+
+    /**
+     * @return true for hrefs that do not point to another page: empty, "javascript:" or a fragment of the current page
+     */
+    static boolean isScriptHref(String href) {
+        if (href == null) {
+            return true;
+        }
+        String trimmed = href.trim().toLowerCase();
+        return trimmed.isEmpty() || trimmed.startsWith("javascript:") || trimmed.startsWith("#") || trimmed.endsWith("#");
+    }
+
+    private static int toInt(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    /**
+     * Position of the anchor among all nodes matched by the harvest locator (0 based)
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getHref() {
+        return href;
+    }
+
+    public boolean isDisplayed() {
+        return displayed;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Same check the per-element path does: displayed, enabled and with a non empty size
+     */
+    public boolean isAvailable() {
+        return displayed && enabled && width > 0 && height > 0;
+    }
+
+    /**
+     * @return true when the anchor only works through JavaScript (javascript: or "#" href, onclick handler)
+     * and has to be clicked rather than navigated to
+     */
+    public boolean isScriptDriven() {
+        return scriptDriven;
+    }
+
+    public boolean hasText() {
+        return text != null && !text.trim().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s -> %s", text, href);
+    }
+}
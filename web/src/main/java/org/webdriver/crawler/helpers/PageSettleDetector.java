@@ -0,0 +1,199 @@
+package org.webdriver.crawler.helpers;
+
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.webdriver.crawler.Site;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Waits until the current page has settled (returns as soon as it has, or after the max wait) and keeps
+ * statistics about the time each settle took, so the max wait can be tuned per site.
+ * <p>
+ * Selected with the system properties (each can be overridden per site, see {@link SiteProperties}):
+ * <ul>
+ * <li>page.settle - "script" (default) or "fixed"</li>
+ * <li>page.settle.max.millis - maximum time to wait for the page (default 10000)</li>
+ * <li>page.settle.quiet.millis - DOM quiet window required by the script detector (default 500)</li>
+ * <li>page.settle.fixed.millis - sleep used by the fixed detector (default 2000)</li>
+ * </ul>
+ */
+public abstract class PageSettleDetector {
+
+    private static final Logger log = Logger.getLogger(PageSettleDetector.class.getName());
+
+    private final String name;
+    private final long maxWaitMillis;
+
+    private final AtomicLong settles = new AtomicLong();
+    private final AtomicLong unconfirmed = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    protected PageSettleDetector(String name, long maxWaitMillis) {
+        this.name = name;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Blocks until the page has settled or the max wait was reached
+     * @return true only when the page was positively detected as settled
+     */
+    protected abstract boolean awaitSettled(WebDriver webDriver, long maxWaitMillis);
+
+    public boolean settle(WebDriver webDriver) {
+        long startTime = System.currentTimeMillis();
+        boolean settled = awaitSettled(webDriver, maxWaitMillis);
+        long settleTime = System.currentTimeMillis() - startTime;
+
+        settles.incrementAndGet();
+        totalMillis.addAndGet(settleTime);
+        long currentMax;
+        while ((currentMax = maxMillis.get()) < settleTime && !maxMillis.compareAndSet(currentMax, settleTime)) { }
+        if (!settled) {
+            unconfirmed.incrementAndGet();
+        }
+        log.log(Level.FINE, String.format("%s: page %s after %,d Milli-Second", name, settled ? "settled" : "not confirmed as settled", settleTime));
+        return settled;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public String getSummary() {
+        long count = settles.get();
+        return String.format("%s: %d page settles, average %,d Milli-Second, max %,d Milli-Second, %d not confirmed (max wait %,d Milli-Second)",
+                name, count, count == 0 ? 0 : totalMillis.get() / count, maxMillis.get(), unconfirmed.get(), maxWaitMillis);
+    }
+
+    public static PageSettleDetector forSite(Site site) {
+        String name = site == null ? "default" : site.getSiteName();
+        long maxWait = SiteProperties.getLong(site, "page.settle.max.millis", 10000L);
+        if ("fixed".equalsIgnoreCase(SiteProperties.getString(site, "page.settle", "script"))) {
+            return fixed(name, SiteProperties.getLong(site, "page.settle.fixed.millis", 2000L));
+        }
+        return script(name, maxWait, SiteProperties.getLong(site, "page.settle.quiet.millis", 500L));
+    }
+
+    public static PageSettleDetector script(String name, long maxWaitMillis, long quietMillis) {
+        return new ScriptSettle(name, maxWaitMillis, quietMillis);
+    }
+
+    public static PageSettleDetector fixed(String name, long delayMillis) {
+        return new FixedDelay(name, delayMillis);
+    }
+
+    static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Always sleeps the same amount of time, the page is never confirmed as settled
+     */
+    public static class FixedDelay extends PageSettleDetector {
+
+        public FixedDelay(String name, long delayMillis) {
+            super(name, delayMillis);
+        }
+
+        @Override
+        protected boolean awaitSettled(WebDriver webDriver, long maxWaitMillis) {
+            sleep(maxWaitMillis);
+            return false;
+        }
+    }
+
+    /**
+     * Single asynchronous script call which resolves once document.readyState is complete, no fetch/XHR request
+     * is in flight and the DOM had no mutations for the quiet window. The instrumentation is installed on the
+     * first call for each document and then reused.
+     * <p>
+     * The fetch/XHR hooks can only count the requests started after that first call (WebDriver 3 has no way to run
+     * a script before the page scripts), so the requests of the initial load are followed through the resource
+     * timing entries instead: a request of the page finishing restarts the quiet window, a request still running
+     * when the quiet window ends is not seen. A script failing once (the document unloaded by a redirect while it
+     * ran) only makes that settle fall back to the fixed delay.
+     */
+    public static class ScriptSettle extends PageSettleDetector {
+
+        /**
+         * arguments: [0] quiet window millis, [1] maximum wait millis, [2] callback
+         */
+        static final String SCRIPT =
+                "var callback = arguments[arguments.length - 1], quiet = arguments[0], budget = arguments[1], w = window;" +
+                "if (!w.__crawlerSettle) {" +
+                "  var s = w.__crawlerSettle = {inflight: 0, last: Date.now()};" +
+                "  var done = function () { s.inflight = Math.max(0, s.inflight - 1); s.last = Date.now(); };" +
+                "  if (w.MutationObserver) {" +
+                "    new MutationObserver(function () { s.last = Date.now(); }).observe(document, {childList: true, subtree: true, characterData: true});" +
+                "  }" +
+                "  if (w.fetch) {" +
+                "    var originalFetch = w.fetch;" +
+                "    w.fetch = function () {" +
+                "      s.inflight++;" +
+                "      return originalFetch.apply(this, arguments).then(function (r) { done(); return r; }, function (e) { done(); throw e; });" +
+                "    };" +
+                "  }" +
+                "  if (w.XMLHttpRequest) {" +
+                "    var originalSend = XMLHttpRequest.prototype.send;" +
+                "    XMLHttpRequest.prototype.send = function () {" +
+                "      s.inflight++; this.addEventListener('loadend', done);" +
+                "      return originalSend.apply(this, arguments);" +
+                "    };" +
+                "  }" +
+                "}" +
+                "var state = w.__crawlerSettle, start = Date.now();" +
+                "var resources = function () { return w.performance && performance.getEntriesByType ? performance.getEntriesByType('resource').length : 0; };" +
+                "(function check() {" +
+                "  var now = Date.now(), finished = resources();" +
+                "  if (finished !== state.resources) { state.resources = finished; state.last = now; }" +
+                "  if (document.readyState === 'complete' && state.inflight === 0 && now - state.last >= quiet) { callback(true); }" +
+                "  else if (now - start >= budget) { callback(false); }" +
+                "  else { setTimeout(check, 50); }" +
+                "})();";
+
+        private final long quietMillis;
+        private final Set<WebDriver> scriptTimeoutSet = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<WebDriver, Boolean>()));
+        private volatile boolean supported = true;
+
+        public ScriptSettle(String name, long maxWaitMillis, long quietMillis) {
+            super(name, maxWaitMillis);
+            this.quietMillis = quietMillis;
+        }
+
+        @Override
+        protected boolean awaitSettled(WebDriver webDriver, long maxWaitMillis) {
+            if (supported && webDriver instanceof JavascriptExecutor) {
+                try {
+                    if (scriptTimeoutSet.add(webDriver)) {
+                        webDriver.manage().timeouts().setScriptTimeout(maxWaitMillis + 5000, TimeUnit.MILLISECONDS);
+                    }
+                    return Boolean.TRUE.equals(((JavascriptExecutor) webDriver).executeAsyncScript(SCRIPT, quietMillis, maxWaitMillis));
+                } catch (ScriptTimeoutException scriptTimeoutException) {
+                    return false;
+                } catch (JavascriptException javascriptException) {
+                    log.info("Page settle script failed on this page, fixed delay for this settle: " + String.valueOf(javascriptException.getMessage()).split("\\n")[0]);
+                } catch (UnsupportedCommandException unsupportedCommandException) {
+                    supported = false;
+                    log.log(Level.INFO, "Page settle script is not supported by this driver, falling back to a fixed delay", unsupportedCommandException);
+                }
+            }
+            sleep(Math.min(2000L, maxWaitMillis));
+            return false;
+        }
+    }
+}
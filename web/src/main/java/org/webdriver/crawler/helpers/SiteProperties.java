@@ -0,0 +1,42 @@
+package org.webdriver.crawler.helpers;
+
+import org.webdriver.crawler.Site;
+
+/**
+ * Reads tuning system properties allowing a per site override, the site specific value is taken from
+ * "&lt;key&gt;.&lt;site name&gt;" (e.g. -Dpage.settle.max.millis.MySite=20000) and falls back to "&lt;key&gt;"
+ */
+public class SiteProperties {
+
+    public static String getString(Site site, String key, String defaultValue) {
+        String value = site == null ? null : System.getProperty(key + "." + site.getSiteName());
+        return value != null ? value : System.getProperty(key, defaultValue);
+    }
+
+    public static long getLong(Site site, String key, long defaultValue) {
+        try {
+            return Long.parseLong(getString(site, key, null));
+        } catch (NumberFormatException nfe) { }
+        return defaultValue;
+    }
+
+    public static int getInt(Site site, String key, int defaultValue) {
+        try {
+            return Integer.parseInt(getString(site, key, null));
+        } catch (NumberFormatException nfe) { }
+        return defaultValue;
+    }
+
+    public static double getDouble(Site site, String key, double defaultValue) {
+        try {
+            return Double.parseDouble(getString(site, key, null));
+        } catch (NumberFormatException | NullPointerException exception) { }
+        return defaultValue;
+    }
+
+    public static boolean getBoolean(Site site, String key, boolean defaultValue) {
+        String value = getString(site, key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+}
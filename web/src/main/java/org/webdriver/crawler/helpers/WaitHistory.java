@@ -0,0 +1,87 @@
+package org.webdriver.crawler.helpers;
+
+import org.webdriver.crawler.Site;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Learns how long the elements of a site take to show up: an exponentially weighted moving average of the
+ * successful waits, per site, wait kind and locator pattern (numbers and quoted texts of the locator are masked, so
+ * "(//a)[3]" and "(//a)[7]" share their history). Each wait also feeds the site wide average of its kind, used
+ * for the locators without history yet.
+ * <p>
+ * System property wait.history.max.keys (default 10000) bounds the number of locator patterns remembered.
+ */
+public class WaitHistory {
+
+    private static final int MAX_KEYS = Integer.getInteger("wait.history.max.keys", 10000);
+    private static final Pattern QUOTED = Pattern.compile("'[^']*'|\"[^\"]*\"");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    /**
+     * Weight of the newest wait in the average is 1 / 2^WEIGHT_SHIFT
+     */
+    private static final int WEIGHT_SHIFT = 2;
+
+    private static final ConcurrentMap<String, AtomicLong> averageMicros = new ConcurrentHashMap<>();
+
+    private WaitHistory() {
+    }
+
+    /**
+     * @return the history key of a wait of the given kind (e.g. "click") on the locator
+     */
+    public static String key(Site site, String kind, Object locator) {
+        String pattern = locator == null ? "*" : NUMBER.matcher(QUOTED.matcher(locator.toString()).replaceAll("'?'")).replaceAll("#");
+        return (site == null ? "" : site.getSiteName().replace('|', '_')) + "|" + kind + "|" + pattern;
+    }
+
+    /**
+     * @return the expected wait of the key in milli-seconds, else the site wide one of its kind, else defaultMillis
+     */
+    public static long expectedMillis(String key, long defaultMillis) {
+        AtomicLong average = averageMicros.get(key);
+        if (average == null) {
+            average = averageMicros.get(kindKey(key));
+        }
+        return average == null ? defaultMillis : average.get() / 1000;
+    }
+
+    /**
+     * Accounts a successful wait
+     */
+    public static void record(String key, long waitMicros) {
+        update(key, waitMicros);
+        update(kindKey(key), waitMicros);
+    }
+
+    /**
+     * "site|kind|locator" to "site|kind|*"
+     */
+    private static String kindKey(String key) {
+        return key.substring(0, key.indexOf('|', key.indexOf('|') + 1) + 1) + "*";
+    }
+
+    private static void update(String key, long waitMicros) {
+        AtomicLong average = averageMicros.get(key);
+        if (average == null) {
+            if (averageMicros.size() >= MAX_KEYS) {
+                return;
+            }
+            average = averageMicros.putIfAbsent(key, new AtomicLong(waitMicros));
+            if (average == null) {
+                return;
+            }
+        }
+        long current;
+        do {
+            current = average.get();
+        } while (!average.compareAndSet(current, current + ((waitMicros - current) >> WEIGHT_SHIFT)));
+    }
+
+    public static void clear() {
+        averageMicros.clear();
+    }
+}
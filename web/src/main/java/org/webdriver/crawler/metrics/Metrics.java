@@ -0,0 +1,334 @@
+package org.webdriver.crawler.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process wide registry of the crawler latency histograms, counters and gauges, keyed by metric name and labels
+ * (e.g. crawler_action_latency_seconds{type="GetURL",site="MySite"}).
+ * A snapshot is exported at the end of the run as JSON and in the Prometheus text format, see {@link #export(File)}.
+ */
+public class Metrics {
+
+    private static final Logger log = Logger.getLogger(Metrics.class.getName());
+
+    public static final String ACTION_LATENCY = "crawler_action_latency_seconds";
+    public static final String SITE_ACTION_LATENCY = "crawler_site_action_latency_seconds";
+    public static final String ACTION_FAILURES = "crawler_action_failures_total";
+    public static final String DRIVER_INIT_LATENCY = "crawler_driver_init_latency_seconds";
+    public static final String HARVEST_LATENCY = "crawler_harvest_latency_seconds";
+    public static final String WAIT_LATENCY = "crawler_wait_latency_seconds";
+    public static final String WAIT_RETRIES = "crawler_wait_retries_total";
+    public static final String WAIT_TIMEOUTS = "crawler_wait_timeouts_total";
+    public static final String PAGE_SETTLE_LATENCY = "crawler_page_settle_latency_seconds";
+    public static final String NAVIGATION_LATENCY = "crawler_navigation_latency_seconds";
+    public static final String LIMITER_WAIT = "crawler_host_limiter_wait_seconds";
+    public static final String ELEMENT_WAIT_SLEEP = "crawler_element_wait_sleep_seconds";
+    public static final String ELEMENT_WAIT_POLL = "crawler_element_wait_poll_seconds";
+    public static final String FAILED_CLICKS = "crawler_failed_clicks_total";
+    public static final String BLOCKED_REQUESTS = "crawler_blocked_requests_total";
+    public static final String BLOCKED_BYTES = "crawler_blocked_bytes_total";
+    public static final String PROXIED_BYTES = "crawler_proxied_bytes_total";
+    public static final String PROXIED_REQUESTS = "crawler_proxied_requests_total";
+    public static final String NEAR_DUPLICATE_PAGES = "crawler_near_duplicate_pages_total";
+    public static final String NEAR_DUPLICATE_SKIPS = "crawler_near_duplicate_skips_total";
+    public static final String URLS_COLLAPSED = "crawler_urls_collapsed_total";
+    public static final String URLS_BLOCKED = "crawler_urls_blocked_total";
+    public static final String CACHE_HITS = "crawler_proxy_cache_hits_total";
+    public static final String CACHE_MISSES = "crawler_proxy_cache_misses_total";
+    public static final String CACHE_BYTES_SAVED = "crawler_proxy_cache_bytes_saved_total";
+    public static final String CAPTURES = "crawler_page_captures_total";
+    public static final String CAPTURE_BYTES = "crawler_page_capture_bytes_total";
+    public static final String CAPTURE_GRAB_LATENCY = "crawler_page_capture_grab_latency_seconds";
+    public static final String SITE_CONCURRENCY = "crawler_site_concurrency";
+
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @param labels label name and value pairs
+     */
+    public static LatencyHistogram histogram(String name, String... labels) {
+        String key = key(name, labels);
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(key, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @param labels label name and value pairs
+     */
+    public static LongAdder counter(String name, String... labels) {
+        String key = key(name, labels);
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @param labels label name and value pairs
+     * @return a value which is set rather than added to, exported as it is at the time of the export
+     */
+    public static AtomicLong gauge(String name, String... labels) {
+        String key = key(name, labels);
+        AtomicLong gauge = gauges.get(key);
+        if (gauge == null) {
+            AtomicLong created = new AtomicLong();
+            gauge = gauges.putIfAbsent(key, created);
+            if (gauge == null) {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    /**
+     * @param labels label name and value pairs the histograms must have, e.g. "site", "MySite"
+     * @return the total time recorded by the histograms of the metric with these labels, whatever their other labels
+     */
+    public static long getSumNanos(String name, String... labels) {
+        long sum = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (matches(entry.getKey(), name, labels)) {
+                sum += entry.getValue().getSumNanos();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param labels label name and value pairs the histograms must have
+     * @return the number of times recorded by the histograms of the metric with these labels
+     */
+    public static long getCount(String name, String... labels) {
+        long count = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (matches(entry.getKey(), name, labels)) {
+                count += entry.getValue().getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param labels label name and value pairs the counters must have
+     * @return the total of the counters of the metric with these labels, whatever their other labels
+     */
+    public static long getTotal(String name, String... labels) {
+        long total = 0;
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            if (matches(entry.getKey(), name, labels)) {
+                total += entry.getValue().sum();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param labels label name and value pairs the counters must have
+     * @return the totals of the counters of the metric with these labels by value of the label "by", sorted
+     */
+    public static Map<String, Long> getTotals(String name, String by, String... labels) {
+        Map<String, Long> totals = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            String value = labelOf(entry.getKey(), by);
+            if (value != null && matches(entry.getKey(), name, labels)) {
+                Long total = totals.get(value);
+                totals.put(value, (total == null ? 0 : total) + entry.getValue().sum());
+            }
+        }
+        return totals;
+    }
+
+    private static boolean matches(String key, String name, String... labels) {
+        if (!nameOf(key).equals(name)) {
+            return false;
+        }
+        String keyLabels = "," + labelsOf(key) + ",";
+        for (int index = 0; index + 1 < labels.length; index += 2) {
+            if (!keyLabels.contains("," + labels[index] + "=\"" + escape(labels[index + 1]) + "\",")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the (escaped) value of the label in the key, null when the key has no such label
+     */
+    private static String labelOf(String key, String label) {
+        String keyLabels = "," + labelsOf(key);
+        int start = keyLabels.indexOf("," + label + "=\"");
+        if (start == -1) {
+            return null;
+        }
+        start += label.length() + 3;
+        int end = start;
+        while (end < keyLabels.length() && (keyLabels.charAt(end) != '"' || keyLabels.charAt(end - 1) == '\\')) {
+            end++;
+        }
+        return keyLabels.substring(start, end);
+    }
+
+    static String key(String name, String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder key = new StringBuilder(name).append('{');
+        for (int index = 0; index + 1 < labels.length; index += 2) {
+            if (index > 0) {
+                key.append(',');
+            }
+            key.append(labels[index]).append("=\"").append(escape(labels[index + 1])).append('"');
+        }
+        return key.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String nameOf(String key) {
+        int labels = key.indexOf('{');
+        return labels == -1 ? key : key.substring(0, labels);
+    }
+
+    private static String labelsOf(String key) {
+        int labels = key.indexOf('{');
+        return labels == -1 ? "" : key.substring(labels + 1, key.length() - 1);
+    }
+
+    /**
+     * Prometheus text exposition format, histograms are exported as summaries (quantiles in seconds, sum and count)
+     */
+    public static String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        String lastName = null;
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            String name = nameOf(entry.getKey());
+            String labels = labelsOf(entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            if (!name.equals(lastName)) {
+                text.append("# TYPE ").append(name).append(" summary\n");
+                lastName = name;
+            }
+            for (double percentile : PERCENTILES) {
+                text.append(name).append('{').append(labels).append(labels.isEmpty() ? "" : ",")
+                        .append("quantile=\"").append(percentile / 100).append("\"} ")
+                        .append(toSeconds(histogram.getPercentileNanos(percentile))).append('\n');
+            }
+            text.append(name).append('{').append(labels).append(labels.isEmpty() ? "" : ",").append("quantile=\"1.0\"} ")
+                    .append(toSeconds(histogram.getMaxNanos())).append('\n');
+            text.append(name).append("_sum").append(labels.isEmpty() ? "" : "{" + labels + "}").append(' ')
+                    .append(toSeconds(histogram.getSumNanos())).append('\n');
+            text.append(name).append("_count").append(labels.isEmpty() ? "" : "{" + labels + "}").append(' ')
+                    .append(histogram.getCount()).append('\n');
+        }
+        lastName = null;
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            String name = nameOf(entry.getKey());
+            if (!name.equals(lastName)) {
+                text.append("# TYPE ").append(name).append(" counter\n");
+                lastName = name;
+            }
+            text.append(entry.getKey()).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        lastName = null;
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(gauges).entrySet()) {
+            String name = nameOf(entry.getKey());
+            if (!name.equals(lastName)) {
+                text.append("# TYPE ").append(name).append(" gauge\n");
+                lastName = name;
+            }
+            text.append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * JSON snapshot: {"histograms": {key: {count, p50, p90, p99, max, sum}}, "counters": {key: value}, "gauges": {key: value}},
+     * latencies in nano-seconds
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"histograms\": {");
+        String separator = "\n";
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            json.append(separator).append("    \"").append(jsonEscape(entry.getKey())).append("\": {\"count\": ").append(histogram.getCount());
+            for (double percentile : PERCENTILES) {
+                json.append(", \"p").append((int) percentile).append("\": ").append(histogram.getPercentileNanos(percentile));
+            }
+            json.append(", \"max\": ").append(histogram.getMaxNanos()).append(", \"sum\": ").append(histogram.getSumNanos()).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"counters\": {");
+        separator = "\n";
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            json.append(separator).append("    \"").append(jsonEscape(entry.getKey())).append("\": ").append(entry.getValue().sum());
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"gauges\": {");
+        separator = "\n";
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(gauges).entrySet()) {
+            json.append(separator).append("    \"").append(jsonEscape(entry.getKey())).append("\": ").append(entry.getValue().get());
+            separator = ",\n";
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    private static String jsonEscape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String toSeconds(long nanos) {
+        return String.valueOf(nanos / 1e9);
+    }
+
+    /**
+     * Writes metrics.json and metrics.prom to the given directory
+     */
+    public static void export(File directory) {
+        try {
+            directory.mkdirs();
+            Files.write(new File(directory, "metrics.json").toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(directory, "metrics.prom").toPath(), toPrometheus().getBytes(StandardCharsets.UTF_8));
+            log.info(String.format("Exported %d histograms, %d counters and %d gauges to %s", histograms.size(), counters.size(), gauges.size(), directory.getAbsolutePath()));
+        } catch (IOException ioException) {
+            log.log(Level.INFO, "Failed to export the metrics to " + directory, ioException);
+        }
+    }
+
+    /**
+     * Drops every recorded metric, the next run starts from empty histograms
+     */
+    public static void reset() {
+        histograms.clear();
+        counters.clear();
+        gauges.clear();
+    }
+}
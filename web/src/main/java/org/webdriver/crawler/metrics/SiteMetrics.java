@@ -0,0 +1,65 @@
+package org.webdriver.crawler.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Per site view of the {@link Metrics} labelled with the site: the time spent waiting compared with working and
+ * the summary logged when the site ends. The metrics are process wide, a site crawled again in the same process
+ * keeps adding to them.
+ */
+public class SiteMetrics {
+
+    private static final Logger log = Logger.getLogger(SiteMetrics.class.getName());
+
+    private SiteMetrics() {
+    }
+
+    /**
+     * @return time spent waiting: sleeping between element polls, for pages to settle and in the per host limiter
+     */
+    public static long getWaitNanos(String siteName) {
+        return Metrics.getSumNanos(Metrics.ELEMENT_WAIT_SLEEP, "site", siteName) + Metrics.getSumNanos(Metrics.PAGE_SETTLE_LATENCY, "site", siteName)
+                + Metrics.getSumNanos(Metrics.LIMITER_WAIT, "site", siteName);
+    }
+
+    /**
+     * @return time spent working: navigating and evaluating element conditions (finding, reading, clicking)
+     */
+    public static long getWorkNanos(String siteName) {
+        return Metrics.getSumNanos(Metrics.NAVIGATION_LATENCY, "site", siteName) + Metrics.getSumNanos(Metrics.ELEMENT_WAIT_POLL, "site", siteName);
+    }
+
+    public static void logSummary(String siteName) {
+        log.info(String.format("%s: %,d navigations waited %,d Milli-Second in the per host limiter", siteName,
+                Metrics.getCount(Metrics.LIMITER_WAIT, "site", siteName), toMillis(Metrics.getSumNanos(Metrics.LIMITER_WAIT, "site", siteName))));
+        Map<String, Long> blocked = Metrics.getTotals(Metrics.BLOCKED_REQUESTS, "reason", "site", siteName);
+        long proxied = Metrics.getTotal(Metrics.PROXIED_REQUESTS, "site", siteName);
+        if (proxied + Metrics.getTotal(Metrics.BLOCKED_REQUESTS, "site", siteName) > 0) {
+            log.info(String.format("%s: %,d requests blocked %s (%,d bytes known), %,d requests let through (%,d bytes)", siteName,
+                    Metrics.getTotal(Metrics.BLOCKED_REQUESTS, "site", siteName), blocked, Metrics.getTotal(Metrics.BLOCKED_BYTES, "site", siteName),
+                    proxied, Metrics.getTotal(Metrics.PROXIED_BYTES, "site", siteName)));
+        }
+        long hits = Metrics.getTotal(Metrics.CACHE_HITS, "site", siteName);
+        long lookups = hits + Metrics.getTotal(Metrics.CACHE_MISSES, "site", siteName);
+        if (lookups > 0) {
+            log.info(String.format("%s: %,d of %,d cacheable requests answered by the proxy cache (%.0f%% hit rate), %,d bytes saved", siteName,
+                    hits, lookups, hits * 100.0 / lookups, Metrics.getTotal(Metrics.CACHE_BYTES_SAVED, "site", siteName)));
+        }
+        Map<String, Long> captures = Metrics.getTotals(Metrics.CAPTURES, "outcome", "site", siteName);
+        if (!captures.isEmpty()) {
+            log.info(String.format("%s: page captures %s so far, %,d bytes written", siteName, captures, Metrics.getTotal(Metrics.CAPTURE_BYTES, "site", siteName)));
+        }
+        long waitMillis = toMillis(getWaitNanos(siteName));
+        long workMillis = toMillis(getWorkNanos(siteName));
+        log.info(String.format("%s: waited %,d Milli-Second (element polling %,d over %,d waits, page settles %,d, host limiter %,d) and worked %,d Milli-Second (%.0f%% waiting)",
+                siteName, waitMillis, toMillis(Metrics.getSumNanos(Metrics.ELEMENT_WAIT_SLEEP, "site", siteName)), Metrics.getCount(Metrics.ELEMENT_WAIT_SLEEP, "site", siteName),
+                toMillis(Metrics.getSumNanos(Metrics.PAGE_SETTLE_LATENCY, "site", siteName)), toMillis(Metrics.getSumNanos(Metrics.LIMITER_WAIT, "site", siteName)),
+                workMillis, waitMillis + workMillis == 0 ? 0 : waitMillis * 100.0 / (waitMillis + workMillis)));
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,54 @@
+package org.webdriver.crawler.metrics;
+
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.support.ui.Wait;
+
+import java.util.function.Function;
+
+/**
+ * Wraps a {@link Wait} to record how long each wait took, how many times its condition was re-evaluated and
+ * whether it timed out, labelled by the condition class (e.g. wait="HarvestLinks")
+ */
+public class TimedWait<F> implements Wait<F> {
+
+    private final Wait<F> wait;
+
+    public TimedWait(Wait<F> wait) {
+        this.wait = wait;
+    }
+
+    @Override
+    public <T> T until(final Function<? super F, T> isTrue) {
+        String name = nameOf(isTrue);
+        final long[] attempts = {0};
+        long startNanos = System.nanoTime();
+        try {
+            return wait.until(new Function<F, T>() {
+                @Override
+                public T apply(F input) {
+                    attempts[0]++;
+                    return isTrue.apply(input);
+                }
+            });
+        } catch (TimeoutException timeoutException) {
+            Metrics.counter(Metrics.WAIT_TIMEOUTS, "wait", name).increment();
+            throw timeoutException;
+        } finally {
+            Metrics.histogram(Metrics.WAIT_LATENCY, "wait", name).recordSince(startNanos);
+            if (attempts[0] > 1) {
+                Metrics.counter(Metrics.WAIT_RETRIES, "wait", name).add(attempts[0] - 1);
+            }
+        }
+    }
+
+    /**
+     * Anonymous conditions are named after the class declaring them
+     */
+    static String nameOf(Object condition) {
+        Class<?> type = condition.getClass();
+        while (type.isAnonymousClass() && type.getEnclosingClass() != null) {
+            type = type.getEnclosingClass();
+        }
+        return type.getSimpleName();
+    }
+}
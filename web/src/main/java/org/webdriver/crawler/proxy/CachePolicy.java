@@ -0,0 +1,142 @@
+package org.webdriver.crawler.proxy;
+
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.helpers.SiteProperties;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides, following the cache headers of the responses, which http requests the {@link ProxyCache} answers
+ * and for how long a stored response is fresh:
+ * <ul>
+ * <li>only GET requests without Authorization, Range or "Cache-Control: no-store" are looked up</li>
+ * <li>only "200 OK" responses without "no-store", "private", Set-Cookie or a Vary header other than
+ * Accept-Encoding are stored</li>
+ * <li>freshness comes from s-maxage, max-age, then Expires, then 10% of the age since Last-Modified (at most
+ * proxy.cache.heuristic.max.seconds); "no-cache" and responses with only an ETag are revalidated every time</li>
+ * </ul>
+ * Per site properties (see {@link SiteProperties}): proxy.cache - false lets the requests of the site bypass the
+ * cache (default true once the cache is on), proxy.cache.heuristic.max.seconds (default 3600),
+ * proxy.cache.ttl.seconds - freshness given to every storable response whatever its headers say (default 0, the
+ * headers are honored).
+ */
+public class CachePolicy {
+
+    private static final CachePolicy BYPASS = new CachePolicy(false, 0, 0);
+
+    private final boolean enabled;
+    private final long heuristicMaxMillis;
+    private final long forcedTtlMillis;
+
+    public CachePolicy(boolean enabled, long heuristicMaxMillis, long forcedTtlMillis) {
+        this.enabled = enabled;
+        this.heuristicMaxMillis = heuristicMaxMillis;
+        this.forcedTtlMillis = forcedTtlMillis;
+    }
+
+    public static CachePolicy forSite(Site site) {
+        if (!SiteProperties.getBoolean(site, "proxy.cache", true)) {
+            return BYPASS;
+        }
+        return new CachePolicy(true,
+                TimeUnit.SECONDS.toMillis(SiteProperties.getLong(site, "proxy.cache.heuristic.max.seconds", 3600L)),
+                TimeUnit.SECONDS.toMillis(SiteProperties.getLong(site, "proxy.cache.ttl.seconds", 0L)));
+    }
+
+    public static CachePolicy bypass() {
+        return BYPASS;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true when the response of the request may be taken from, and stored in, the cache
+     */
+    public boolean isCacheable(String method, List<String> requestHeaders) {
+        if (!enabled || !"GET".equalsIgnoreCase(method) || ResourceProxy.header(requestHeaders, "Authorization") != null ||
+                ResourceProxy.header(requestHeaders, "Range") != null) {
+            return false;
+        }
+        String cacheControl = ResourceProxy.header(requestHeaders, "Cache-Control");
+        return cacheControl == null || !cacheControl.toLowerCase(Locale.ROOT).contains("no-store");
+    }
+
+    /**
+     * @return the time the response stops being fresh (the current time when it has to be revalidated before
+     * each use), -1 when it must not be stored
+     */
+    public long expiresAt(CachedResponse response, long nowMillis) {
+        if (response.getStatus() != 200) {
+            return -1;
+        }
+        String cacheControl = response.header("Cache-Control");
+        cacheControl = cacheControl == null ? "" : cacheControl.toLowerCase(Locale.ROOT);
+        if (cacheControl.contains("no-store") || cacheControl.contains("private") || response.header("Set-Cookie") != null) {
+            return -1;
+        }
+        String vary = response.header("Vary");
+        if (vary != null && !vary.trim().isEmpty() && !vary.trim().equalsIgnoreCase("Accept-Encoding")) {
+            return -1;
+        }
+        boolean validated = response.header("ETag") != null || response.header("Last-Modified") != null;
+        if (forcedTtlMillis > 0) {
+            return nowMillis + forcedTtlMillis;
+        }
+        if (cacheControl.contains("no-cache")) {
+            return validated ? nowMillis : -1;
+        }
+        Long maxAge = directive(cacheControl, "s-maxage");
+        if (maxAge == null) {
+            maxAge = directive(cacheControl, "max-age");
+        }
+        if (maxAge != null) {
+            return maxAge > 0 || validated ? nowMillis + TimeUnit.SECONDS.toMillis(maxAge) : -1;
+        }
+        Long date = parseDate(response.header("Date"));
+        long originNow = date == null ? nowMillis : date;
+        if (response.header("Expires") != null) {
+            Long expires = parseDate(response.header("Expires"));
+            long lifetime = expires == null ? 0 : expires - originNow;
+            return lifetime > 0 ? nowMillis + lifetime : validated ? nowMillis : -1;
+        }
+        Long lastModified = parseDate(response.header("Last-Modified"));
+        if (lastModified != null) {
+            return nowMillis + Math.max(0, Math.min((originNow - lastModified) / 10, heuristicMaxMillis));
+        }
+        return validated ? nowMillis : -1;
+    }
+
+    private static Long directive(String cacheControl, String name) {
+        int start = cacheControl.indexOf(name + "=");
+        if (start < 0) {
+            return null;
+        }
+        int end = start + name.length() + 1;
+        while (end < cacheControl.length() && Character.isDigit(cacheControl.charAt(end))) {
+            end++;
+        }
+        try {
+            return Long.parseLong(cacheControl.substring(start + name.length() + 1, end));
+        } catch (NumberFormatException numberFormatException) {
+            return null;
+        }
+    }
+
+    private static Long parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException dateTimeParseException) {
+            return null;
+        }
+    }
+}
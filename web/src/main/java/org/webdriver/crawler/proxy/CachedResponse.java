@@ -0,0 +1,88 @@
+package org.webdriver.crawler.proxy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An http response as the origin sent it (status line, headers and body), kept by the {@link ProxyCache}
+ * until its freshness lifetime ends, after which it is revalidated with its validators (ETag, Last-Modified).
+ */
+public class CachedResponse {
+
+    private final byte[] bytes;
+    private final int status;
+    private final List<String> headers;
+    private final long expiresMillis;
+
+    private CachedResponse(byte[] bytes, int status, List<String> headers, long expiresMillis) {
+        this.bytes = bytes;
+        this.status = status;
+        this.headers = headers;
+        this.expiresMillis = expiresMillis;
+    }
+
+    /**
+     * @param bytes the response, at least its status line and headers
+     * @return the parsed response, null when the bytes do not hold a complete http response head
+     */
+    public static CachedResponse parse(byte[] bytes) {
+        int end = -1;
+        for (int index = 0; index + 3 < bytes.length; index++) {
+            if (bytes[index] == '\r' && bytes[index + 1] == '\n' && bytes[index + 2] == '\r' && bytes[index + 3] == '\n') {
+                end = index;
+                break;
+            }
+        }
+        if (end < 0) {
+            return null;
+        }
+        String[] lines = new String(bytes, 0, end, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] statusLine = lines[0].split(" ");
+        if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/")) {
+            return null;
+        }
+        int status;
+        try {
+            status = Integer.parseInt(statusLine[1]);
+        } catch (NumberFormatException numberFormatException) {
+            return null;
+        }
+        List<String> headers = new ArrayList<>(lines.length);
+        for (int index = 1; index < lines.length; index++) {
+            headers.add(lines[index]);
+        }
+        return new CachedResponse(bytes, status, headers, 0);
+    }
+
+    public CachedResponse withExpiry(long expiresMillis) {
+        return new CachedResponse(bytes, status, headers, expiresMillis);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the value of the first header of that name, null when there is none
+     */
+    public String header(String name) {
+        return ResourceProxy.header(headers, name);
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int size() {
+        return bytes.length;
+    }
+
+    public long getExpiresMillis() {
+        return expiresMillis;
+    }
+
+    public boolean isFresh(long nowMillis) {
+        return nowMillis < expiresMillis;
+    }
+}
@@ -0,0 +1,263 @@
+package org.webdriver.crawler.proxy;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Http response cache shared by the {@link ResourceProxy} of every WebDriver session of the process, so the static
+ * assets downloaded by one session (or site, or path reset) are not downloaded again by the next one. It has a
+ * bounded memory tier and a bounded disk tier, both evicting the least recently used responses; a response evicted
+ * from memory stays on disk, and the disk tier is kept between runs. {@link CachePolicy} decides what is stored and
+ * for how long.
+ * <p>
+ * System properties: proxy.cache (false, true routes the sessions through their proxy and turns the cache on),
+ * proxy.cache.memory.mb (64), proxy.cache.disk.mb (512, 0 for no disk tier), proxy.cache.directory
+ * (target/proxy-cache), proxy.cache.max.entry.kb - largest response stored (4096).
+ */
+public class ProxyCache {
+
+    private static final Logger log = Logger.getLogger(ProxyCache.class.getName());
+    private static final String SUFFIX = ".response";
+
+    private static ProxyCache shared;
+
+    private final long memoryLimit;
+    private final long diskLimit;
+    private final int maxEntryBytes;
+    private final File directory;
+
+    private final LinkedHashMap<String, CachedResponse> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    public ProxyCache(long memoryLimit, long diskLimit, int maxEntryBytes, File directory) {
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+        this.maxEntryBytes = maxEntryBytes;
+        this.directory = directory;
+        if (diskLimit > 0) {
+            loadIndex();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("proxy.cache");
+    }
+
+    /**
+     * @return the cache of the process, created on first use
+     */
+    public static synchronized ProxyCache shared() {
+        if (shared == null) {
+            shared = new ProxyCache(Long.getLong("proxy.cache.memory.mb", 64L) * 1024 * 1024,
+                    Long.getLong("proxy.cache.disk.mb", 512L) * 1024 * 1024,
+                    Integer.getInteger("proxy.cache.max.entry.kb", 4096) * 1024,
+                    new File(System.getProperty("proxy.cache.directory", "target/proxy-cache")));
+        }
+        return shared;
+    }
+
+    /**
+     * Logs the size of the cache of the process, when it was used
+     */
+    public static synchronized void logSummary() {
+        if (shared != null) {
+            log.info(shared.getSummary());
+        }
+    }
+
+    /**
+     * @return the cache key of a request, the encodings accepted are part of it since the stored body is encoded
+     */
+    public static String key(String url, String acceptEncoding) {
+        return url + '\n' + (acceptEncoding == null ? "" : acceptEncoding.trim());
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * @return the stored response, fresh or not, null when there is none
+     */
+    public CachedResponse get(String key) {
+        File file;
+        synchronized (this) {
+            CachedResponse response = memory.get(key);
+            if (response != null) {
+                // a response served from memory is recently used on disk too, so the disk tier does not evict it first
+                disk.get(key);
+                return response;
+            }
+            if (disk.get(key) == null) {
+                return null;
+            }
+            file = fileOf(key);
+        }
+        CachedResponse response = read(file);
+        synchronized (this) {
+            if (response == null) {
+                Long size = disk.remove(key);
+                diskBytes -= size == null ? 0 : size;
+                return null;
+            }
+            putInMemory(key, response);
+        }
+        return response;
+    }
+
+    public void put(String key, CachedResponse response) {
+        if (response.size() > maxEntryBytes) {
+            return;
+        }
+        synchronized (this) {
+            putInMemory(key, response);
+        }
+        if (diskLimit <= 0) {
+            return;
+        }
+        File file = fileOf(key);
+        long size;
+        try {
+            size = write(file, key, response);
+        } catch (IOException ioException) {
+            log.log(Level.FINE, "Failed to store a response in " + directory, ioException);
+            return;
+        }
+        synchronized (this) {
+            Long previous = disk.put(key, size);
+            diskBytes += size - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+            while (diskBytes > diskLimit && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                fileOf(entry.getKey()).delete();
+                diskBytes -= entry.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void putInMemory(String key, CachedResponse response) {
+        CachedResponse previous = memory.put(key, response);
+        memoryBytes += response.size() - (previous == null ? 0 : previous.size());
+        Iterator<Map.Entry<String, CachedResponse>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > memoryLimit && eldest.hasNext()) {
+            Map.Entry<String, CachedResponse> entry = eldest.next();
+            memoryBytes -= entry.getValue().size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * A file holds the expiry time on its first line and the key (tab separated) on its second line, so the index
+     * can be rebuilt when the cache is reopened, then the response
+     */
+    private static long write(File file, String key, CachedResponse response) throws IOException {
+        file.getParentFile().mkdirs();
+        File temporary = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try (OutputStream output = Files.newOutputStream(temporary.toPath())) {
+            output.write((response.getExpiresMillis() + "\n" + key.replace('\n', '\t') + "\n").getBytes(StandardCharsets.UTF_8));
+            output.write(response.getBytes());
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file.length();
+    }
+
+    private static CachedResponse read(File file) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException ioException) {
+            return null;
+        }
+        int firstLine = indexOf(bytes, 0);
+        int secondLine = indexOf(bytes, firstLine + 1);
+        try {
+            long expiresMillis = Long.parseLong(new String(bytes, 0, firstLine, StandardCharsets.ISO_8859_1));
+            CachedResponse response = CachedResponse.parse(Arrays.copyOfRange(bytes, secondLine + 1, bytes.length));
+            return response == null ? null : response.withExpiry(expiresMillis);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException exception) {
+            return null;
+        }
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        int index = from;
+        while (index < bytes.length && bytes[index] != '\n') {
+            index++;
+        }
+        return index;
+    }
+
+    private File fileOf(String key) {
+        return new File(directory, digest(key) + SUFFIX);
+    }
+
+    /**
+     * Rebuilds the index of the responses stored by an earlier run, the least recently modified first
+     */
+    private void loadIndex() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (!file.getName().endsWith(SUFFIX)) {
+                continue;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+                reader.readLine();
+                String key = reader.readLine();
+                if (key != null && fileOf(key.replace('\t', '\n')).equals(file)) {
+                    disk.put(key.replace('\t', '\n'), file.length());
+                    diskBytes += file.length();
+                }
+            } catch (IOException ioException) {
+                log.log(Level.FINE, "Ignoring unreadable cache entry " + file, ioException);
+            }
+        }
+        log.info(String.format("Proxy cache: %,d responses (%,d bytes) reused from %s", disk.size(), diskBytes, directory));
+    }
+
+    private static String digest(String key) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte value : MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", value));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+            throw new IllegalStateException(noSuchAlgorithmException);
+        }
+    }
+
+    public synchronized String getSummary() {
+        return String.format("Proxy cache: %,d responses (%,d bytes) in memory, %,d responses (%,d bytes) on disk in %s",
+                memory.size(), memoryBytes, disk.size(), diskBytes, directory);
+    }
+}
@@ -0,0 +1,247 @@
+package org.webdriver.crawler.proxy;
+
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.helpers.SiteProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.logging.Logger;
+
+/**
+ * Decides which requests of a page the crawl does without: a crawl only needs the DOM and the links, so images,
+ * media and fonts, and the requests to known tracker hosts, are blocked.
+ * <p>
+ * Per site properties (see {@link SiteProperties}):
+ * <ul>
+ * <li>resource.block - false lets every request of the site through (default true once the proxy is on)</li>
+ * <li>resource.block.types - comma separated resource types among image, media, font, stylesheet, script
+ * (default image,media,font)</li>
+ * <li>resource.block.hosts - comma separated hosts blocked with their sub-domains (default: common analytics
+ * and advertising hosts), "+host" adds to the default list</li>
+ * <li>resource.block.patterns - comma separated regular expressions blocking the urls they find</li>
+ * </ul>
+ * The proxy only sees the host of https requests, so {@link #httpsUrlPatterns()} gives the type and pattern rules
+ * to the browser as DevTools url patterns.
+ */
+public class ResourceFilter {
+
+    private static final Logger log = Logger.getLogger(ResourceFilter.class.getName());
+
+    static final String DEFAULT_TYPES = "image,media,font";
+    static final String DEFAULT_HOSTS = "google-analytics.com,googletagmanager.com,doubleclick.net,googlesyndication.com,"
+            + "googleadservices.com,facebook.net,hotjar.com,scorecardresearch.com,quantserve.com,adnxs.com,criteo.com,"
+            + "taboola.com,outbrain.com,segment.io,mixpanel.com,newrelic.com,nr-data.net";
+
+    private static final Map<String, List<String>> EXTENSIONS = new LinkedHashMap<>();
+
+    static {
+        EXTENSIONS.put("image", Arrays.asList("png", "jpg", "jpeg", "gif", "webp", "svg", "ico", "bmp", "avif"));
+        EXTENSIONS.put("media", Arrays.asList("mp4", "webm", "ogg", "ogv", "mp3", "wav", "m4a", "m4v", "mov", "m3u8"));
+        EXTENSIONS.put("font", Arrays.asList("woff", "woff2", "ttf", "otf", "eot"));
+        EXTENSIONS.put("stylesheet", Collections.singletonList("css"));
+        EXTENSIONS.put("script", Arrays.asList("js", "mjs"));
+    }
+
+    private static final ResourceFilter PASS_ALL = new ResourceFilter(Collections.<String>emptySet(), Collections.<String>emptySet(),
+            Collections.<Pattern>emptyList());
+
+    private final Set<String> types;
+    private final Set<String> hosts;
+    private final List<Pattern> patterns;
+
+    public ResourceFilter(Set<String> types, Set<String> hosts, List<Pattern> patterns) {
+        this.types = types;
+        this.hosts = hosts;
+        this.patterns = patterns;
+    }
+
+    /**
+     * @return the filter letting every request through
+     */
+    public static ResourceFilter passAll() {
+        return PASS_ALL;
+    }
+
+    public static ResourceFilter forSite(Site site) {
+        if (!SiteProperties.getBoolean(site, "resource.block", true)) {
+            return PASS_ALL;
+        }
+        Set<String> hosts = new HashSet<>();
+        String configuredHosts = SiteProperties.getString(site, "resource.block.hosts", DEFAULT_HOSTS);
+        if (configuredHosts.startsWith("+")) {
+            hosts.addAll(split(DEFAULT_HOSTS));
+            configuredHosts = configuredHosts.substring(1);
+        }
+        hosts.addAll(split(configuredHosts));
+        List<Pattern> patterns = new ArrayList<>();
+        for (String pattern : split(SiteProperties.getString(site, "resource.block.patterns", ""))) {
+            try {
+                patterns.add(Pattern.compile(pattern));
+            } catch (PatternSyntaxException patternSyntaxException) {
+                log.info("Ignoring the invalid resource.block.patterns entry " + pattern + ": " + patternSyntaxException.getDescription());
+            }
+        }
+        return new ResourceFilter(new HashSet<>(split(SiteProperties.getString(site, "resource.block.types", DEFAULT_TYPES))), hosts, patterns);
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                values.add(item.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return why the request is blocked ("host", "pattern" or its resource type), null to let it through
+     */
+    public String blockReason(String url, String host, String accept) {
+        String reason = blockHost(host);
+        if (reason != null) {
+            return reason;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(url).find()) {
+                return "pattern";
+            }
+        }
+        String type = resourceType(url, accept);
+        return type != null && types.contains(type) ? type : null;
+    }
+
+    /**
+     * Only the host is known for tunnelled (https) requests
+     * @return "host" when the host or one of its parent domains is blocked, null otherwise
+     */
+    public String blockHost(String host) {
+        if (host == null || hosts.isEmpty()) {
+            return null;
+        }
+        String domain = host.toLowerCase(Locale.ROOT);
+        while (true) {
+            if (hosts.contains(domain)) {
+                return "host";
+            }
+            int dot = domain.indexOf('.');
+            if (dot < 0) {
+                return null;
+            }
+            domain = domain.substring(dot + 1);
+        }
+    }
+
+    /**
+     * The https requests blocked by type or pattern, as Network.setBlockedURLs url patterns ("*" matching any
+     * characters): "https://*.png" and "https://*.png?*" for every extension of the blocked types, and the
+     * resource.block.patterns made of plain text and ".*" (a lone "." is taken as a dot), the others can not be
+     * given to the browser. Types guessed from the Accept header only are not blocked this way.
+     * @return the url patterns, empty when nothing is blocked by type or pattern
+     */
+    public List<String> httpsUrlPatterns() {
+        List<String> urls = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : EXTENSIONS.entrySet()) {
+            if (types.contains(entry.getKey())) {
+                for (String extension : entry.getValue()) {
+                    urls.add("https://*." + extension);
+                    urls.add("https://*." + extension + "?*");
+                }
+            }
+        }
+        for (Pattern pattern : patterns) {
+            String wildcard = toWildcard(pattern.pattern());
+            if (wildcard == null) {
+                log.fine("The resource.block.patterns entry " + pattern + " only applies to http requests");
+            } else if (wildcard.startsWith("https:") || wildcard.startsWith("*")) {
+                urls.add(wildcard.startsWith("*") ? "https://" + wildcard : wildcard);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * @return the url pattern finding what the regular expression finds, null when it uses other constructs
+     * than plain or escaped characters, ".*" and the ^ and $ anchors
+     */
+    static String toWildcard(String regex) {
+        boolean anchoredStart = regex.startsWith("^");
+        boolean anchoredEnd = regex.endsWith("$") && !regex.endsWith("\\$");
+        String body = regex.substring(anchoredStart ? 1 : 0, Math.max(anchoredStart ? 1 : 0, regex.length() - (anchoredEnd ? 1 : 0)));
+        StringBuilder wildcard = new StringBuilder(anchoredStart ? "" : "*");
+        for (int index = 0; index < body.length(); index++) {
+            char character = body.charAt(index);
+            if (character == '\\') {
+                char escaped = index + 1 < body.length() ? body.charAt(++index) : 'a';
+                if (Character.isLetterOrDigit(escaped) || escaped == '*') {
+                    return null;
+                }
+                wildcard.append(escaped);
+            } else if (character == '.' && index + 1 < body.length() && body.charAt(index + 1) == '*') {
+                wildcard.append('*');
+                index++;
+            } else if (character == '.') {
+                wildcard.append('.');
+            } else if ("[](){}|?+*^$".indexOf(character) >= 0) {
+                return null;
+            } else {
+                wildcard.append(character);
+            }
+        }
+        if (!anchoredEnd && wildcard.charAt(wildcard.length() - 1) != '*') {
+            wildcard.append('*');
+        }
+        return wildcard.toString();
+    }
+
+    /**
+     * @return the resource type guessed from the url extension, else from the Accept header, null when unknown
+     */
+    static String resourceType(String url, String accept) {
+        String path = url.toLowerCase(Locale.ROOT);
+        int end = path.length();
+        for (char separator : new char[]{'?', '#'}) {
+            int index = path.indexOf(separator);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        path = path.substring(0, end);
+        String extension = path.lastIndexOf('.') > path.lastIndexOf('/') ? path.substring(path.lastIndexOf('.') + 1) : "";
+        for (Map.Entry<String, List<String>> entry : EXTENSIONS.entrySet()) {
+            if (entry.getValue().contains(extension)) {
+                return entry.getKey();
+            }
+        }
+        if (accept != null) {
+            String lowerAccept = accept.toLowerCase(Locale.ROOT);
+            if (lowerAccept.startsWith("image/")) {
+                return "image";
+            }
+            if (lowerAccept.startsWith("video/") || lowerAccept.startsWith("audio/")) {
+                return "media";
+            }
+            if (lowerAccept.startsWith("font/") || lowerAccept.contains("application/font")) {
+                return "font";
+            }
+            if (lowerAccept.startsWith("text/css")) {
+                return "stylesheet";
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "types " + types + ", " + hosts.size() + " hosts, " + patterns.size() + " patterns";
+    }
+}
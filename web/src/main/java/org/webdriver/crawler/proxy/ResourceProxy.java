@@ -0,0 +1,481 @@
+package org.webdriver.crawler.proxy;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.Proxy;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+import org.webdriver.crawler.Site;
+import org.webdriver.crawler.WebCrawlerDriver;
+import org.webdriver.crawler.metrics.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local intercepting proxy of one WebDriver session: the requests of the pages go through it and the ones the
+ * {@link ResourceFilter} of the site being crawled blocks are answered at once ("204 No Content" for http,
+ * "403 Forbidden" for the tunnel of a blocked https host), the others are forwarded. Every request is counted in
+ * the {@link Metrics} of the site.
+ * <p>
+ * Only the host of https requests is known (the proxy does not decrypt them), so the type and pattern rules apply
+ * to http requests here; in Chrome sessions the {@link WebCrawlerDriver} hands them to the browser for https
+ * requests (see {@link ResourceFilter#httpsUrlPatterns()}), which blocks those without the proxy counting them. With
+ * "resource.block.measure" the size of the blocked http resources is read with a HEAD request in the background. System properties: resource.block (false, true routes the sessions through their proxy),
+ * resource.proxy.timeout.millis (30000), resource.block.measure (false).
+ * <p>
+ * The proxy listens on the loopback address, which only a browser on the same machine reaches. For remote
+ * sessions (webdriver.remote.server) it is only used when proxy.advertised.host names this machine as the remote
+ * browsers reach it; proxy.bind.address (default loopback) then selects the interface it listens on.
+ * <p>
+ * With proxy.cache the http GET requests the {@link CachePolicy} of the site allows are answered from the
+ * {@link ProxyCache} shared by all the sessions while fresh, revalidated with the origin once stale, and the
+ * responses stored as they are forwarded. Hits and bytes saved are counted in the metrics of the site. https
+ * requests are tunnelled, so they are not cached.
+ */
+public class ResourceProxy implements Closeable {
+
+    private static final Logger log = Logger.getLogger(ResourceProxy.class.getName());
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("resource.proxy.timeout.millis", 30000);
+    private static final boolean MEASURE_BLOCKED = Boolean.getBoolean("resource.block.measure");
+    private static final boolean BLOCKING = Boolean.getBoolean("resource.block");
+    private static final String BIND_ADDRESS = System.getProperty("proxy.bind.address");
+    private static final String ADVERTISED_HOST = System.getProperty("proxy.advertised.host");
+    private static volatile boolean remoteSkipLogged;
+    private static final byte[] NO_CONTENT = "HTTP/1.1 204 No Content\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] FORBIDDEN = "HTTP/1.1 403 Forbidden\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] BAD_GATEWAY = "HTTP/1.1 502 Bad Gateway\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] ESTABLISHED = "HTTP/1.1 200 Connection Established\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final ExecutorService connections = Executors.newCachedThreadPool(daemonThreads("resource-proxy"));
+    private static final ExecutorService measures = new ThreadPoolExecutor(1, 2, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(1000), daemonThreads("resource-measure"), new ThreadPoolExecutor.DiscardPolicy());
+
+    private final ServerSocket serverSocket;
+    private final ProxyCache cache = ProxyCache.isEnabled() ? ProxyCache.shared() : null;
+    private volatile Site site;
+    private volatile ResourceFilter filter = BLOCKING ? ResourceFilter.forSite(null) : ResourceFilter.passAll();
+    private volatile CachePolicy cachePolicy = cache != null ? CachePolicy.forSite(null) : CachePolicy.bypass();
+
+    public ResourceProxy() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(BIND_ADDRESS == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(BIND_ADDRESS), 0));
+        connections.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+    }
+
+    public static boolean isEnabled() {
+        return BLOCKING || ProxyCache.isEnabled();
+    }
+
+    /**
+     * @param remote true for a session of a remote browser (Selenium Grid)
+     * @return true when the session goes through a proxy: always for a local browser when enabled, for a remote
+     * browser only when proxy.advertised.host tells where it reaches this machine
+     */
+    public static boolean isEnabled(boolean remote) {
+        if (!isEnabled()) {
+            return false;
+        }
+        if (remote && ADVERTISED_HOST == null) {
+            if (!remoteSkipLogged) {
+                remoteSkipLogged = true;
+                log.info("Remote sessions do not go through the resource proxy, their browsers can not reach its loopback address: set proxy.advertised.host (and proxy.bind.address)");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the capabilities routing the session through this proxy (at proxy.advertised.host, default
+     * 127.0.0.1), loopback hosts included
+     */
+    public Capabilities configure(Capabilities capabilities) {
+        String address = (ADVERTISED_HOST == null ? "127.0.0.1" : ADVERTISED_HOST) + ":" + getPort();
+        Proxy proxy = new Proxy();
+        proxy.setHttpProxy(address);
+        proxy.setSslProxy(address);
+        MutableCapabilities configured;
+        if (BrowserType.CHROME.equalsIgnoreCase(capabilities.getBrowserName())) {
+            ChromeOptions chromeOptions = WebCrawlerDriver.toChromeOptions(capabilities);
+            chromeOptions.addArguments("proxy-bypass-list=<-loopback>");
+            configured = chromeOptions;
+        } else {
+            configured = new MutableCapabilities(capabilities);
+        }
+        configured.setCapability(CapabilityType.PROXY, proxy);
+        return configured;
+    }
+
+    /**
+     * Requests are accounted to, and filtered and cached with the rules of, the site the session crawls
+     */
+    public void setSite(Site site) {
+        this.site = site;
+        this.filter = BLOCKING ? ResourceFilter.forSite(site) : ResourceFilter.passAll();
+        this.cachePolicy = cache != null ? CachePolicy.forSite(site) : CachePolicy.bypass();
+    }
+
+    /**
+     * @return the rules of the site the session crawls
+     */
+    public ResourceFilter getFilter() {
+        return filter;
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket client = serverSocket.accept();
+                connections.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            handle(client);
+                        } catch (IOException ioException) {
+                            log.log(Level.FINE, "Proxy connection failed", ioException);
+                        } finally {
+                            closeQuietly(client);
+                        }
+                    }
+                });
+            } catch (IOException ioException) {
+                if (!serverSocket.isClosed()) {
+                    log.log(Level.INFO, "Resource proxy failed to accept a connection", ioException);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket client) throws IOException {
+        client.setSoTimeout(TIMEOUT_MILLIS);
+        InputStream input = new BufferedInputStream(client.getInputStream());
+        OutputStream output = client.getOutputStream();
+        String requestLine = readLine(input);
+        if (requestLine == null || requestLine.isEmpty()) {
+            return;
+        }
+        List<String> headers = new ArrayList<>();
+        for (String header = readLine(input); header != null && !header.isEmpty(); header = readLine(input)) {
+            headers.add(header);
+        }
+        String[] request = requestLine.split(" ");
+        if (request.length < 3) {
+            output.write(BAD_GATEWAY);
+            return;
+        }
+        Site currentSite = site;
+        ResourceFilter currentFilter = filter;
+        if ("CONNECT".equalsIgnoreCase(request[0])) {
+            tunnel(request[1], client, input, output, currentSite, currentFilter);
+        } else {
+            forward(request[0], request[1], headers, input, output, currentSite, currentFilter, cachePolicy);
+        }
+    }
+
+    private void tunnel(String authority, Socket client, InputStream input, OutputStream output, Site currentSite, ResourceFilter currentFilter) throws IOException {
+        int colon = authority.lastIndexOf(':');
+        String host = colon < 0 ? authority : authority.substring(0, colon);
+        int port = colon < 0 ? 443 : Integer.parseInt(authority.substring(colon + 1));
+        String reason = currentFilter.blockHost(host);
+        if (reason != null) {
+            output.write(FORBIDDEN);
+            accountBlocked(currentSite, reason);
+            return;
+        }
+        Socket connected;
+        try {
+            connected = connect(host, port);
+        } catch (IOException ioException) {
+            output.write(BAD_GATEWAY);
+            throw ioException;
+        }
+        try (Socket origin = connected) {
+            output.write(ESTABLISHED);
+            output.flush();
+            client.setSoTimeout(0);
+            origin.setSoTimeout(0);
+            final InputStream clientInput = input;
+            final OutputStream originOutput = origin.getOutputStream();
+            final Socket originSocket = origin;
+            connections.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        copy(clientInput, originOutput);
+                        originSocket.shutdownOutput();
+                    } catch (IOException ioException) {
+                        closeQuietly(originSocket);
+                    }
+                }
+            });
+            accountProxied(currentSite, copy(origin.getInputStream(), output));
+        }
+    }
+
+    private void forward(String method, String target, List<String> headers, InputStream input, OutputStream output,
+                         Site currentSite, ResourceFilter currentFilter, CachePolicy currentPolicy) throws IOException {
+        URL url;
+        try {
+            url = new URL(target);
+        } catch (MalformedURLException malformedURLException) {
+            output.write(BAD_GATEWAY);
+            return;
+        }
+        String reason = currentFilter.blockReason(target, url.getHost(), header(headers, "Accept"));
+        if (reason != null) {
+            output.write(NO_CONTENT);
+            accountBlocked(currentSite, reason);
+            if (MEASURE_BLOCKED && "GET".equalsIgnoreCase(method)) {
+                measure(url, currentSite);
+            }
+            return;
+        }
+        String key = currentPolicy.isCacheable(method, headers) ? ProxyCache.key(target, header(headers, "Accept-Encoding")) : null;
+        CachedResponse cached = key == null ? null : cache.get(key);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            output.write(cached.getBytes());
+            accountCacheLookup(currentSite, true, cached.size());
+            return;
+        }
+        Socket origin;
+        try {
+            origin = connect(url.getHost(), url.getPort() < 0 ? url.getDefaultPort() : url.getPort());
+        } catch (IOException ioException) {
+            output.write(BAD_GATEWAY);
+            throw ioException;
+        }
+        try {
+            StringBuilder request = new StringBuilder(method).append(' ').append(url.getFile().isEmpty() ? "/" : url.getFile()).append(" HTTP/1.1\r\n");
+            for (String header : headers) {
+                String name = header.substring(0, Math.max(0, header.indexOf(':'))).trim().toLowerCase(Locale.ROOT);
+                if (!name.equals("connection") && !name.equals("proxy-connection") && !name.equals("keep-alive")) {
+                    request.append(header).append("\r\n");
+                }
+            }
+            if (cached != null) {
+                appendValidators(request, headers, cached);
+            }
+            request.append("Connection: close\r\n\r\n");
+            OutputStream originOutput = origin.getOutputStream();
+            originOutput.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+            String contentLength = header(headers, "Content-Length");
+            if (contentLength != null) {
+                copy(input, originOutput, Long.parseLong(contentLength.trim()));
+            }
+            originOutput.flush();
+            if (key == null) {
+                accountProxied(currentSite, copy(origin.getInputStream(), output));
+            } else {
+                forwardCached(key, cached, origin.getInputStream(), output, currentSite, currentPolicy);
+            }
+        } finally {
+            closeQuietly(origin);
+        }
+    }
+
+    /**
+     * Revalidates a stale response with its validators, unless the browser sent its own
+     */
+    private static void appendValidators(StringBuilder request, List<String> headers, CachedResponse cached) {
+        if (header(headers, "If-None-Match") != null || header(headers, "If-Modified-Since") != null) {
+            return;
+        }
+        if (cached.header("ETag") != null) {
+            request.append("If-None-Match: ").append(cached.header("ETag")).append("\r\n");
+        }
+        if (cached.header("Last-Modified") != null) {
+            request.append("If-Modified-Since: ").append(cached.header("Last-Modified")).append("\r\n");
+        }
+    }
+
+    /**
+     * Reads the response of a cacheable request (the origin closes the connection after it) up to the largest size
+     * stored: a "304 Not Modified" for a stale response answers with the stored one, a storable response is stored
+     * once forwarded, a larger one is streamed through
+     */
+    private void forwardCached(String key, CachedResponse cached, InputStream originInput, OutputStream output, Site currentSite,
+                               CachePolicy currentPolicy) throws IOException {
+        ByteArrayOutputStream buffered = new ByteArrayOutputStream(16384);
+        long limit = cache.getMaxEntryBytes() + 1L;
+        copy(originInput, buffered, limit);
+        byte[] bytes = buffered.toByteArray();
+        boolean complete = bytes.length < limit;
+        CachedResponse response = complete ? CachedResponse.parse(bytes) : null;
+        long now = System.currentTimeMillis();
+        if (cached != null && response != null && response.getStatus() == 304) {
+            output.write(cached.getBytes());
+            long expiresMillis = currentPolicy.expiresAt(cached, now);
+            if (expiresMillis >= 0) {
+                cache.put(key, cached.withExpiry(expiresMillis));
+            }
+            accountProxied(currentSite, bytes.length);
+            accountCacheLookup(currentSite, true, Math.max(0, cached.size() - bytes.length));
+            return;
+        }
+        output.write(bytes);
+        long forwarded = bytes.length + (complete ? 0 : copy(originInput, output));
+        accountProxied(currentSite, forwarded);
+        accountCacheLookup(currentSite, false, 0);
+        if (response != null) {
+            long expiresMillis = currentPolicy.expiresAt(response, now);
+            if (expiresMillis >= 0) {
+                cache.put(key, response.withExpiry(expiresMillis));
+            }
+        }
+    }
+
+    private static Socket connect(String host, int port) throws IOException {
+        Socket origin = new Socket();
+        origin.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+        origin.setSoTimeout(TIMEOUT_MILLIS);
+        return origin;
+    }
+
+    /**
+     * Reads the size of a blocked resource, so the savings are known, without downloading it
+     */
+    private static void measure(final URL url, final Site currentSite) {
+        measures.execute(new Runnable() {
+            @Override
+            public void run() {
+                HttpURLConnection connection = null;
+                try {
+                    connection = (HttpURLConnection) url.openConnection(java.net.Proxy.NO_PROXY);
+                    connection.setRequestMethod("HEAD");
+                    connection.setConnectTimeout(TIMEOUT_MILLIS);
+                    connection.setReadTimeout(TIMEOUT_MILLIS);
+                    long length = connection.getContentLengthLong();
+                    if (length > 0 && currentSite != null) {
+                        Metrics.counter(Metrics.BLOCKED_BYTES, "site", currentSite.getSiteName()).add(length);
+                    }
+                } catch (IOException ioException) {
+                    log.log(Level.FINE, "Failed to measure " + url, ioException);
+                } finally {
+                    if (connection != null) {
+                        connection.disconnect();
+                    }
+                }
+            }
+        });
+    }
+
+    private static void accountBlocked(Site currentSite, String reason) {
+        String siteName = currentSite == null ? "" : currentSite.getSiteName();
+        Metrics.counter(Metrics.BLOCKED_REQUESTS, "site", siteName, "reason", reason).increment();
+    }
+
+    private static void accountProxied(Site currentSite, long bytes) {
+        String siteName = currentSite == null ? "" : currentSite.getSiteName();
+        Metrics.counter(Metrics.PROXIED_REQUESTS, "site", siteName).increment();
+        Metrics.counter(Metrics.PROXIED_BYTES, "site", siteName).add(bytes);
+    }
+
+    private static void accountCacheLookup(Site currentSite, boolean hit, long bytesSaved) {
+        String siteName = currentSite == null ? "" : currentSite.getSiteName();
+        Metrics.counter(hit ? Metrics.CACHE_HITS : Metrics.CACHE_MISSES, "site", siteName).increment();
+        if (hit) {
+            Metrics.counter(Metrics.CACHE_BYTES_SAVED, "site", siteName).add(bytesSaved);
+        }
+    }
+
+    static String header(List<String> headers, String name) {
+        for (String header : headers) {
+            int colon = header.indexOf(':');
+            if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return header.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int read;
+        while ((read = input.read()) >= 0 && read != '\n') {
+            if (read != '\r') {
+                line.write(read);
+            }
+        }
+        return read < 0 && line.size() == 0 ? null : new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static long copy(InputStream input, OutputStream output) throws IOException {
+        return copy(input, output, Long.MAX_VALUE);
+    }
+
+    private static long copy(InputStream input, OutputStream output, long limit) throws IOException {
+        byte[] buffer = new byte[16384];
+        long copied = 0;
+        try {
+            int read;
+            while (copied < limit && (read = input.read(buffer, 0, (int) Math.min(buffer.length, limit - copied))) >= 0) {
+                output.write(buffer, 0, read);
+                output.flush();
+                copied += read;
+            }
+        } catch (SocketException socketException) {
+            log.log(Level.FINE, "Proxy connection closed", socketException);
+        }
+        return copied;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(serverSocket);
+    }
+}
@@ -0,0 +1,176 @@
+package org.webdriver.crawler.results;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single writer of a results file: sites submit their {@link SiteResult} to an in-process queue and return
+ * immediately, one background thread drains the queue and appends each batch to the file under a
+ * {@link FileChannel} lock, so JVMs crawling in parallel can share the file.
+ * <p>
+ * The file is only appended to, as a properties file the last value of a key wins, so a site crawled again
+ * overrides its previous results without the file being read and rewritten.
+ * Results still queued when the JVM exits are written by a shutdown hook.
+ */
+public class ResultsSink {
+
+    private static final Logger log = Logger.getLogger(ResultsSink.class.getName());
+
+    private static final long CLOSE_WAIT_SECONDS = 30;
+    private static final SiteResult END = SiteResult.durationOnly("", "");
+
+    private static final ConcurrentMap<String, ResultsSink> sinks = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("results-sink-shutdown") {
+            @Override
+            public void run() {
+                closeAll();
+            }
+        });
+    }
+
+    private final File file;
+    private final BlockingQueue<SiteResult> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    ResultsSink(File file) {
+        this.file = file;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainQueue();
+            }
+        }, "results-writer-" + file.getName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return the sink of the given results file, all the sites writing the same file share it
+     */
+    public static ResultsSink forFile(String outputFile) {
+        File file = new File(outputFile).getAbsoluteFile();
+        String key = file.getPath();
+        ResultsSink sink = sinks.get(key);
+        if (sink == null) {
+            synchronized (sinks) {
+                sink = sinks.get(key);
+                if (sink == null) {
+                    sink = new ResultsSink(file);
+                    sinks.put(key, sink);
+                }
+            }
+        }
+        return sink;
+    }
+
+    /**
+     * Queues the result, it is written by the writer thread
+     */
+    public void submit(SiteResult result) {
+        if (closed) {
+            log.info("Results sink of " + file + " is closed, result not written: " + result);
+            return;
+        }
+        queue.offer(result);
+    }
+
+    private void drainQueue() {
+        List<SiteResult> batch = new ArrayList<>();
+        boolean end = false;
+        while (!end) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException interruptedException) {
+                end = true;
+            }
+            queue.drainTo(batch);
+            end |= batch.remove(END);
+            if (!batch.isEmpty()) {
+                try {
+                    append(batch);
+                } catch (IOException ioException) {
+                    log.log(Level.INFO, "Failed to write " + batch.size() + " results to " + file, ioException);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void append(List<SiteResult> batch) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (SiteResult result : batch) {
+            lines.append(toLines(result.toProperties()));
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.ISO_8859_1));
+        file.getParentFile().mkdirs();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            FileLock lock = channel.lock();
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * @return the properties escaped the way {@link Properties#store} does, without its comment lines
+     */
+    static String toLines(Properties properties) throws IOException {
+        StringWriter stored = new StringWriter();
+        properties.store(stored, null);
+        StringBuilder lines = new StringBuilder();
+        for (String line : stored.toString().split("\\r?\\n")) {
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                lines.append(line).append(System.lineSeparator());
+            }
+        }
+        return lines.toString();
+    }
+
+    /**
+     * Writes the queued results and stops the writer thread, the next {@link #forFile(String)} of the file starts
+     * a new sink
+     */
+    public void close() {
+        closed = true;
+        sinks.remove(file.getPath(), this);
+        queue.offer(END);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(CLOSE_WAIT_SECONDS));
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.info("Results writer of " + file + " did not finish, " + queue.size() + " results not written");
+        }
+    }
+
+    static void closeAll() {
+        for (ResultsSink sink : sinks.values()) {
+            sink.close();
+        }
+    }
+}
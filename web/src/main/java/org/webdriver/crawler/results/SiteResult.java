@@ -0,0 +1,101 @@
+package org.webdriver.crawler.results;
+
+import java.util.Properties;
+
+/**
+ * Outcome of crawling one site, as written to the results file by the {@link ResultsSink}
+ */
+public class SiteResult {
+
+    private final String siteName;
+    private final String duration;
+    private final long pagesVisited;
+    private final long steps;
+    private final long failedSteps;
+    private final long waitMillis;
+    private final long workMillis;
+
+    /**
+     * @param pagesVisited unique pages reached, -1 when not known (same for steps and failedSteps)
+     */
+    public SiteResult(String siteName, long durationMillis, long pagesVisited, long steps, long failedSteps) {
+        this(siteName, String.valueOf(durationMillis), pagesVisited, steps, failedSteps, -1, -1);
+    }
+
+    /**
+     * @param waitMillis time spent waiting (element polling, page settles, host limiter), -1 when not known
+     * @param workMillis time spent navigating and evaluating element conditions, -1 when not known
+     */
+    public SiteResult(String siteName, long durationMillis, long pagesVisited, long steps, long failedSteps, long waitMillis, long workMillis) {
+        this(siteName, String.valueOf(durationMillis), pagesVisited, steps, failedSteps, waitMillis, workMillis);
+    }
+
+    SiteResult(String siteName, String duration, long pagesVisited, long steps, long failedSteps, long waitMillis, long workMillis) {
+        this.siteName = siteName;
+        this.duration = duration;
+        this.pagesVisited = pagesVisited;
+        this.steps = steps;
+        this.failedSteps = failedSteps;
+        this.waitMillis = waitMillis;
+        this.workMillis = workMillis;
+    }
+
+    /**
+     * Result only holding the duration, the way it was recorded before the other counters existed
+     */
+    public static SiteResult durationOnly(String siteName, String duration) {
+        return new SiteResult(siteName, duration, -1, -1, -1, -1, -1);
+    }
+
+    /**
+     * Reads back the result of the site from the properties written by {@link #toProperties()}, the counters
+     * missing are -1
+     * @return null when the properties hold no duration for the site
+     */
+    public static SiteResult fromProperties(String siteName, Properties properties) {
+        String duration = properties.getProperty(siteName);
+        if (duration == null) {
+            return null;
+        }
+        return new SiteResult(siteName, duration, get(properties, siteName + ".pages"), get(properties, siteName + ".steps"),
+                get(properties, siteName + ".failed.steps"), get(properties, siteName + ".wait.millis"), get(properties, siteName + ".work.millis"));
+    }
+
+    private static long get(Properties properties, String key) {
+        try {
+            return Long.parseLong(properties.getProperty(key, "-1").trim());
+        } catch (NumberFormatException numberFormatException) {
+            return -1;
+        }
+    }
+
+    public String getSiteName() {
+        return siteName;
+    }
+
+    /**
+     * The duration is keyed by the site name, so existing readers of the flow durations keep working, the other
+     * counters by "&lt;site name&gt;.pages", ".steps", ".failed.steps", ".wait.millis" and ".work.millis"
+     */
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(siteName, duration);
+        put(properties, ".pages", pagesVisited);
+        put(properties, ".steps", steps);
+        put(properties, ".failed.steps", failedSteps);
+        put(properties, ".wait.millis", waitMillis);
+        put(properties, ".work.millis", workMillis);
+        return properties;
+    }
+
+    private void put(Properties properties, String suffix, long value) {
+        if (value >= 0) {
+            properties.setProperty(siteName + suffix, String.valueOf(value));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toProperties().toString();
+    }
+}
@@ -0,0 +1,80 @@
+package org.webdriver.crawler.dedupe;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NearDuplicateIndexTest {
+
+    private static final long BASE = 0x0123456789abcdefL;
+
+    private static NearDuplicateIndex index(String siteName, NearDuplicateIndex.Mode mode) {
+        return new NearDuplicateIndex(siteName, mode, 3, 3, 0.8);
+    }
+
+    @Test
+    public void closeFingerprintsShareACluster() {
+        NearDuplicateIndex index = index("dedupe-cluster", NearDuplicateIndex.Mode.MARK);
+        assertFalse(index.add("http://site.com/a", BASE));
+        assertTrue(index.add("http://site.com/b", BASE ^ 1L ^ (1L << 20) ^ (1L << 40)));
+        assertFalse(index.add("http://site.com/c", ~BASE));
+        assertFalse(index.add("http://site.com/d", BASE ^ 0x1fL));
+        assertTrue(index.add("http://site.com/b", ~BASE));
+        assertTrue(index.getSummary().contains("4 pages fingerprinted, 1 near-duplicates in 1 clusters"));
+    }
+
+    @Test
+    public void bandLookupFindsEveryMatchWithinThreeBits() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 2000; trial++) {
+            NearDuplicateIndex index = index("dedupe-bands", NearDuplicateIndex.Mode.MARK);
+            long fingerprint = random.nextLong();
+            for (int other = 0; other < 5; other++) {
+                index.add("http://site.com/other/" + other, random.nextLong());
+            }
+            index.add("http://site.com/page", fingerprint);
+            long near = fingerprint;
+            int bits = 1 + random.nextInt(NearDuplicateIndex.MAX_DISTANCE);
+            while (PageFingerprint.distance(fingerprint, near) < bits) {
+                near ^= 1L << random.nextInt(64);
+            }
+            assertTrue("Missed a fingerprint " + bits + " bits apart", index.add("http://site.com/near", near));
+        }
+    }
+
+    @Test
+    public void lowerDefersTheLinksOfAClonedShapeUntilPolled() {
+        NearDuplicateIndex index = index("dedupe-lower", NearDuplicateIndex.Mode.LOWER);
+        index.add("http://site.com/home", BASE);
+        assertEquals(NearDuplicateIndex.Decision.CRAWL, index.check("http://site.com/item/4"));
+        for (int item = 1; item <= 3; item++) {
+            assertTrue(index.add("http://site.com/item/" + item, BASE ^ (1L << item)));
+        }
+        assertEquals(NearDuplicateIndex.Decision.DEFER, index.check("http://site.com/item/4"));
+        assertEquals(NearDuplicateIndex.Decision.DEFER, index.check("http://site.com/item/4"));
+        assertEquals(NearDuplicateIndex.Decision.CRAWL, index.check("http://site.com/about"));
+        assertEquals("http://site.com/item/4", index.pollDeferred());
+        assertNull(index.pollDeferred());
+        assertEquals(NearDuplicateIndex.Decision.CRAWL, index.check("http://site.com/item/4"));
+    }
+
+    @Test
+    public void skipDropsAndMarkCrawlsTheLinksOfAClonedShape() {
+        NearDuplicateIndex skip = index("dedupe-skip", NearDuplicateIndex.Mode.SKIP);
+        NearDuplicateIndex mark = index("dedupe-mark", NearDuplicateIndex.Mode.MARK);
+        for (NearDuplicateIndex index : new NearDuplicateIndex[]{skip, mark}) {
+            index.add("http://site.com/home", BASE);
+            for (int item = 1; item <= 3; item++) {
+                index.add("http://site.com/item/" + item, BASE ^ (1L << item));
+            }
+        }
+        assertEquals(NearDuplicateIndex.Decision.SKIP, skip.check("http://site.com/item/4"));
+        assertNull(skip.pollDeferred());
+        assertEquals(NearDuplicateIndex.Decision.CRAWL, mark.check("http://site.com/item/4"));
+    }
+}
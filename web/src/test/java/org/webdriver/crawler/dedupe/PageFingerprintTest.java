@@ -0,0 +1,45 @@
+package org.webdriver.crawler.dedupe;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PageFingerprintTest {
+
+    private static final String TAGS = "BODY>DIV DIV>UL UL>LI UL>LI UL>LI LI>A LI>A LI>A DIV>P DIV>FOOTER";
+
+    private static String article(String subject) {
+        StringBuilder text = new StringBuilder();
+        for (int paragraph = 0; paragraph < 20; paragraph++) {
+            text.append("The catalog lists every product of the store with its price, its rating and the reviews of paragraph ")
+                    .append(paragraph).append(". ");
+        }
+        return text.append(subject).toString();
+    }
+
+    @Test
+    public void masksTheNumbers() {
+        assertEquals(PageFingerprint.of("page 3 of 40", TAGS), PageFingerprint.of("page 4 of 41", TAGS));
+    }
+
+    @Test
+    public void templatePagesAreAFewBitsApart() {
+        long first = PageFingerprint.of(article("Red shoes in stock"), TAGS);
+        long second = PageFingerprint.of(article("Blue shoes in stock"), TAGS);
+        assertTrue(PageFingerprint.distance(first, second) <= NearDuplicateIndex.MAX_DISTANCE);
+        long other = PageFingerprint.of("Sign in with your email address and password to reach your account settings and orders",
+                "BODY>FORM FORM>INPUT FORM>INPUT FORM>BUTTON");
+        assertTrue(PageFingerprint.distance(first, other) > 10);
+    }
+
+    @Test
+    public void readsTheScriptResult() {
+        assertEquals(Long.valueOf(PageFingerprint.of("some text", TAGS)), PageFingerprint.fromScriptResult(Arrays.asList("some text", TAGS)));
+        assertNull(PageFingerprint.fromScriptResult("some text"));
+        assertNull(PageFingerprint.fromScriptResult(Arrays.asList("some text")));
+    }
+}
@@ -0,0 +1,113 @@
+package org.webdriver.crawler.distributed;
+
+import org.junit.After;
+import org.junit.Test;
+import org.webdriver.crawler.Site;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoordinatorTest {
+
+    private static final long LEASE_TIMEOUT_MILLIS = 1000;
+
+    private Coordinator coordinator;
+
+    private Coordinator coordinator(int siteCount, int maxAttempts, boolean steal) throws IOException {
+        List<Site> sites = new ArrayList<>();
+        for (int index = 0; index < siteCount; index++) {
+            sites.add(new Site("site" + index, "http://site" + index + ".example.com/"));
+        }
+        File results = File.createTempFile("coordinator-test", ".properties");
+        results.deleteOnExit();
+        coordinator = new Coordinator(sites, 64, LEASE_TIMEOUT_MILLIS, maxAttempts, steal, results.getPath());
+        return coordinator;
+    }
+
+    @After
+    public void close() {
+        if (coordinator != null) {
+            coordinator.close();
+        }
+    }
+
+    private static List<String> names(String leased) {
+        List<String> names = new ArrayList<>();
+        for (String line : leased.split("\n")) {
+            if (!line.isEmpty()) {
+                names.add(line.substring(0, line.indexOf('=')));
+            }
+        }
+        return names;
+    }
+
+    private static void assertStates(Coordinator coordinator, int pending, int leased, int done, int failed) {
+        assertTrue(coordinator.getStatus(), coordinator.getStatus().startsWith(
+                "sites {PENDING=" + pending + ", LEASED=" + leased + ", DONE=" + done + ", FAILED=" + failed + "}"));
+    }
+
+    @Test
+    public void leasesOnlyTheSitesTheRingGivesTheWorkerWithoutStealing() throws IOException {
+        Coordinator coordinator = coordinator(20, 2, false);
+        coordinator.lease("a", 0);
+        coordinator.lease("b", 0);
+        HashRing ring = new HashRing(64);
+        ring.add("a");
+        ring.add("b");
+        List<String> owned = new ArrayList<>();
+        for (int index = 0; index < 20; index++) {
+            if ("a".equals(ring.ownerOf("site" + index))) {
+                owned.add("site" + index);
+            }
+        }
+        assertEquals(owned, names(coordinator.lease("a", 20)));
+        assertEquals("", coordinator.lease("a", 20));
+        assertStates(coordinator, 20 - owned.size(), owned.size(), 0, 0);
+    }
+
+    @Test
+    public void returnsTheLeasesOfAWorkerWithoutHeartbeatOnceTheTimeoutExpired() throws IOException {
+        Coordinator coordinator = coordinator(3, 2, true);
+        assertEquals(Arrays.asList("site0", "site1", "site2"), names(coordinator.lease("a", 3)));
+        coordinator.reap(System.currentTimeMillis());
+        assertTrue(coordinator.heartbeat("a"));
+        assertStates(coordinator, 0, 3, 0, 0);
+
+        coordinator.reap(System.currentTimeMillis() + LEASE_TIMEOUT_MILLIS + 1);
+        assertFalse(coordinator.heartbeat("a"));
+        assertStates(coordinator, 3, 0, 0, 0);
+        assertEquals(Arrays.asList("site0", "site1", "site2"), names(coordinator.lease("b", 3)));
+    }
+
+    @Test
+    public void givesUpOnASiteAfterTheMaximumAttempts() throws IOException, InterruptedException {
+        Coordinator coordinator = coordinator(1, 2, true);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertEquals(Arrays.asList("site0"), names(coordinator.lease("a", 1)));
+            coordinator.reap(System.currentTimeMillis() + LEASE_TIMEOUT_MILLIS + 1);
+        }
+        assertStates(coordinator, 0, 0, 0, 1);
+        assertEquals(Coordinator.DONE, coordinator.lease("b", 1));
+        coordinator.awaitFinished();
+        assertTrue(coordinator.getSummary(), coordinator.getSummary().contains("failed [site0]"));
+    }
+
+    @Test
+    public void releasedLeasesArePendingAgainWithoutUsingAnAttempt() throws IOException {
+        Coordinator coordinator = coordinator(2, 1, true);
+        assertEquals(2, names(coordinator.lease("a", 2)).size());
+        coordinator.release("a");
+        assertFalse(coordinator.heartbeat("a"));
+        assertStates(coordinator, 2, 0, 0, 0);
+        assertEquals(2, names(coordinator.lease("b", 2)).size());
+        coordinator.release("b");
+        assertStates(coordinator, 2, 0, 0, 0);
+    }
+}
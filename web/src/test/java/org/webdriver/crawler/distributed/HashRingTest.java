@@ -0,0 +1,70 @@
+package org.webdriver.crawler.distributed;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HashRingTest {
+
+    private static final int KEYS = 2000;
+
+    private static Map<String, String> owners(HashRing ring) {
+        Map<String, String> owners = new HashMap<>();
+        for (int index = 0; index < KEYS; index++) {
+            owners.put("site" + index, ring.ownerOf("site" + index));
+        }
+        return owners;
+    }
+
+    private static HashRing ring(String... workers) {
+        HashRing ring = new HashRing(64);
+        for (String worker : workers) {
+            ring.add(worker);
+        }
+        return ring;
+    }
+
+    @Test
+    public void hasNoOwnerWithoutWorkers() {
+        HashRing ring = ring("a");
+        ring.remove("a");
+        assertTrue(ring.isEmpty());
+        assertNull(ring.ownerOf("site"));
+    }
+
+    @Test
+    public void aJoiningWorkerOnlyTakesSitesOverAndAboutItsShare() {
+        Map<String, String> before = owners(ring("a", "b", "c"));
+        Map<String, String> after = owners(ring("a", "b", "c", "d"));
+        int moved = 0;
+        for (Map.Entry<String, String> owner : after.entrySet()) {
+            if (!owner.getValue().equals(before.get(owner.getKey()))) {
+                assertEquals("d", owner.getValue());
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved > KEYS / 8 && moved < KEYS * 3 / 8);
+    }
+
+    @Test
+    public void aLeavingWorkerOnlyGivesItsOwnSitesAway() {
+        HashRing ring = ring("a", "b", "c", "d");
+        Map<String, String> before = owners(ring);
+        ring.remove("b");
+        Map<String, String> after = owners(ring);
+        for (Map.Entry<String, String> owner : before.entrySet()) {
+            if (owner.getValue().equals("b")) {
+                assertNotEquals("b", after.get(owner.getKey()));
+            } else {
+                assertEquals(owner.getValue(), after.get(owner.getKey()));
+            }
+        }
+        assertEquals(before, owners(ring("a", "b", "c", "d")));
+    }
+}
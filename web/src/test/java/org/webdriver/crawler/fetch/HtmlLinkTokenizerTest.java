@@ -0,0 +1,83 @@
+package org.webdriver.crawler.fetch;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HtmlLinkTokenizerTest {
+
+    private static FetchedPage parse(String html) throws IOException {
+        return HtmlLinkTokenizer.parse(new StringReader(html), "http://example.com/dir/page.html");
+    }
+
+    private static List<String> hrefs(FetchedPage page) {
+        List<String> hrefs = new ArrayList<>();
+        for (FetchedPage.Link link : page.getLinks()) {
+            hrefs.add(link.getHref());
+        }
+        return hrefs;
+    }
+
+    @Test
+    public void resolvesRelativeAbsoluteAndBaseLinks() throws IOException {
+        FetchedPage page = parse("<html><body><a href=\"next.html\">Next</a> <a href='/root'>Root</a> "
+                + "<A HREF=http://other.org/x>Other</A></body></html>");
+        assertEquals("[http://example.com/dir/next.html, http://example.com/root, http://other.org/x]", hrefs(page).toString());
+
+        page = parse("<head><base href=\"http://cdn.example.com/base/\"></head><a href=\"a\">A</a>");
+        assertEquals("[http://cdn.example.com/base/a]", hrefs(page).toString());
+    }
+
+    @Test
+    public void readsLinkTextAcrossNestedMarkupAndCollapsesWhitespace() throws IOException {
+        FetchedPage page = parse("<a href=\"/p\">\n  <span class=\"x\">Hello</span>\n\n  <b>world</b> </a>");
+        assertEquals(1, page.getLinks().size());
+        assertEquals("Hello world", page.getLinks().get(0).getText());
+    }
+
+    @Test
+    public void decodesEntitiesInTextAndHrefs() throws IOException {
+        FetchedPage page = parse("<a href=\"/search?q=a&amp;page=2\">Caf&eacute; &amp; Cr&#232;me &#x2014; &copy;</a>");
+        assertEquals("http://example.com/search?q=a&page=2", page.getLinks().get(0).getHref());
+        assertEquals("Café & Crème — ©", page.getLinks().get(0).getText());
+    }
+
+    @Test
+    public void decodeIsSinglePassAndKeepsUnknownOrUnterminatedReferences() {
+        assertEquals("&lt;", HtmlLinkTokenizer.decode("&amp;lt;"));
+        assertEquals("?a=1&copy=2", HtmlLinkTokenizer.decode("?a=1&copy=2"));
+        assertEquals("&unknown; & &", HtmlLinkTokenizer.decode("&unknown; & &"));
+        assertEquals("😀", HtmlLinkTokenizer.decode("&#128512;"));
+        assertEquals("�", HtmlLinkTokenizer.decode("&#0;"));
+        assertEquals("no references", HtmlLinkTokenizer.decode("no references"));
+    }
+
+    @Test
+    public void skipsScriptsStylesAndCommentsButCountsScriptDrivenAnchors() throws IOException {
+        FetchedPage page = parse("<script src=\"app.js\"></script><script>var s = '<a href=\"/fake\">x</a>';</script>"
+                + "<style>a { color: red }</style><!-- <a href=\"/commented\">c</a> -->"
+                + "<a href=\"#top\">Top</a><a href=\"javascript:void(0)\">Js</a><a onclick=\"go()\" href=\"/real\">Real</a>");
+        assertEquals("[http://example.com/real]", hrefs(page).toString());
+        assertEquals(1, page.getScripts());
+    }
+
+    @Test
+    public void flagsScriptRenderedShells() throws IOException {
+        FetchedPage shell = parse("<html><body><div id=\"root\"></div><script src=\"/bundle.js\"></script><a href=\"/x\">x</a></body></html>");
+        assertTrue(shell.getBrowserReason(200).startsWith("single page application shell"));
+
+        StringBuilder text = new StringBuilder("<p>");
+        for (int index = 0; index < 50; index++) {
+            text.append("plenty of server rendered text ");
+        }
+        FetchedPage rendered = parse(text + "</p><a href=\"/a\">A</a><a href=\"/b\">B</a>");
+        assertNull(rendered.getBrowserReason(200));
+    }
+}
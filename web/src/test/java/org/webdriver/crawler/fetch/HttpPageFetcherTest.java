@@ -0,0 +1,130 @@
+package org.webdriver.crawler.fetch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpPageFetcherTest {
+
+    private HttpServer server;
+    private String origin;
+    private HttpPageFetcher fetcher;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                switch (path) {
+                    case "/page":
+                        respond(exchange, 200, "text/html; charset=utf-8", "<p>" + repeat("server rendered text ", 20) + "</p>"
+                                + "<a href=\"/a\">First</a><a href=\"b?x=1&amp;y=2\">Second</a>", StandardCharsets.UTF_8);
+                        break;
+                    case "/latin":
+                        respond(exchange, 200, "text/html; charset=ISO-8859-1", "<a href=\"/c\">Café</a>", StandardCharsets.ISO_8859_1);
+                        break;
+                    case "/moved":
+                        exchange.getResponseHeaders().set("Location", "/page");
+                        exchange.sendResponseHeaders(302, -1);
+                        break;
+                    case "/data.json":
+                        respond(exchange, 200, "application/json", "{\"a\": \"<a href='/x'>x</a>\"}", StandardCharsets.UTF_8);
+                        break;
+                    case "/shell":
+                        respond(exchange, 200, "text/html", "<div id=\"app\"></div><script src=\"/app.js\"></script>", StandardCharsets.UTF_8);
+                        break;
+                    default:
+                        respond(exchange, 404, "text/html", "<a href=\"/home\">Home</a>", StandardCharsets.UTF_8);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        origin = "http://localhost:" + server.getAddress().getPort();
+        fetcher = new HttpPageFetcher(null);
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body, Charset charset) throws IOException {
+        byte[] bytes = body.getBytes(charset);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int index = 0; index < times; index++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+
+    @Test
+    public void streamsTheLinksOfAnHtmlPage() throws IOException {
+        FetchedPage page = fetcher.fetch(origin + "/page");
+        assertEquals(200, page.getStatusCode());
+        assertTrue(page.isHtml());
+        assertEquals(2, page.getLinks().size());
+        assertEquals(origin + "/a", page.getLinks().get(0).getHref());
+        assertEquals(origin + "/b?x=1&y=2", page.getLinks().get(1).getHref());
+        assertTrue(page.getBytes() > 0);
+        assertNull(fetcher.getBrowserReason(page));
+    }
+
+    @Test
+    public void decodesWithTheCharsetOfTheResponse() throws IOException {
+        FetchedPage page = fetcher.fetch(origin + "/latin");
+        assertEquals("Café", page.getLinks().get(0).getText());
+    }
+
+    @Test
+    public void followsRedirectsAndResolvesAgainstTheFinalUrl() throws IOException {
+        FetchedPage page = fetcher.fetch(origin + "/moved");
+        assertEquals(origin + "/page", page.getFinalUrl());
+        assertEquals(origin + "/a", page.getLinks().get(0).getHref());
+    }
+
+    @Test
+    public void doesNotParseErrorsAndNonHtmlResponses() throws IOException {
+        FetchedPage missing = fetcher.fetch(origin + "/missing");
+        assertEquals(404, missing.getStatusCode());
+        assertFalse(missing.isHtml());
+        assertTrue(missing.getLinks().isEmpty());
+
+        FetchedPage json = fetcher.fetch(origin + "/data.json");
+        assertFalse(json.isHtml());
+        assertTrue(json.getLinks().isEmpty());
+        assertNull(fetcher.getBrowserReason(json));
+    }
+
+    @Test
+    public void escalatesScriptRenderedPagesToTheBrowser() throws IOException {
+        FetchedPage shell = fetcher.fetch(origin + "/shell");
+        assertEquals("no anchors found", fetcher.getBrowserReason(shell));
+        assertTrue(fetcher.getSummary().contains("1 escalated"));
+    }
+}
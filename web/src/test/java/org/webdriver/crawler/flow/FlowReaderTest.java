@@ -0,0 +1,125 @@
+package org.webdriver.crawler.flow;
+
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.webdriver.crawler.CrawlerAction;
+import org.webdriver.crawler.Site;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FlowReaderTest {
+
+    private static final long START = 1500000000000L;
+
+    private static File flowFile() throws IOException {
+        return new File(Files.createTempDirectory("flow-reader").toFile(), "MySite.txt");
+    }
+
+    private static List<FlowStep> writeAndRead(File file) throws IOException {
+        try (StoryWriter writer = new StoryWriter(file, 1024, 60000, StoryWriter.Fsync.CLOSE, 2)) {
+            writer.append("HttpGet", START, 12, Site.SUCCESSFUL, "http://example.com/plain", "Fetching url: http://example.com/plain");
+            writer.append("GetURL", START + 1000, 250, Site.SUCCESSFUL, "http://example.com/", "Navigating to url: http://example.com/");
+            writer.append("ClickOn", START + 2000, 40, Site.FAILED, "By.xpath: //a[@id='next']", "Click on\telement\nwith locator: 'xpath://a[@id='next']'");
+            writer.append("GoBack", START + 3000, 5, Site.SUCCESSFUL, "", "Going back");
+            writer.append("CloseTab", START + 4000, 3, Site.SUCCESSFUL, null, null);
+            writer.append("GetURL", START + 5000, 1, Site.FAILED, "", "Navigating to url: ");
+        }
+        return FlowReader.read(file);
+    }
+
+    @Test
+    public void readsBackTheColumnsWrittenByTheStoryWriter() throws IOException {
+        File file = flowFile();
+        List<FlowStep> steps = writeAndRead(file);
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(StoryWriter.VERSION_LINE, lines.get(0));
+        assertEquals(StoryWriter.HEADER, lines.get(1));
+
+        assertEquals(6, steps.size());
+        FlowStep click = steps.get(2);
+        assertEquals(3, click.getStep());
+        assertEquals("ClickOn", click.getType());
+        assertEquals(Instant.ofEpochMilli(START + 2000).toString(), click.getTimestamp());
+        assertEquals(40, click.getDurationMillis());
+        assertEquals(Site.FAILED, click.getOutcome());
+        assertEquals("By.xpath: //a[@id='next']", click.getTarget());
+        assertEquals("Click on element with locator: 'xpath://a[@id='next']'", click.getDescription());
+        FlowStep closeTab = steps.get(4);
+        assertEquals("", closeTab.getTarget());
+        assertEquals("", closeTab.getDescription());
+        assertTrue(steps.get(1).isSuccessful());
+        assertEquals("http://example.com/", FlowReader.getStartUrl(steps));
+    }
+
+    @Test
+    public void mapsTheStepsToTheActionsReplayingThem() throws IOException {
+        List<FlowStep> steps = writeAndRead(flowFile());
+        assertNull("HTTP fetches are not replayed", steps.get(0).toAction());
+
+        CrawlerAction getUrl = steps.get(1).toAction();
+        assertTrue(getUrl instanceof CrawlerAction.GetURL);
+        assertEquals("http://example.com/", getUrl.getTarget());
+
+        CrawlerAction click = steps.get(2).toAction();
+        assertTrue(click instanceof CrawlerAction.ClickOn);
+        assertEquals("By.xpath: //a[@id='next']", click.getTarget());
+        assertEquals("Click on element with locator: 'xpath://a[@id='next']'", click.getStep());
+
+        assertTrue(steps.get(3).toAction() instanceof CrawlerAction.GoBack);
+        assertTrue(steps.get(4).toAction() instanceof CrawlerAction.CloseTab);
+        assertNull("nothing to open", steps.get(5).toAction());
+    }
+
+    @Test
+    public void parsesBackTheRecordedLocators() {
+        assertEquals(By.xpath("//a[1]"), FlowStep.toLocator(By.xpath("//a[1]").toString()));
+        assertEquals(By.cssSelector("a.next: b"), FlowStep.toLocator(By.cssSelector("a.next: b").toString()));
+        assertEquals(By.id("next"), FlowStep.toLocator(By.id("next").toString()));
+        assertEquals(By.linkText("Next"), FlowStep.toLocator(By.linkText("Next").toString()));
+        assertNull(FlowStep.toLocator("http://example.com/"));
+        assertNull(FlowStep.toLocator("By.unknown: x"));
+    }
+
+    @Test
+    public void rejectsFilesWithoutTheVersionLineOrOfANewerVersion() throws IOException {
+        File file = flowFile();
+        for (String content : new String[]{"", StoryWriter.HEADER + "\n1\tGetURL\tt\t1\tOK\thttp://example.com/\td\n",
+                "# flow " + (StoryWriter.VERSION + 1) + "\n", "# flow x\n"}) {
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            try {
+                FlowReader.read(file);
+                fail("read " + content);
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("is not a flow file"));
+            }
+        }
+        Files.write(file.toPath(), (StoryWriter.VERSION_LINE + "\n1\tGetURL\tt\t1\tOK\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            FlowReader.read(file);
+            fail("read a line of 5 columns");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(":2: expected 7 columns"));
+        }
+    }
+
+    @Test
+    public void rotatesTheStoryOfAnEarlierRunWhole() throws IOException {
+        File file = flowFile();
+        writeAndRead(file);
+        try (StoryWriter writer = new StoryWriter(file, 1024, 60000, StoryWriter.Fsync.CLOSE, 2)) {
+            writer.append("GetURL", START, 1, Site.SUCCESSFUL, "http://example.com/again", "");
+        }
+        assertEquals(6, FlowReader.read(new File(file.getPath() + ".1")).size());
+        assertEquals("http://example.com/again", FlowReader.getStartUrl(FlowReader.read(file)));
+    }
+}
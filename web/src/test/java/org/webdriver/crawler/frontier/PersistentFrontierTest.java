@@ -0,0 +1,146 @@
+package org.webdriver.crawler.frontier;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentFrontierTest {
+
+    private static final int COMPACT_THRESHOLD = 8;
+
+    @BeforeClass
+    public static void lowerTheThresholds() {
+        System.setProperty("frontier.expected.urls", "10000");
+        System.setProperty("frontier.compact.threshold", String.valueOf(COMPACT_THRESHOLD));
+    }
+
+    @AfterClass
+    public static void clearTheThresholds() {
+        System.clearProperty("frontier.expected.urls");
+        System.clearProperty("frontier.compact.threshold");
+    }
+
+    private static String url(String path) {
+        return "http://example.com/" + path;
+    }
+
+    private static List<String> drain(PersistentFrontier frontier) throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (String url; (url = frontier.poll()) != null; ) {
+            urls.add(url);
+        }
+        return urls;
+    }
+
+    private static Properties checkpoint(File directory) throws IOException {
+        Properties checkpoint = new Properties();
+        try (FileInputStream input = new FileInputStream(new File(directory, "checkpoint.properties"))) {
+            checkpoint.load(input);
+        }
+        return checkpoint;
+    }
+
+    @Test
+    public void resumesFromTheLastCheckpointAfterACrashAndDropsTheHalfWrittenLine() throws IOException {
+        File directory = Files.createTempDirectory("frontier-crash").toFile();
+        PersistentFrontier frontier = new PersistentFrontier(directory);
+        for (String path : new String[]{"a", "b", "c", "d"}) {
+            assertTrue(frontier.offer(url(path)));
+        }
+        assertFalse(frontier.offer(url("a")));
+        assertEquals(url("a"), frontier.poll());
+        assertTrue(frontier.markVisited(url("a")));
+        assertEquals(url("b"), frontier.poll());
+        assertTrue(frontier.markVisited(url("b")));
+        frontier.checkpoint();
+        assertTrue(frontier.offer(url("e")));
+        assertEquals(url("c"), frontier.poll());
+        assertTrue(frontier.markVisited(url("c")));
+        try (FileOutputStream journal = new FileOutputStream(new File(directory, "journal.log"), true)) {
+            journal.write(("D " + url("partial")).getBytes(StandardCharsets.UTF_8));
+        }
+
+        PersistentFrontier resumed = new PersistentFrontier(directory);
+        assertTrue(resumed.isVisited(url("a")));
+        assertTrue(resumed.isVisited(url("b")));
+        assertFalse("the visit of c was never flushed", resumed.isVisited(url("c")));
+        assertFalse(resumed.offer(url("d")));
+        assertFalse("e was flushed by the poll after it", resumed.offer(url("e")));
+        assertEquals(5, resumed.getDiscoveredCount());
+        List<String> expected = new ArrayList<>();
+        expected.add(url("c"));
+        expected.add(url("d"));
+        expected.add(url("e"));
+        assertEquals(expected, drain(resumed));
+        assertTrue(resumed.offer(url("partial")));
+        assertEquals(url("partial"), resumed.poll());
+        resumed.close();
+        frontier.close();
+    }
+
+    @Test
+    public void compactsTheIndexesAndReplaysOnlyTheJournalAfterThem() throws IOException {
+        File directory = Files.createTempDirectory("frontier-compact").toFile();
+        PersistentFrontier frontier = new PersistentFrontier(directory);
+        for (int index = 0; index < COMPACT_THRESHOLD; index++) {
+            assertTrue(frontier.offer(url("page" + index)));
+        }
+        frontier.checkpoint();
+        File discoveredIndex = new File(directory, "discovered.idx");
+        assertEquals(COMPACT_THRESHOLD * 8L, discoveredIndex.length());
+        assertEquals(String.valueOf(new File(directory, "journal.log").length()), checkpoint(directory).getProperty("compacted.offset"));
+
+        for (int index = 0; index < 3; index++) {
+            assertEquals(url("page" + index), frontier.poll());
+            assertTrue(frontier.markVisited(url("page" + index)));
+        }
+        assertTrue(frontier.offer(url("late")));
+        frontier.checkpoint();
+        assertEquals("below the threshold, nothing compacted", COMPACT_THRESHOLD * 8L, discoveredIndex.length());
+        assertFalse(new File(directory, "visited.idx").exists());
+        frontier.close();
+
+        PersistentFrontier resumed = new PersistentFrontier(directory);
+        assertEquals(COMPACT_THRESHOLD + 1, resumed.getDiscoveredCount());
+        assertEquals(3, resumed.getVisitedCount());
+        for (int index = 0; index < COMPACT_THRESHOLD; index++) {
+            assertFalse(resumed.offer(url("page" + index)));
+            assertEquals(index < 3, resumed.isVisited(url("page" + index)));
+        }
+        assertFalse(resumed.offer(url("late")));
+        List<String> remaining = drain(resumed);
+        assertEquals(COMPACT_THRESHOLD - 3 + 1, remaining.size());
+        assertEquals(url("page3"), remaining.get(0));
+        assertEquals(url("late"), remaining.get(remaining.size() - 1));
+        resumed.close();
+    }
+
+    @Test
+    public void hashesAUrlWithLineBreaksTheSameAfterARestart() throws IOException {
+        File directory = Files.createTempDirectory("frontier-line-breaks").toFile();
+        PersistentFrontier frontier = new PersistentFrontier(directory);
+        assertTrue(frontier.offer(url("a\rb\nc")));
+        frontier.close();
+
+        PersistentFrontier resumed = new PersistentFrontier(directory);
+        assertFalse(resumed.offer(url("a\rb\nc")));
+        assertEquals(url("a b c"), resumed.poll());
+        assertNull(resumed.poll());
+        resumed.close();
+    }
+}
@@ -0,0 +1,62 @@
+package org.webdriver.crawler.frontier;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SeenIndexTest {
+
+    private static long hash(int index) {
+        return BloomFilter.hash("http://example.com/page" + index);
+    }
+
+    @Test
+    public void bloomFilterHasNoFalseNegativesAndAboutTheConfiguredFalsePositives() {
+        BloomFilter bloomFilter = new BloomFilter(10000, 0.01);
+        for (int index = 0; index < 10000; index++) {
+            bloomFilter.put(hash(index));
+        }
+        int falsePositives = 0;
+        for (int index = 0; index < 10000; index++) {
+            assertTrue(bloomFilter.mightContain(hash(index)));
+            if (bloomFilter.mightContain(hash(-1 - index))) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives " + falsePositives, falsePositives < 200);
+    }
+
+    @Test
+    public void agreesWithTheBloomFilterAndAnswersItsFalsePositivesFromTheIndex() throws IOException {
+        File indexFile = new File(Files.createTempDirectory("seen-index").toFile(), "seen.idx");
+        SeenIndex index = new SeenIndex(indexFile, 100, 0.2);
+        for (int value = 0; value < 300; value++) {
+            assertTrue(index.add(hash(value)));
+            if (value == 99 || value == 199) {
+                index.compact();
+            }
+        }
+        assertEquals(300, index.size());
+        assertEquals(100, index.getRecentCount());
+        assertEquals(200 * 8L, indexFile.length());
+        for (int value = 0; value < 300; value++) {
+            assertTrue(index.contains(hash(value)));
+            assertFalse(index.add(hash(value)));
+            assertFalse("an overfilled filter answers maybe, the index no", index.contains(hash(-1 - value)));
+        }
+        index.close();
+
+        SeenIndex reopened = new SeenIndex(indexFile, 100, 0.2);
+        assertEquals("hashes not compacted are replayed from the journal", 200, reopened.size());
+        assertTrue(reopened.contains(hash(0)));
+        assertTrue(reopened.contains(hash(199)));
+        assertFalse(reopened.contains(hash(200)));
+        reopened.close();
+    }
+}
@@ -0,0 +1,110 @@
+package org.webdriver.crawler.frontier;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UrlCanonicalizerTest {
+
+    private static final Set<String> DENIED = new HashSet<>(Arrays.asList(UrlCanonicalizer.DEFAULT_DENIED_PARAMS.split(",")));
+
+    private static UrlCanonicalizer canonicalizer(String siteName, Set<String> allowed, boolean sortParams, UrlCanonicalizer.TrailingSlash trailingSlash) {
+        return new UrlCanonicalizer(siteName, true, DENIED, allowed, sortParams, false, trailingSlash, 1024, 16, 2, 500, 100, 10000);
+    }
+
+    private static UrlCanonicalizer traps(String siteName, int maxPathDepth, int maxNumericValues, int maxQueryCombinations) {
+        return new UrlCanonicalizer(siteName, true, DENIED, Collections.<String>emptySet(), true, false, UrlCanonicalizer.TrailingSlash.KEEP,
+                1024, maxPathDepth, 2, maxNumericValues, maxQueryCombinations, 10000);
+    }
+
+    @Test
+    public void removesSessionIdsAndTrackingParameters() {
+        UrlCanonicalizer canonicalizer = canonicalizer("canonical-deny", Collections.<String>emptySet(), true, UrlCanonicalizer.TrailingSlash.KEEP);
+        assertEquals("http://site.com/cart", canonicalizer.canonicalize("HTTP://Site.com/cart;jsessionid=0A1B2C#top"));
+        assertEquals("http://site.com/a;v=1/b", canonicalizer.canonicalize("http://site.com/a;v=1;JSESSIONID=0A1B2C/b"));
+        assertEquals("http://site.com/shoes?color=red", canonicalizer.canonicalize(
+                "http://site.com/shoes?utm_source=mail&color=red&utm_campaign=spring&UTM_Medium=news&gclid=x1"));
+        assertEquals("http://site.com/shoes", canonicalizer.canonicalize("http://site.com/shoes?utm_content=banner"));
+    }
+
+    @Test
+    public void allowListOverridesTheDenyList() {
+        UrlCanonicalizer canonicalizer = canonicalizer("canonical-allow", new HashSet<>(Arrays.asList("utm_source", "color")), true,
+                UrlCanonicalizer.TrailingSlash.KEEP);
+        assertEquals("http://site.com/shoes?color=red&utm_source=mail", canonicalizer.canonicalize(
+                "http://site.com/shoes?utm_source=mail&size=9&color=red&utm_campaign=spring"));
+    }
+
+    @Test
+    public void sortsTheParametersUnlessTurnedOff() {
+        String url = "http://site.com/search?q=shoes&page=2&color=red";
+        assertEquals("http://site.com/search?color=red&page=2&q=shoes",
+                canonicalizer("canonical-sort", Collections.<String>emptySet(), true, UrlCanonicalizer.TrailingSlash.KEEP).canonicalize(url));
+        assertEquals(url, canonicalizer("canonical-unsorted", Collections.<String>emptySet(), false, UrlCanonicalizer.TrailingSlash.KEEP).canonicalize(url));
+    }
+
+    @Test
+    public void stripsOrAddsTheTrailingSlash() {
+        UrlCanonicalizer strip = canonicalizer("canonical-strip", Collections.<String>emptySet(), true, UrlCanonicalizer.TrailingSlash.STRIP);
+        assertEquals("http://site.com/shop", strip.canonicalize("http://site.com/shop/"));
+        assertEquals("http://site.com/", strip.canonicalize("http://site.com"));
+        UrlCanonicalizer add = canonicalizer("canonical-add", Collections.<String>emptySet(), true, UrlCanonicalizer.TrailingSlash.ADD);
+        assertEquals("http://site.com/shop/", add.canonicalize("http://site.com/shop"));
+        assertEquals("http://site.com/shop/index.html", add.canonicalize("http://site.com/shop/index.html"));
+        UrlCanonicalizer keep = canonicalizer("canonical-keep", Collections.<String>emptySet(), true, UrlCanonicalizer.TrailingSlash.KEEP);
+        assertEquals("http://site.com/shop/", keep.canonicalize("http://site.com//shop/"));
+    }
+
+    @Test
+    public void blocksRepeatedSegmentsAndDeepPaths() {
+        UrlCanonicalizer canonicalizer = traps("canonical-segments", 4, 500, 100);
+        assertNotNull(canonicalizer.canonicalize("http://site.com/a/b/a/b"));
+        assertNull(canonicalizer.canonicalize("http://site.com/a/b/a/b/a"));
+        assertNotNull(canonicalizer.canonicalize("http://site.com/a/b/c/d"));
+        assertNull(canonicalizer.canonicalize("http://site.com/a/b/c/d/e"));
+        assertTrue(canonicalizer.getSummary(), canonicalizer.getSummary().endsWith("{depth=1, repeated segments=1}"));
+    }
+
+    @Test
+    public void capsTheQueryCombinationsOfAPath() {
+        UrlCanonicalizer canonicalizer = traps("canonical-queries", 16, 500, 2);
+        assertNotNull(canonicalizer.canonicalize("http://site.com/search?color=red"));
+        assertNotNull(canonicalizer.canonicalize("http://site.com/search?color=blue"));
+        assertNull(canonicalizer.canonicalize("http://site.com/search?color=green"));
+        assertNotNull(canonicalizer.canonicalize("http://site.com/search?color=red"));
+        assertNotNull(canonicalizer.canonicalize("http://site.com/other?color=green"));
+        assertTrue(canonicalizer.getSummary(), canonicalizer.getSummary().endsWith("{query combinations=1}"));
+    }
+
+    @Test
+    public void capsTheNumericValuesOfAUrlShape() {
+        UrlCanonicalizer canonicalizer = traps("canonical-numbers", 16, 2, 100);
+        assertNotNull(canonicalizer.canonicalize("http://site.com/calendar/2024/01"));
+        assertNotNull(canonicalizer.canonicalize("http://site.com/calendar/2024/02"));
+        assertNull(canonicalizer.canonicalize("http://site.com/calendar/2024/03"));
+        assertNotNull(canonicalizer.canonicalize("http://site.com/calendar/2024/01"));
+        assertNotNull(canonicalizer.canonicalize("http://site.com/news/2024/03"));
+        assertTrue(canonicalizer.getSummary(), canonicalizer.getSummary().endsWith("{numeric values=1}"));
+    }
+
+    @Test
+    public void countsEveryUrlOnce() {
+        UrlCanonicalizer canonicalizer = traps("canonical-counts", 16, 1, 100);
+        for (int time = 0; time < 3; time++) {
+            canonicalizer.canonicalize("http://site.com/shoes?utm_source=mail");
+            canonicalizer.canonicalize("http://site.com/item/1");
+            assertNull(canonicalizer.canonicalize("http://site.com/item/2"));
+        }
+        assertEquals(1, canonicalizer.getCollapsed());
+        assertEquals(1, canonicalizer.getBlocked());
+        assertTrue(canonicalizer.getSummary(), canonicalizer.getSummary().startsWith("canonical-counts: 2 urls canonicalized, 1 collapsed"));
+    }
+}
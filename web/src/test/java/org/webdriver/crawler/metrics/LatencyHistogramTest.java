@@ -0,0 +1,71 @@
+package org.webdriver.crawler.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void countsSmallValuesExactlyAndSplitsEveryPowerOfTwoInSixteen() {
+        assertEquals(0, LatencyHistogram.indexOf(0));
+        assertEquals(31, LatencyHistogram.indexOf(31));
+        assertEquals(31, LatencyHistogram.upperBoundOf(31));
+        assertEquals(32, LatencyHistogram.indexOf(32));
+        assertEquals(32, LatencyHistogram.indexOf(33));
+        assertEquals(33, LatencyHistogram.upperBoundOf(32));
+        assertEquals(47, LatencyHistogram.indexOf(63));
+        assertEquals(63, LatencyHistogram.upperBoundOf(47));
+        assertEquals(48, LatencyHistogram.indexOf(64));
+        assertEquals(48, LatencyHistogram.indexOf(67));
+        assertEquals(67, LatencyHistogram.upperBoundOf(48));
+    }
+
+    @Test
+    public void bucketsAreContiguousUpToTheTopBucketWhichTakesEverythingAbove() {
+        for (int index = 0; index < LatencyHistogram.BUCKETS - 1; index++) {
+            long upperBound = LatencyHistogram.upperBoundOf(index);
+            assertEquals(index, LatencyHistogram.indexOf(upperBound));
+            assertEquals(index + 1, LatencyHistogram.indexOf(upperBound + 1));
+        }
+        int top = LatencyHistogram.BUCKETS - 1;
+        assertEquals((1L << 43) - 1, LatencyHistogram.upperBoundOf(top));
+        assertEquals(top, LatencyHistogram.indexOf(1L << 43));
+        assertEquals(top, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void reportsPercentilesWithinTheBucketResolution() {
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int index = 0; index < values.length; index++) {
+            values[index] = (long) Math.exp(random.nextDouble() * 25);
+            histogram.record(values[index]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{50, 90, 99}) {
+            long exact = values[(int) Math.ceil(values.length * percentile / 100.0) - 1];
+            long reported = histogram.getPercentileNanos(percentile);
+            assertTrue(percentile + ": " + reported + " below " + exact, reported >= exact);
+            assertTrue(percentile + ": " + reported + " too far above " + exact, reported - exact <= exact / 16.0);
+        }
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    public void neverReportsMoreThanTheMaximumOrNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        histogram.record(-5);
+        histogram.record(1000);
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(1000, histogram.getPercentileNanos(100));
+        assertEquals(1000, histogram.getSumNanos());
+    }
+}
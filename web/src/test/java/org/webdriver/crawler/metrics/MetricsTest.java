@@ -0,0 +1,53 @@
+package org.webdriver.crawler.metrics;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    public void escapesLabelValuesInTheKey() {
+        assertEquals("test_plain", Metrics.key("test_plain"));
+        assertEquals("test_key{site=\"a\\\"b\",path=\"c\\\\d\\ne\"}", Metrics.key("test_key", "site", "a\"b", "path", "c\\d\ne"));
+        assertEquals("test_key{site=\"\"}", Metrics.key("test_key", "site", null));
+    }
+
+    @Test
+    public void readsCountersAndHistogramsFilteredByExactLabelValues() {
+        Metrics.counter("test_filtered_total", "site", "a", "reason", "image").add(2);
+        Metrics.counter("test_filtered_total", "site", "a", "reason", "font").add(3);
+        Metrics.counter("test_filtered_total", "site", "ab", "reason", "image").add(5);
+        Metrics.counter("test_filtered_other_total", "site", "a").add(7);
+
+        assertEquals(5, Metrics.getTotal("test_filtered_total", "site", "a"));
+        assertEquals(7, Metrics.getTotal("test_filtered_total", "reason", "image"));
+        assertEquals(2, Metrics.getTotal("test_filtered_total", "reason", "image", "site", "a"));
+        assertEquals(10, Metrics.getTotal("test_filtered_total"));
+        assertEquals(0, Metrics.getTotal("test_filtered_total", "site", "b"));
+        Map<String, Long> byReason = Metrics.getTotals("test_filtered_total", "reason", "site", "a");
+        assertEquals("{font=3, image=2}", byReason.toString());
+
+        Metrics.histogram("test_filtered_seconds", "site", "a", "action", "click").record(100);
+        Metrics.histogram("test_filtered_seconds", "site", "a", "action", "get").record(200);
+        Metrics.histogram("test_filtered_seconds", "site", "b", "action", "get").record(400);
+        assertEquals(300, Metrics.getSumNanos("test_filtered_seconds", "site", "a"));
+        assertEquals(2, Metrics.getCount("test_filtered_seconds", "action", "get"));
+    }
+
+    @Test
+    public void doesNotMatchALabelValueThatOnlyLooksLikeAnotherLabel() {
+        String injected = "x\",reason=\"image";
+        Metrics.counter("test_escaped_total", "site", injected).increment();
+        Metrics.counter("test_escaped_total", "site", "x", "reason", "font").add(4);
+
+        assertEquals(1, Metrics.getTotal("test_escaped_total", "site", injected));
+        assertEquals(4, Metrics.getTotal("test_escaped_total", "site", "x"));
+        assertEquals(0, Metrics.getTotal("test_escaped_total", "reason", "image"));
+        assertEquals("{font=4}", Metrics.getTotals("test_escaped_total", "reason").toString());
+        assertTrue(Metrics.toPrometheus().contains("test_escaped_total{site=\"x\\\",reason=\\\"image\"} 1"));
+    }
+}
@@ -0,0 +1,211 @@
+package org.webdriver.crawler.proxy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ProxyCacheTest {
+
+    private static final Map<String, AtomicInteger> originHits = new ConcurrentHashMap<>();
+    private static final Map<String, String> revalidations = new ConcurrentHashMap<>();
+
+    private static HttpServer server;
+    private static String origin;
+    private static ResourceProxy resourceProxy;
+    private static Proxy proxy;
+
+    @BeforeClass
+    public static void startOriginAndProxy() throws IOException {
+        System.setProperty("proxy.cache", "true");
+        System.setProperty("proxy.cache.directory", Files.createTempDirectory("proxy-cache-test").toString());
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                originHits.putIfAbsent(path, new AtomicInteger());
+                originHits.get(path).incrementAndGet();
+                switch (path) {
+                    case "/fresh":
+                        exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+                        break;
+                    case "/etag":
+                        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                        exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                        if (ifNoneMatch != null) {
+                            revalidations.put(path, ifNoneMatch);
+                            if (ifNoneMatch.equals("\"v1\"")) {
+                                exchange.sendResponseHeaders(304, -1);
+                                exchange.close();
+                                return;
+                            }
+                        }
+                        break;
+                    case "/vary":
+                        exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+                        exchange.getResponseHeaders().set("Vary", "User-Agent");
+                        break;
+                    case "/cookie":
+                        exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+                        exchange.getResponseHeaders().set("Set-Cookie", "session=1");
+                        break;
+                    default:
+                        break;
+                }
+                byte[] bytes = ("body of " + path).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(bytes);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        origin = "http://127.0.0.1:" + server.getAddress().getPort();
+        resourceProxy = new ResourceProxy();
+        proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(InetAddress.getLoopbackAddress(), resourceProxy.getPort()));
+    }
+
+    @AfterClass
+    public static void stopOriginAndProxy() {
+        resourceProxy.close();
+        server.stop(0);
+        System.clearProperty("proxy.cache");
+        System.clearProperty("proxy.cache.directory");
+    }
+
+    private static String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(origin + path).openConnection(proxy);
+        connection.setRequestProperty("Connection", "close");
+        try {
+            assertEquals(200, connection.getResponseCode());
+            return new String(read(connection.getInputStream()), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static byte[] read(InputStream input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream stream = input) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = stream.read(buffer)) != -1; ) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int hits(String path) {
+        AtomicInteger hits = originHits.get(path);
+        return hits == null ? 0 : hits.get();
+    }
+
+    @Test
+    public void answersFreshResponsesFromTheCache() throws IOException {
+        assertEquals("body of /fresh", get("/fresh"));
+        assertEquals("body of /fresh", get("/fresh"));
+        assertEquals(1, hits("/fresh"));
+    }
+
+    @Test
+    public void revalidatesWithTheETagAndAnswersANotModifiedWithTheStoredResponse() throws IOException {
+        assertEquals("body of /etag", get("/etag"));
+        assertEquals("body of /etag", get("/etag"));
+        assertEquals(2, hits("/etag"));
+        assertEquals("\"v1\"", revalidations.get("/etag"));
+    }
+
+    @Test
+    public void doesNotStoreResponsesVaryingOnOtherHeadersOrSettingCookies() throws IOException {
+        get("/vary");
+        get("/vary");
+        assertEquals(2, hits("/vary"));
+        get("/cookie");
+        get("/cookie");
+        assertEquals(2, hits("/cookie"));
+    }
+
+    private static CachedResponse response(String body) {
+        return CachedResponse.parse(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length() + "\r\n\r\n" + body).getBytes(StandardCharsets.ISO_8859_1))
+                .withExpiry(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedResponseFromMemory() {
+        int size = response("a").size();
+        ProxyCache cache = new ProxyCache(2L * size, 0, 1024, null);
+        cache.put("a", response("a"));
+        cache.put("b", response("b"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", response("c"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedResponseFromDiskAndKeepsTheOthersForTheNextRun() throws IOException {
+        File measure = Files.createTempDirectory("proxy-cache-measure").toFile();
+        new ProxyCache(0, Long.MAX_VALUE, 1024, measure).put("a", response("a"));
+        long fileSize = measure.listFiles()[0].length();
+
+        File directory = Files.createTempDirectory("proxy-cache-disk").toFile();
+        ProxyCache cache = new ProxyCache(0, 2 * fileSize, 1024, directory);
+        cache.put("a", response("a"));
+        cache.put("b", response("b"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", response("c"));
+        assertNull(cache.get("b"));
+        assertEquals(2, directory.listFiles().length);
+
+        ProxyCache reopened = new ProxyCache(0, 2 * fileSize, 1024, directory);
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 1\r\n\r\na", new String(reopened.get("a").getBytes(), StandardCharsets.ISO_8859_1));
+        assertEquals(Long.MAX_VALUE, reopened.get("c").getExpiresMillis());
+        assertNull(reopened.get("b"));
+    }
+
+    @Test
+    public void memoryHitsKeepTheResponseRecentlyUsedOnDisk() throws IOException {
+        File measure = Files.createTempDirectory("proxy-cache-measure").toFile();
+        new ProxyCache(0, Long.MAX_VALUE, 1024, measure).put("a", response("a"));
+        long fileSize = measure.listFiles()[0].length();
+
+        File directory = Files.createTempDirectory("proxy-cache-touch").toFile();
+        ProxyCache cache = new ProxyCache(Long.MAX_VALUE, 2 * fileSize, 1024, directory);
+        cache.put("a", response("a"));
+        cache.put("b", response("b"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", response("c"));
+
+        ProxyCache reopened = new ProxyCache(0, 2 * fileSize, 1024, directory);
+        assertNotNull(reopened.get("a"));
+        assertNull(reopened.get("b"));
+        assertNotNull(reopened.get("c"));
+    }
+}
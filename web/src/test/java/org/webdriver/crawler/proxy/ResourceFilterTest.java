@@ -0,0 +1,54 @@
+package org.webdriver.crawler.proxy;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceFilterTest {
+
+    @Test
+    public void blocksTypesPatternsAndHostsOfHttpRequests() {
+        ResourceFilter filter = new ResourceFilter(new HashSet<>(Arrays.asList("image", "font")),
+                new HashSet<>(Collections.singletonList("tracker.com")), Collections.singletonList(Pattern.compile("/ads/")));
+        assertEquals("image", filter.blockReason("http://site.com/logo.PNG?v=2", "site.com", null));
+        assertEquals("font", filter.blockReason("http://site.com/font.woff2", "site.com", null));
+        assertEquals("host", filter.blockReason("http://cdn.tracker.com/t.js", "cdn.tracker.com", null));
+        assertEquals("pattern", filter.blockReason("http://site.com/ads/banner.html", "site.com", null));
+        assertEquals("image", filter.blockReason("http://site.com/thumbnail", "site.com", "image/webp,*/*"));
+        assertNull(filter.blockReason("http://site.com/app.js", "site.com", null));
+    }
+
+    @Test
+    public void givesTheTypesAndPatternsOfHttpsRequestsToTheBrowser() {
+        ResourceFilter filter = new ResourceFilter(new HashSet<>(Collections.singletonList("font")), Collections.<String>emptySet(),
+                Arrays.asList(Pattern.compile("/ads/"), Pattern.compile("^https://cdn\\.site\\.com/.*\\.json$"),
+                        Pattern.compile("^http://old\\.site\\.com/"), Pattern.compile("banner[0-9]+")));
+        List<String> urls = filter.httpsUrlPatterns();
+        assertTrue(urls.contains("https://*.woff2"));
+        assertTrue(urls.contains("https://*.woff2?*"));
+        assertFalse(urls.contains("https://*.png"));
+        assertTrue(urls.contains("https://*/ads/*"));
+        assertTrue(urls.contains("https://cdn.site.com/*.json"));
+        assertEquals(5 * 2 + 2, urls.size());
+        assertTrue(ResourceFilter.passAll().httpsUrlPatterns().isEmpty());
+    }
+
+    @Test
+    public void turnsPlainRegularExpressionsIntoWildcards() {
+        assertEquals("*analytics.js*", ResourceFilter.toWildcard("analytics.js"));
+        assertEquals("*?page=*", ResourceFilter.toWildcard("\\?page="));
+        assertEquals("https://a.com/*", ResourceFilter.toWildcard("^https://a\\.com/.*"));
+        assertEquals("*.mp4", ResourceFilter.toWildcard("\\.mp4$"));
+        assertNull(ResourceFilter.toWildcard("banner\\d+"));
+        assertNull(ResourceFilter.toWildcard("(ads|track)"));
+    }
+}